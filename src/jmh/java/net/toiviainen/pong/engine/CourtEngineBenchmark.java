@@ -0,0 +1,101 @@
+package net.toiviainen.pong.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.sim.BallFollower;
+import net.toiviainen.pong.sim.Difficulty;
+import net.toiviainen.pong.sim.InterceptController;
+
+/**
+ * <p>
+ * Benchmarks for the headless court engine.
+ * </p>
+ * <p>
+ * The engine is stepped with two scripted paddles, which means that the
+ * measurement includes the paddle movement, the collision checks and the
+ * occasional goal with the following reset. The rollback benchmark restores a
+ * saved state and re-simulates the {@link #ROLLBACK_TICKS} following ticks,
+ * just like a network match does after a misprediction. The computer benchmark
+ * steps the engine with two predicting paddles instead of the scripted ones.
+ * These benchmarks don't need the
+ * JavaFX toolkit, so they can be run on a machine without a display.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CourtEngineBenchmark {
+
+	/** The amount of ticks re-simulated on each rollback. */
+	private static final int ROLLBACK_TICKS = 8;
+
+	private PongContext ctx;
+	private CourtEngine engine;
+	private PaddleController left;
+	private PaddleController right;
+	private PaddleController leftComputer;
+	private PaddleController rightComputer;
+	private SnapshotRing snapshots;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		ctx = new PongContext();
+		engine = new CourtEngine(ctx, 42);
+		left = new BallFollower(true);
+		right = new BallFollower(false);
+		leftComputer = new InterceptController(true, Difficulty.HARD, 1);
+		rightComputer = new InterceptController(false, Difficulty.HARD, 2);
+		snapshots = new SnapshotRing(16);
+
+		// get past the initial count down so the rollback moves the ball.
+		for (int i = 0; i < 100; i++) {
+			engine.step(left.nextDirection(engine), right.nextDirection(engine));
+		}
+		snapshots.save(0, engine);
+	}
+
+	@Benchmark
+	public int step() {
+		int events = engine.step(left.nextDirection(engine), right.nextDirection(engine));
+		if ((events & CourtEngine.EVENT_MATCH_OVER) != 0) {
+			ctx.reset();
+		}
+		return events;
+	}
+
+	@Benchmark
+	public int stepComputer() {
+		int events = engine.step(leftComputer.nextDirection(engine), rightComputer.nextDirection(engine));
+		if ((events & CourtEngine.EVENT_MATCH_OVER) != 0) {
+			ctx.reset();
+		}
+		return events;
+	}
+
+	@Benchmark
+	public double rollback() {
+		snapshots.load(0, engine);
+		for (int tick = 0; tick < ROLLBACK_TICKS; tick++) {
+			snapshots.save(tick, engine);
+			engine.step(left.nextDirection(engine), right.nextDirection(engine));
+		}
+		return engine.getBallX();
+	}
+
+}
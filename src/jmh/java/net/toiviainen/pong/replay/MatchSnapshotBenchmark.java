@@ -0,0 +1,88 @@
+package net.toiviainen.pong.replay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+
+/**
+ * <p>
+ * A benchmark for saving a match snapshot into a file.
+ * </p>
+ * <p>
+ * The save benchmark captures the engine state and writes it atomically into
+ * a file in the temporary directory, so the score is the whole cost of a
+ * single save on the file system of the machine. The court scene only pays
+ * the cost of the submit benchmark on its tick, which captures the state and
+ * hands it over to a {@link SnapshotWriter} writing it in the background.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchSnapshotBenchmark {
+
+	private CourtEngine engine;
+	private MatchSnapshot snapshot;
+	private Path directory;
+	private Path file;
+	private SnapshotWriter writer;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		engine = new CourtEngine(new PongContext(), 42);
+		for (int i = 0; i < 100; i++) {
+			engine.step(CourtEngine.DIRECTION_UP, CourtEngine.DIRECTION_DOWN);
+		}
+		snapshot = new MatchSnapshot();
+		directory = Files.createTempDirectory("pong-snapshot");
+		file = directory.resolve("match.psav");
+		save();
+		writer = new SnapshotWriter(file);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		writer.close();
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public void save() throws IOException {
+		snapshot.capture(engine, 100);
+		snapshot.write(file);
+	}
+
+	@Benchmark
+	public void submit() {
+		writer.save(engine, 100);
+	}
+
+	@Benchmark
+	public MatchSnapshot load() throws IOException {
+		MatchSnapshot loaded = MatchSnapshot.read(file);
+		loaded.restore(engine);
+		return loaded;
+	}
+
+}
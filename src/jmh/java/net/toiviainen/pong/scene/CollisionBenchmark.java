@@ -0,0 +1,101 @@
+package net.toiviainen.pong.scene;
+
+import static net.toiviainen.pong.engine.CourtEngine.BOX_WIDTH;
+import static net.toiviainen.pong.engine.CourtEngine.COURT_HEIGHT;
+import static net.toiviainen.pong.engine.CourtEngine.COURT_WIDTH;
+import static net.toiviainen.pong.engine.CourtEngine.LEFT_PADDLE_X;
+import static net.toiviainen.pong.engine.CourtEngine.PADDLE_HEIGHT;
+import static net.toiviainen.pong.engine.CourtEngine.WALL_HEIGHT;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.shape.Rectangle;
+import net.toiviainen.pong.engine.Box;
+
+/**
+ * <p>
+ * Benchmarks for the node based collision checks.
+ * </p>
+ * <p>
+ * The court used to check the collisions by comparing the bounds of the scene
+ * graph nodes. This benchmark builds the same nodes and measures the cost of
+ * such a check on every tick against the in-place {@link Box} check of the
+ * engine.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+
+	private Rectangle topWall;
+	private Rectangle bottomWall;
+	private Rectangle leftPaddle;
+	private Rectangle ball;
+
+	private Box topWallBox;
+	private Box bottomWallBox;
+	private Box leftPaddleBox;
+	private Box ballBox;
+
+	private double ballX;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		FxToolkit.start();
+		topWall = new Rectangle(0, 0, COURT_WIDTH, WALL_HEIGHT);
+		bottomWall = new Rectangle(0, 0, COURT_WIDTH, WALL_HEIGHT);
+		bottomWall.setLayoutY(COURT_HEIGHT - WALL_HEIGHT);
+		leftPaddle = new Rectangle(0, 0, BOX_WIDTH, PADDLE_HEIGHT);
+		leftPaddle.setLayoutX(LEFT_PADDLE_X);
+		leftPaddle.setLayoutY(COURT_HEIGHT / 2 - PADDLE_HEIGHT / 2);
+		ball = new Rectangle(0, 0, BOX_WIDTH, BOX_WIDTH);
+		ball.setLayoutY(COURT_HEIGHT / 2);
+		new Group(topWall, bottomWall, leftPaddle, ball);
+
+		topWallBox = new Box(0, 0, COURT_WIDTH, WALL_HEIGHT);
+		bottomWallBox = new Box(0, COURT_HEIGHT - WALL_HEIGHT, COURT_WIDTH, WALL_HEIGHT);
+		leftPaddleBox = new Box(LEFT_PADDLE_X, COURT_HEIGHT / 2 - PADDLE_HEIGHT / 2, BOX_WIDTH, PADDLE_HEIGHT);
+		ballBox = new Box(0, COURT_HEIGHT / 2, BOX_WIDTH, BOX_WIDTH);
+	}
+
+	@Benchmark
+	public boolean nodeBounds() {
+		// move the ball so the cached bounds are being invalidated as in a tick.
+		ballX = (ballX + 1) % COURT_WIDTH;
+		ball.setLayoutX(ballX);
+
+		Bounds ballBounds = ball.getBoundsInParent();
+		return ballBounds.intersects(leftPaddle.getBoundsInParent())
+				|| ballBounds.intersects(topWall.getBoundsInParent())
+				|| ballBounds.intersects(bottomWall.getBoundsInParent());
+	}
+
+	@Benchmark
+	public boolean boxBounds() {
+		ballX = (ballX + 1) % COURT_WIDTH;
+		ballBox.setX(ballX);
+
+		return ballBox.intersects(leftPaddleBox)
+				|| ballBox.intersects(topWallBox)
+				|| ballBox.intersects(bottomWallBox);
+	}
+
+}
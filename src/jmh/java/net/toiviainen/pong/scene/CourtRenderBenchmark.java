@@ -0,0 +1,87 @@
+package net.toiviainen.pong.scene;
+
+import static net.toiviainen.pong.engine.CourtEngine.COURT_HEIGHT;
+import static net.toiviainen.pong.engine.CourtEngine.COURT_WIDTH;
+
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+
+/**
+ * <p>
+ * A benchmark for rasterizing the court with and without the static layer.
+ * </p>
+ * <p>
+ * Each operation moves the ball and the paddles and then takes a snapshot of
+ * the court, which renders the scene through the same graphics pipeline as the
+ * stage does (e.g. {@code -Dprism.order=sw} for the software pipeline). The
+ * snapshots must be taken on the JavaFX application thread, so each operation
+ * is handed over to it and the score includes that overhead.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CourtRenderBenchmark {
+
+	@Param({ "NODES", "CANVAS" })
+	public CourtRendererType type;
+
+	@Param({ "false", "true" })
+	public boolean staticLayer;
+
+	private CourtRenderer renderer;
+	private Scene scene;
+	private WritableImage image;
+	private int frame;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		FxToolkit.start();
+		onFxThread(() -> {
+			renderer = CourtRenderer.create(type, new CourtEngine(new PongContext()), staticLayer);
+			scene = new Scene(new Group(renderer.getNode()), COURT_WIDTH, COURT_HEIGHT, Color.BLACK);
+			image = new WritableImage(COURT_WIDTH, COURT_HEIGHT);
+		});
+	}
+
+	@Benchmark
+	public WritableImage snapshot() throws Exception {
+		onFxThread(() -> {
+			frame = (frame + 1) % 500;
+			renderer.draw(100 + frame, 100 + frame / 2, 100 + frame / 4, 300 - frame / 4);
+			scene.snapshot(image);
+		});
+		return image;
+	}
+
+	private static void onFxThread(Runnable runnable) throws Exception {
+		FutureTask<Void> task = new FutureTask<>(runnable, null);
+		Platform.runLater(task);
+		task.get();
+	}
+
+}
@@ -0,0 +1,34 @@
+package net.toiviainen.pong.scene;
+
+import javafx.application.Platform;
+
+/**
+ * <p>
+ * A helper to initialise the JavaFX toolkit for the benchmarks.
+ * </p>
+ * <p>
+ * Scenes cannot be constructed before the toolkit has been started, which is
+ * normally done by the application launcher. The benchmarks don't launch the
+ * application, so the toolkit is being started directly with the platform.
+ * </p>
+ */
+final class FxToolkit {
+
+	private static boolean started = false;
+
+	private FxToolkit() {
+		throw new AssertionError("No net.toiviainen.pong.scene.FxToolkit instances for you!");
+	}
+
+	/**
+	 * Start the JavaFX toolkit unless it has been already started.
+	 */
+	static synchronized void start() {
+		if (!started) {
+			Platform.startup(() -> {
+			});
+			started = true;
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+package net.toiviainen.pong.scene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.scene.Group;
+import net.toiviainen.pong.PongApplication;
+import net.toiviainen.pong.PongContext;
+
+/**
+ * <p>
+ * Benchmarks for the scene related hot paths.
+ * </p>
+ * <p>
+ * These benchmarks measure a full court scene tick, the construction of the
+ * score number groups, a score indicator update and the construction of all
+ * three scenes. The scenes
+ * are never shown, so the measurements don't include the actual rendering.
+ * Run with {@code -prof gc} to see the allocations per operation.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SceneBenchmark {
+
+	@Param({ "0", "8" })
+	public int number;
+
+	private PongApplication application;
+	private PongContext ctx;
+	private CourtScene courtScene;
+	private ScoreIndicator scoreIndicator;
+	private boolean scoreIndicatorToggle;
+
+	@Setup(Level.Trial)
+	public void setupTrial() throws Exception {
+		FxToolkit.start();
+		application = new PongApplication();
+		application.init();
+		ctx = application.getContext();
+		scoreIndicator = new ScoreIndicator(2, false);
+	}
+
+	@Setup(Level.Iteration)
+	public void setupIteration() {
+		ctx.reset();
+		courtScene = new CourtScene(application);
+	}
+
+	@Benchmark
+	public CourtScene courtSceneTick() {
+		// keep the match going as the benchmark has no stage to show results in.
+		if (ctx.getPlayer1Score() >= 9 || ctx.getPlayer2Score() >= 9) {
+			ctx.reset();
+		}
+		courtScene.tick();
+		courtScene.render(0.5);
+		return courtScene;
+	}
+
+	@Benchmark
+	public Group createNumberGroup() {
+		return ScoreIndicator.createNumberGroup(number);
+	}
+
+	@Benchmark
+	public ScoreIndicator setScore() {
+		// alternate between two scores so every call swaps the visible digits.
+		scoreIndicatorToggle = !scoreIndicatorToggle;
+		scoreIndicator.setScore(scoreIndicatorToggle ? number : number + 1);
+		return scoreIndicator;
+	}
+
+	@Benchmark
+	public WelcomeScene constructWelcomeScene() {
+		return new WelcomeScene(application);
+	}
+
+	@Benchmark
+	public CourtScene constructCourtScene() {
+		return new CourtScene(application);
+	}
+
+	@Benchmark
+	public EndGameScene constructEndGameScene() {
+		return new EndGameScene(application);
+	}
+
+}
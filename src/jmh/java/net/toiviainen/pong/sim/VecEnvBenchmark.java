@@ -0,0 +1,72 @@
+package net.toiviainen.pong.sim;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * A benchmark for the throughput of the vectorized environment.
+ * </p>
+ * <p>
+ * A single operation is a single environment step, so the score is directly
+ * the amount of environment steps per second. The actions are varied by the
+ * ball position, so the paddles keep moving like in a training run.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VecEnvBenchmark {
+
+	/** The amount of environments stepped on each call. */
+	private static final int ENVS = 1024;
+
+	@Param({ "1", "4" })
+	public int threads;
+
+	private VecEnv env;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		env = new VecEnv(ENVS, threads, 42);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		env.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ENVS)
+	public float step() {
+		FloatBuffer observations = env.getObservations();
+		FloatBuffer actions = env.getActions();
+		for (int i = 0; i < ENVS; i++) {
+			int offset = i * VecEnv.OBSERVATION_SIZE;
+			float ballY = observations.get(offset + VecEnv.OBS_BALL_Y);
+			actions.put(i * 2, Math.signum(ballY - observations.get(offset + VecEnv.OBS_LEFT_PADDLE_Y) - 40));
+			actions.put(i * 2 + 1, Math.signum(ballY - observations.get(offset + VecEnv.OBS_RIGHT_PADDLE_Y) - 40));
+		}
+		env.step();
+		return env.getRewards().get(0);
+	}
+
+}
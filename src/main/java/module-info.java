@@ -0,0 +1,23 @@
+/**
+ * <p>
+ * The JavaFX Pong game with its headless simulation tools.
+ * </p>
+ * <p>
+ * The application package is exported so the JavaFX launcher can construct
+ * the application, and the engine and the simulation packages are exported
+ * for the programs driving the headless simulations. The metrics package is
+ * exported for the management of the MXBean of the game.
+ * </p>
+ */
+module net.toiviainen.pong {
+
+	requires java.management;
+	requires javafx.graphics;
+	requires jdk.httpserver;
+
+	exports net.toiviainen.pong;
+	exports net.toiviainen.pong.engine;
+	exports net.toiviainen.pong.metrics;
+	exports net.toiviainen.pong.sim;
+
+}
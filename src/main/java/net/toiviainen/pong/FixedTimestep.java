@@ -0,0 +1,92 @@
+package net.toiviainen.pong;
+
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * An accumulator based scheduler for the fixed-step simulation.
+ * </p>
+ * <p>
+ * This scheduler converts the timestamps of the main loop pulses into a number
+ * of simulation ticks of a fixed duration. The time which is not consumed by
+ * the ticks is carried over to the next pulse and it's also exposed as an
+ * interpolation alpha, which can be used to render the state between the two
+ * latest simulation ticks. The amount of ticks per pulse is capped to avoid
+ * the simulation from spiralling when the machine cannot keep up.
+ * </p>
+ */
+public class FixedTimestep {
+
+	/** The duration of a single simulation tick (60 ticks per second). */
+	public static final long DEFAULT_STEP_NANOS = 1000000000L / 60;
+
+	/** The maximum amount of ticks to catch up within a single pulse. */
+	public static final int DEFAULT_MAX_STEPS = 5;
+
+	private final long stepNanos;
+	private final int maxSteps;
+
+	private long previousTime = -1;
+	private long accumulator;
+
+	public FixedTimestep() {
+		this(DEFAULT_STEP_NANOS, DEFAULT_MAX_STEPS);
+	}
+
+	public FixedTimestep(long stepNanos, int maxSteps) throws IllegalArgumentException {
+		Args.isGte(stepNanos, 1, "The step duration must be at least one nanosecond!");
+		Args.isGte(maxSteps, 1, "The maximum amount of steps must be at least one!");
+		this.stepNanos = stepNanos;
+		this.maxSteps = maxSteps;
+	}
+
+	/**
+	 * <p>
+	 * Advance the scheduler into the given timestamp.
+	 * </p>
+	 * <p>
+	 * The very first call only initialises the scheduler and doesn't produce
+	 * any ticks. When the elapsed time would require more than the maximum
+	 * amount of ticks, the excess time is dropped so the simulation slows down
+	 * instead of falling further behind.
+	 * </p>
+	 * @param now The current timestamp in nanoseconds.
+	 * @return The amount of simulation ticks to run.
+	 */
+	public int advance(long now) {
+		if (previousTime < 0) {
+			previousTime = now;
+			return 0;
+		}
+		accumulator += Math.max(0, now - previousTime);
+		previousTime = now;
+
+		int steps = (int) Math.min(accumulator / stepNanos, maxSteps);
+		accumulator -= steps * stepNanos;
+		if (steps == maxSteps && accumulator >= stepNanos) {
+			accumulator %= stepNanos;
+		}
+		return steps;
+	}
+
+	/**
+	 * Reset the scheduler so that the next call starts the timing from scratch.
+	 */
+	public void reset() {
+		previousTime = -1;
+		accumulator = 0;
+	}
+
+	/**
+	 * Get the interpolation alpha between the two latest simulation ticks.
+	 * @return The portion [0..1) of a tick that has elapsed since the last tick.
+	 */
+	public double getAlpha() {
+		return (double) accumulator / stepNanos;
+	}
+
+	public long getStepNanos() {
+		return stepNanos;
+	}
+
+}
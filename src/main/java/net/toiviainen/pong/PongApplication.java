@@ -1,12 +1,45 @@
 package net.toiviainen.pong;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
+import net.toiviainen.pong.metrics.FrameStats;
+import net.toiviainen.pong.metrics.GameMetrics;
+import net.toiviainen.pong.metrics.MetricsEndpoint;
+import net.toiviainen.pong.metrics.StartupBenchmark;
+import net.toiviainen.pong.net.LatencyInjector;
+import net.toiviainen.pong.net.LockstepSession;
+import net.toiviainen.pong.net.NetcodeType;
+import net.toiviainen.pong.replay.MatchSnapshot;
+import net.toiviainen.pong.replay.SnapshotWriter;
+import net.toiviainen.pong.sim.Difficulty;
+import net.toiviainen.pong.spectate.SpectatorConnection;
+import net.toiviainen.pong.spectate.SpectatorHub;
 import net.toiviainen.pong.scene.AbstractScene;
+import net.toiviainen.pong.scene.CourtRendererType;
+import net.toiviainen.pong.scene.CourtScene;
+import net.toiviainen.pong.scene.EndGameScene;
+import net.toiviainen.pong.scene.NetworkErrorScene;
+import net.toiviainen.pong.scene.SpectatorScene;
 import net.toiviainen.pong.scene.WelcomeScene;
+import net.toiviainen.pong.util.InstanceRegistry;
 
 /**
  * <p>
@@ -32,19 +65,92 @@ public class PongApplication extends Application {
 	/** The name of the font used for the application texts. */
 	public static final String FONT_NAME = "Arial";
 
-	/** The font for big texts like topics etc. */
-	public static final Font BIG_FONT = new Font(FONT_NAME, 32);
+	/**
+	 * The fonts are held in their own class, so they are only loaded when the
+	 * first text is being constructed instead of when the launcher loads the
+	 * application class before the toolkit has even started.
+	 */
+	private static final class Fonts {
+
+		/** The font for big texts like topics etc. */
+		static final Font BIG = new Font(FONT_NAME, 32);
+
+		/** The font for normal texts like descriptions etc. */
+		static final Font SMALL = new Font(FONT_NAME, 18);
+
+	}
 
-	/** The font for normal texts like descriptions etc. */
-	public static final Font SMALL_FONT = new Font(FONT_NAME, 18);
+	private final InstanceRegistry<AbstractScene> scenes = new InstanceRegistry<>();
 
 	private Stage primaryStage;
 	private AnimationTimer mainLoop;
+	private boolean mainLoopRunning;
+	private FixedTimestep timestep;
 	private PongContext context;
+	private CourtRendererType courtRendererType;
+	private boolean staticLayerCached;
+	private String statsFile;
+	private Path recordDirectory;
+	private FrameStats frameStats;
+	private LockstepSession networkSession;
+	private NetcodeType netcodeType;
+	private volatile SpectatorHub spectatorHub;
+	private SpectatorConnection spectatorConnection;
+	private Difficulty computerDifficulty;
+	private boolean startupProbe;
+	private boolean pauseWhenIdle;
+	private boolean physicsThreaded;
+	private SnapshotWriter snapshotWriter;
+	private int snapshotTicks;
+	private MatchSnapshot pendingSnapshot;
+	private boolean jmxEnabled;
+	private int metricsPort;
+	private GameMetrics metrics;
+	private MetricsEndpoint metricsEndpoint;
+	private volatile String sceneName;
 
 	@Override
 	public void init() throws Exception {
-		// ... something here?
+		// construct the context for the game.
+		context = new PongContext();
+
+		// resolve the startup options from the named parameters.
+		String renderer = getNamedParameter("renderer", CourtRendererType.NODES.name());
+		courtRendererType = CourtRendererType.valueOf(renderer.toUpperCase(Locale.ROOT));
+		staticLayerCached = Boolean.parseBoolean(getNamedParameter("static-layer", "true"));
+		statsFile = getNamedParameter("stats-file", null);
+		String record = getNamedParameter("record", null);
+		if (record != null) {
+			recordDirectory = Files.createDirectories(Paths.get(record));
+		}
+		networkSession = createNetworkSession();
+		String netcode = getNamedParameter("netcode", NetcodeType.LOCKSTEP.name());
+		netcodeType = NetcodeType.valueOf(netcode.toUpperCase(Locale.ROOT));
+		String broadcast = getNamedParameter("broadcast", null);
+		if (broadcast != null) {
+			spectatorHub = new SpectatorHub(Integer.parseInt(broadcast));
+		}
+		String spectate = getNamedParameter("spectate", null);
+		if (spectate != null) {
+			spectatorConnection = new SpectatorConnection(LockstepSession.parseAddress(spectate));
+		}
+		startupProbe = Boolean.parseBoolean(getNamedParameter("startup-probe", "false"));
+		pauseWhenIdle = Boolean.parseBoolean(getNamedParameter("pause-when-idle", "true"));
+		physicsThreaded = Boolean.parseBoolean(getNamedParameter("physics-thread", "false"));
+		String snapshot = getNamedParameter("snapshot", null);
+		if (snapshot != null && networkSession == null && spectatorConnection == null) {
+			Path snapshotFile = Paths.get(snapshot);
+			double interval = Double.parseDouble(getNamedParameter("snapshot-interval", "5"));
+			snapshotTicks = (int) Math.round(interval * TimeUnit.SECONDS.toNanos(1) / FixedTimestep.DEFAULT_STEP_NANOS);
+			pendingSnapshot = readSnapshot(snapshotFile);
+			snapshotWriter = new SnapshotWriter(snapshotFile);
+		}
+		String computer = getNamedParameter("computer", null);
+		if (computer != null) {
+			computerDifficulty = Difficulty.valueOf(computer.toUpperCase(Locale.ROOT));
+		}
+		jmxEnabled = Boolean.parseBoolean(getNamedParameter("jmx", "true"));
+		metricsPort = Integer.parseInt(getNamedParameter("metrics-port", "-1"));
 		super.init();
 	}
 
@@ -53,37 +159,279 @@ public class PongApplication extends Application {
 		// store the primary stage reference.
 		this.primaryStage = primaryStage;
 
-		// construct the context for the game.
-		context = new PongContext();
-
 		// set definitions for the primary stage.
 		primaryStage.setTitle("JavaFX - Pong");
 		primaryStage.setResizable(false);
 		primaryStage.show();
-		primaryStage.setScene(new WelcomeScene(this));
 
-		// construct and start a trivial main loop for 60fps simulation.
+		// any key may change an idle scene, so wake the main loop up on them.
+		primaryStage.addEventFilter(KeyEvent.ANY, event -> wake());
+
+		// the statistics are shared with the scenes, so construct them first.
+		timestep = new FixedTimestep();
+		frameStats = new FrameStats(timestep.getStepNanos());
+
+		// expose the statistics for the monitoring if requested.
+		metrics = new GameMetrics(frameStats, context, () -> sceneName);
+		if (jmxEnabled) {
+			metrics.register();
+		}
+		if (metricsPort >= 0) {
+			metricsEndpoint = new MetricsEndpoint(metricsPort, metrics);
+		}
+
+		// construct each scene when it's first shown and then reuse it.
+		scenes.register(WelcomeScene.class, () -> new WelcomeScene(this));
+		scenes.register(CourtScene.class, () -> new CourtScene(this));
+		scenes.register(EndGameScene.class, () -> new EndGameScene(this));
+		if (networkSession != null || spectatorConnection != null) {
+			scenes.register(NetworkErrorScene.class, () -> new NetworkErrorScene(this));
+		}
+		if (spectatorConnection != null) {
+			// only follow the broadcast of a match played elsewhere.
+			scenes.register(SpectatorScene.class, () -> new SpectatorScene(this, spectatorConnection));
+			showScene(SpectatorScene.class);
+		} else if (pendingSnapshot != null) {
+			// continue the match which was interrupted the last time.
+			showScene(CourtScene.class);
+		} else {
+			showScene(WelcomeScene.class);
+		}
+
+		// construct and start a main loop which runs a fixed-step simulation.
 		mainLoop = new AnimationTimer() {
 
 			@Override
 			public void handle(long now) {
+				frameStats.recordPulse(now);
+				checkBroadcast();
+				int steps = timestep.advance(now);
+				for (int i = 0; i < steps; i++) {
+					// the scene may change between the ticks so query it each time.
+					Scene scene = primaryStage.getScene();
+					if (scene instanceof AbstractScene && !((AbstractScene) scene).hasPhysicsThread()) {
+						long tickStart = System.nanoTime();
+						((AbstractScene) scene).tick();
+						frameStats.recordTick(System.nanoTime() - tickStart);
+					}
+				}
 				Scene scene = primaryStage.getScene();
 				if (scene instanceof AbstractScene) {
-					((AbstractScene) scene).tick();
+					AbstractScene abstractScene = (AbstractScene) scene;
+					long renderStart = System.nanoTime();
+					abstractScene.render(timestep.getAlpha());
+					frameStats.recordRender(System.nanoTime() - renderStart);
+					abstractScene.renderHud(frameStats, now);
+				}
+				if (startupProbe) {
+					startupProbe = false;
+					reportFirstFrame();
+				}
+				if (pauseWhenIdle && scene instanceof AbstractScene) {
+					AbstractScene abstractScene = (AbstractScene) scene;
+					if (abstractScene.isIdle() && !abstractScene.isHudVisible()) {
+						pause();
+					}
 				}
 			}
 
 		};
 		mainLoop.start();
+		mainLoopRunning = true;
 
 	}
 
 	@Override
 	public void stop() throws Exception {
 		mainLoop.stop();
+
+		Scene scene = primaryStage.getScene();
+		if (scene instanceof AbstractScene) {
+			((AbstractScene) scene).onStop();
+		}
+
+		// complete the latest snapshot request before the application exits.
+		if (snapshotWriter != null) {
+			snapshotWriter.close();
+		}
+
+		// close the session first, so its statistics are final when dumped.
+		if (networkSession != null) {
+			networkSession.close();
+		}
+
+		// dump the statistics if requested with the startup options.
+		if (statsFile != null) {
+			Path file = Paths.get(statsFile);
+			frameStats.writeTo(file);
+			if (networkSession != null) {
+				Files.write(file, List.of(networkSession.summary()), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+			}
+		}
+		if (metricsEndpoint != null) {
+			metricsEndpoint.close();
+		}
+		if (metrics != null) {
+			metrics.unregister();
+		}
+		if (spectatorHub != null) {
+			spectatorHub.close();
+		}
 		super.stop();
 	}
 
+	/**
+	 * Stop broadcasting when the spectator hub has failed. The match itself
+	 * doesn't depend on the spectators, so the failure is only reported.
+	 */
+	private void checkBroadcast() {
+		SpectatorHub hub = spectatorHub;
+		if (hub == null || hub.getFailure() == null) {
+			return;
+		}
+		System.err.println("The broadcast has stopped: " + hub.getFailure());
+		spectatorHub = null;
+		try {
+			hub.close();
+		} catch (IOException e) {
+			// ... the hub is gone anyway ...
+		}
+	}
+
+	/**
+	 * <p>
+	 * Stop the main loop while the current scene is idle.
+	 * </p>
+	 * <p>
+	 * An idle scene has already rendered its final frame, so there's no reason
+	 * to keep waking up on every pulse. The loop is started again by
+	 * {@link #wake()} on the next key event or scene change.
+	 * </p>
+	 */
+	private void pause() {
+		mainLoop.stop();
+		mainLoopRunning = false;
+		frameStats.recordPause(System.nanoTime());
+	}
+
+	/**
+	 * Start the main loop again if it was paused by {@link #pause()}. The fixed
+	 * timestep is reset, so the paused time is not simulated afterwards.
+	 */
+	private void wake() {
+		if (mainLoop == null || mainLoopRunning) {
+			return;
+		}
+		timestep.reset();
+		frameStats.recordResume(System.nanoTime());
+		mainLoop.start();
+		mainLoopRunning = true;
+	}
+
+	/**
+	 * Report the time of the first rendered frame and exit the application.
+	 * The {@link StartupBenchmark} reads the line to measure the startup time.
+	 */
+	private void reportFirstFrame() {
+		Instant now = Instant.now();
+		System.out.printf("%s%d%n", StartupBenchmark.FIRST_FRAME_PREFIX, ChronoUnit.MICROS.between(Instant.EPOCH, now));
+		ProcessHandle.current().info().startInstant().ifPresent(start -> System.out
+				.printf("first frame %d ms after the process start%n", Duration.between(start, now).toMillis()));
+		Platform.exit();
+	}
+
+	/**
+	 * Read the snapshot of an interrupted match, if there's one.
+	 * @param file The snapshot file.
+	 * @return The snapshot or null when there's no match to resume.
+	 */
+	private static MatchSnapshot readSnapshot(Path file) {
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try {
+			return MatchSnapshot.read(file);
+		} catch (IOException e) {
+			// a broken snapshot must not prevent starting a new match.
+			System.err.println("Unable to resume the match: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Create the network session if requested with the startup options.
+	 * @return The started session or null when playing on a single machine.
+	 * @throws IOException When the socket cannot be opened.
+	 */
+	private LockstepSession createNetworkSession() throws IOException {
+		String host = getNamedParameter("host", null);
+		String connect = getNamedParameter("connect", null);
+		if (host == null && connect == null) {
+			return null;
+		}
+
+		// the injector allows testing the network play over the loopback.
+		long delay = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(getNamedParameter("net-delay", "0")));
+		long jitter = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(getNamedParameter("net-jitter", "0")));
+		double loss = Double.parseDouble(getNamedParameter("net-loss", "0"));
+		LatencyInjector injector = new LatencyInjector(delay, jitter, loss, System.nanoTime());
+		if (host != null) {
+			return LockstepSession.host(Integer.parseInt(host), injector);
+		}
+		return LockstepSession.connect(LockstepSession.parseAddress(connect), injector);
+	}
+
+	/**
+	 * <p>
+	 * Show the scene of the given type.
+	 * </p>
+	 * <p>
+	 * Each scene is constructed once when it's shown for the first time, so the
+	 * startup only pays for the initial scene. After that this function just
+	 * lets the scene refresh its state and sets it to the stage.
+	 * </p>
+	 * @param type The type of the scene to show.
+	 * @throws IllegalArgumentException When there's no scene of the given type.
+	 */
+	public void showScene(Class<? extends AbstractScene> type) throws IllegalArgumentException {
+		AbstractScene scene = scenes.get(type);
+		scene.onEnter(context);
+		primaryStage.setScene(scene);
+		sceneName = type.getSimpleName();
+		wake();
+	}
+
+	/**
+	 * Get the value of a named (e.g. {@code --name=value}) startup parameter.
+	 * @param name The name of the parameter.
+	 * @param defaultValue The value to use when the parameter is not present.
+	 * @return The value of the parameter or the provided default value.
+	 */
+	private String getNamedParameter(String name, String defaultValue) {
+		// parameters are not available when the application is not launched.
+		Parameters parameters = getParameters();
+		if (parameters == null) {
+			return defaultValue;
+		}
+		return parameters.getNamed().getOrDefault(name, defaultValue);
+	}
+
+	/**
+	 * Get the font for big texts like topics etc.
+	 * @return The big font.
+	 */
+	public static Font getBigFont() {
+		return Fonts.BIG;
+	}
+
+	/**
+	 * Get the font for normal texts like descriptions etc.
+	 * @return The small font.
+	 */
+	public static Font getSmallFont() {
+		return Fonts.SMALL;
+	}
+
 	public Stage getPrimaryStage() {
 		return primaryStage;
 	}
@@ -92,6 +440,72 @@ public class PongApplication extends Application {
 		return context;
 	}
 
+	public FrameStats getFrameStats() {
+		return frameStats;
+	}
+
+	public Path getRecordDirectory() {
+		return recordDirectory;
+	}
+
+	public SnapshotWriter getSnapshotWriter() {
+		return snapshotWriter;
+	}
+
+	public int getSnapshotTicks() {
+		return snapshotTicks;
+	}
+
+	/**
+	 * Take the snapshot of the interrupted match, which is resumed only once.
+	 * @return The snapshot or null when there's no match to resume.
+	 */
+	public MatchSnapshot takePendingSnapshot() {
+		MatchSnapshot snapshot = pendingSnapshot;
+		pendingSnapshot = null;
+		return snapshot;
+	}
+
+	public LockstepSession getNetworkSession() {
+		return networkSession;
+	}
+
+	/**
+	 * Get the reason why the network session or the followed broadcast has
+	 * failed, if either has.
+	 * @return The failure or null when there's none.
+	 */
+	public Exception getNetworkFailure() {
+		if (networkSession != null && networkSession.getFailure() != null) {
+			return networkSession.getFailure();
+		}
+		return spectatorConnection != null ? spectatorConnection.getFailure() : null;
+	}
+
+	public SpectatorHub getSpectatorHub() {
+		return spectatorHub;
+	}
+
+	public NetcodeType getNetcodeType() {
+		return netcodeType;
+	}
+
+	public CourtRendererType getCourtRendererType() {
+		return courtRendererType;
+	}
+
+	public boolean isStaticLayerCached() {
+		return staticLayerCached;
+	}
+
+	public boolean isPhysicsThreaded() {
+		return physicsThreaded;
+	}
+
+	public Difficulty getComputerDifficulty() {
+		return computerDifficulty;
+	}
+
 	public static void main(String args[]) {
 		launch(args);
 	}
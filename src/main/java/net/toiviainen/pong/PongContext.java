@@ -1,5 +1,7 @@
 package net.toiviainen.pong;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * <p>
  * A game context container to store game session specific data.
@@ -9,12 +11,20 @@ package net.toiviainen.pong;
  * this includes the current score of both players. This could be expanded to
  * include all other kinds of values if and when required.
  * </p>
+ * <p>
+ * The context also counts the goals and the completed matches over the whole
+ * session. Unlike the scores, the counters are not cleared by {@link #reset()}
+ * and they can be read from any thread, e.g. by the monitoring.
+ * </p>
  */
 public class PongContext {
 
 	private int player1Score = 0;
 	private int player2Score = 0;
 
+	private final AtomicLong goalsScored = new AtomicLong();
+	private final AtomicLong matchesCompleted = new AtomicLong();
+
 	public PongContext() {
 		// ...
 	}
@@ -50,4 +60,27 @@ public class PongContext {
 		return player2Score;
 	}
 
+	/**
+	 * Add the given amount of goals into the session counter.
+	 * @param goals The amount of scored goals.
+	 */
+	public void addGoalsScored(int goals) {
+		goalsScored.addAndGet(goals);
+	}
+
+	public long getGoalsScored() {
+		return goalsScored.get();
+	}
+
+	/**
+	 * Count a completed match into the session counter.
+	 */
+	public void incMatchesCompleted() {
+		matchesCompleted.incrementAndGet();
+	}
+
+	public long getMatchesCompleted() {
+		return matchesCompleted.get();
+	}
+
 }
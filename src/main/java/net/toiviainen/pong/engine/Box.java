@@ -0,0 +1,78 @@
+package net.toiviainen.pong.engine;
+
+/**
+ * <p>
+ * A mutable axis-aligned box for the court entities.
+ * </p>
+ * <p>
+ * The court engine represents all of its entities (walls, goals, paddles and
+ * the ball) as boxes, which are being moved and tested for intersections in
+ * place. This keeps the simulation free from any per-tick allocations.
+ * </p>
+ */
+public final class Box {
+
+	private double x;
+	private double y;
+	private final double width;
+	private final double height;
+
+	public Box(double x, double y, double width, double height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Check whether this box intersects with the given box.
+	 * @param other The box to check against.
+	 * @return Whether the boxes intersect (touching edges included).
+	 */
+	public boolean intersects(Box other) {
+		return !(x + width < other.x || y + height < other.y || x > other.x + other.width || y > other.y + other.height);
+	}
+
+	/**
+	 * Move the box into the given position.
+	 * @param x The new x-coordinate.
+	 * @param y The new y-coordinate.
+	 */
+	public void moveTo(double x, double y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public void setX(double x) {
+		this.x = x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public void setY(double y) {
+		this.y = y;
+	}
+
+	public double getWidth() {
+		return width;
+	}
+
+	public double getHeight() {
+		return height;
+	}
+
+	public double getMaxX() {
+		return x + width;
+	}
+
+	public double getMaxY() {
+		return y + height;
+	}
+
+}
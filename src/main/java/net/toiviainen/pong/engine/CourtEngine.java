@@ -0,0 +1,601 @@
+package net.toiviainen.pong.engine;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.toiviainen.pong.PongContext;
+
+/**
+ * <p>
+ * The headless simulation core of the court.
+ * </p>
+ * <p>
+ * This engine contains the whole game logic of a Pong match without any
+ * dependency to the JavaFX toolkit. The court entities are stored as primitive
+ * {@link Box} instances, which are moved and checked for collisions in place,
+ * and the scores are being tracked in the provided {@link PongContext}. The
+ * simulation is advanced one tick at a time with the
+ * {@link #step(double, double)} function, which makes it possible to use the
+ * engine both to drive the court scene and to run simulations without any
+ * user interface at all.
+ * </p>
+ * <p>
+ * The whole mutable state of the engine, including the scores and the state
+ * of the random number generator, can be saved into and loaded from a slice of
+ * a {@code long} array with {@link #saveState(long[], int)} and
+ * {@link #loadState(long[], int)}. Neither allocates, so the state can be
+ * saved on every tick and rolled back when needed.
+ * </p>
+ * <p>
+ * The tunable gameplay parameters, like the ball speeds and the paddle height,
+ * are read from the {@link CourtRules} given at the construction, so different
+ * rules can be simulated side by side without recompiling the engine.
+ * </p>
+ */
+public class CourtEngine {
+
+	/** The width of the court. */
+	public static final int COURT_WIDTH = 800;
+
+	/** The height of the court. */
+	public static final int COURT_HEIGHT = 600;
+
+	/** The width of the small boxes used around the court. */
+	public static final int BOX_WIDTH = (COURT_WIDTH / 40);
+
+	/** The height for the top and bottom walls. */
+	public static final int WALL_HEIGHT = BOX_WIDTH;
+
+	/** The height for the left and right paddle with the default rules. */
+	public static final int PADDLE_HEIGHT = BOX_WIDTH * 5;
+
+	/** The offset of the paddles from the edges of the court. */
+	public static final int EDGE_OFFSET = COURT_HEIGHT / 20;
+
+	/** The x-coordinate of the left paddle. */
+	public static final double LEFT_PADDLE_X = EDGE_OFFSET;
+
+	/** The x-coordinate of the right paddle. */
+	public static final double RIGHT_PADDLE_X = COURT_WIDTH - EDGE_OFFSET - BOX_WIDTH;
+
+	/** The initial y-coordinate of both paddles with the default rules. */
+	public static final double PADDLE_INITIAL_Y = COURT_HEIGHT / 2 - PADDLE_HEIGHT / 2;
+
+	/** The initial x-coordinate of the ball. */
+	public static final double BALL_INITIAL_X = COURT_WIDTH / 2 - BOX_WIDTH / 2;
+
+	/** The initial y-coordinate of the ball. */
+	public static final double BALL_INITIAL_Y = COURT_HEIGHT / 2 - BOX_WIDTH / 2;
+
+	/** The score which ends the match when reached by either player. */
+	public static final int WINNING_SCORE = 10;
+
+	/** The amount to nudge items on a collision. */
+	private static final double NUDGE = 0.01;
+
+	/** The maximum amount of ball bounces resolved within a single tick. */
+	private static final int MAX_BOUNCES_PER_TICK = 4;
+
+	/** A time of impact for a swept box that doesn't hit the target. */
+	private static final double NO_IMPACT = Double.POSITIVE_INFINITY;
+
+	// ================================
+	// = movement direction constants =
+	// ================================
+
+	/** A direction constant for the upward movement. */
+	public static final double DIRECTION_UP = -1.0;
+
+	/** A direction constant for the downward movement. */
+	public static final double DIRECTION_DOWN = 1.0;
+
+	/** A direction constant for the right movement. */
+	public static final double DIRECTION_RIGHT = 1.0;
+
+	/** A direction constant for the left movement. */
+	public static final double DIRECTION_LEFT = -1.0;
+
+	/** A direction constant for being still. */
+	public static final double DIRECTION_NONE = 0.0;
+
+	// ===================
+	// = event constants =
+	// ===================
+
+	/** An event flag for a tick where nothing special happened. */
+	public static final int EVENT_NONE = 0;
+
+	/** An event flag for a tick where the ball hit either paddle. */
+	public static final int EVENT_PADDLE_HIT = 1;
+
+	/** An event flag for a tick where the ball hit either wall. */
+	public static final int EVENT_WALL_HIT = 1 << 1;
+
+	/** An event flag for a tick where the first (right) player scored. */
+	public static final int EVENT_PLAYER1_GOAL = 1 << 2;
+
+	/** An event flag for a tick where the second (left) player scored. */
+	public static final int EVENT_PLAYER2_GOAL = 1 << 3;
+
+	/** An event flag for a tick where either player won the match. */
+	public static final int EVENT_MATCH_OVER = 1 << 4;
+
+	// ===================
+	// = state constants =
+	// ===================
+
+	/** The amount of longs required to save the state of the engine. */
+	public static final int STATE_SIZE = 11;
+
+	// ===================
+	// = class variables =
+	// ===================
+
+	private final PongContext ctx;
+
+	private final CourtRules rules;
+	private final double paddleInitialY;
+
+	private final CourtRandom random;
+
+	private final Box topWall;
+	private final Box bottomWall;
+
+	private final Box leftGoal;
+	private final Box rightGoal;
+
+	private final Box leftPaddle;
+	private final Box rightPaddle;
+
+	private final Box ball;
+
+	private double ballMovementSpeed;
+	private double ballXDirection;
+	private double ballYDirection;
+
+	private int countDown;
+
+	private final long[] checksumState = new long[STATE_SIZE];
+
+	public CourtEngine(PongContext ctx) throws NullPointerException {
+		this(ctx, ThreadLocalRandom.current().nextLong());
+	}
+
+	public CourtEngine(PongContext ctx, long seed) throws NullPointerException {
+		this(ctx, seed, CourtRules.DEFAULT);
+	}
+
+	public CourtEngine(PongContext ctx, long seed, CourtRules rules) throws NullPointerException {
+		this.ctx = requireNonNull(ctx, "The context cannot be null!");
+		this.rules = requireNonNull(rules, "The rules cannot be null!");
+		this.random = new CourtRandom(seed);
+		paddleInitialY = COURT_HEIGHT / 2 - rules.getPaddleHeight() / 2;
+
+		topWall = new Box(0, 0, COURT_WIDTH, WALL_HEIGHT);
+		bottomWall = new Box(0, COURT_HEIGHT - WALL_HEIGHT, COURT_WIDTH, WALL_HEIGHT);
+		leftGoal = new Box(-COURT_WIDTH, 0, COURT_WIDTH - BOX_WIDTH, COURT_HEIGHT);
+		rightGoal = new Box(COURT_WIDTH + BOX_WIDTH, 0, COURT_WIDTH, COURT_HEIGHT);
+		leftPaddle = new Box(LEFT_PADDLE_X, paddleInitialY, BOX_WIDTH, rules.getPaddleHeight());
+		rightPaddle = new Box(RIGHT_PADDLE_X, paddleInitialY, BOX_WIDTH, rules.getPaddleHeight());
+		ball = new Box(BALL_INITIAL_X, BALL_INITIAL_Y, BOX_WIDTH, BOX_WIDTH);
+		restart();
+	}
+
+	/**
+	 * Restart the court into the state of a new match with the given seed.
+	 * @param seed The new seed for the random number generator.
+	 */
+	public void restart(long seed) {
+		random.setSeed(seed);
+		restart();
+	}
+
+	/**
+	 * <p>
+	 * Restart the court into the state of a new match.
+	 * </p>
+	 * <p>
+	 * Unlike {@link #reset()}, which is used between the rounds, this function
+	 * always starts the ball towards the upper right corner just like in the
+	 * very first round of a match. The scores in the context are not touched.
+	 * </p>
+	 */
+	public void restart() {
+		ball.moveTo(BALL_INITIAL_X, BALL_INITIAL_Y);
+		leftPaddle.setY(paddleInitialY);
+		rightPaddle.setY(paddleInitialY);
+
+		// the very first round always starts towards the upper right corner.
+		ballMovementSpeed = rules.getBallInitialSpeed();
+		ballXDirection = DIRECTION_RIGHT;
+		ballYDirection = DIRECTION_UP;
+		countDown = rules.getCountdownTicks();
+	}
+
+	/**
+	 * <p>
+	 * Advance the simulation by a single tick.
+	 * </p>
+	 * <p>
+	 * The provided paddle directions are the movement directions requested by
+	 * the players for this tick (e.g. {@link #DIRECTION_UP}). The returned value
+	 * contains the bitwise combination of the event flags (e.g.
+	 * {@link #EVENT_PLAYER1_GOAL}) that describe what happened on this tick.
+	 * </p>
+	 * @param leftPaddleDirection The movement direction of the left paddle.
+	 * @param rightPaddleDirection The movement direction of the right paddle.
+	 * @return The event flags for the simulated tick.
+	 */
+	public int step(double leftPaddleDirection, double rightPaddleDirection) {
+		// perform only the decrement of the count down timer if it's been set.
+		if (countDown > 0) {
+			countDown--;
+			return EVENT_NONE;
+		}
+
+		// move the paddles if and when moved by the players.
+		movePaddle(leftPaddle, leftPaddleDirection);
+		movePaddle(rightPaddle, rightPaddleDirection);
+
+		// move the ball and resolve all of its bounces within this tick.
+		int events = moveBall();
+
+		// check whether the ball went past either paddle into a goal.
+		if (ball.intersects(leftGoal)) {
+			return events | score(ctx.incPlayer1Score(), EVENT_PLAYER1_GOAL);
+		} else if (ball.intersects(rightGoal)) {
+			return events | score(ctx.incPlayer2Score(), EVENT_PLAYER2_GOAL);
+		}
+		return events;
+	}
+
+	/**
+	 * <p>
+	 * Move the ball through a single tick with a swept collision detection.
+	 * </p>
+	 * <p>
+	 * Instead of moving the ball by its full velocity and checking the overlaps
+	 * afterwards, this function finds the exact time of the first impact within
+	 * the tick, resolves the bounce at that point and then continues with the
+	 * rest of the tick with the new velocity. This prevents the ball from
+	 * tunnelling through the paddles at high speeds and makes it possible to
+	 * resolve several bounces (e.g. a paddle and a wall) within one tick.
+	 * </p>
+	 * @return The event flags for the bounces within this tick.
+	 */
+	private int moveBall() {
+		int events = EVENT_NONE;
+		double time = 1.0;
+		for (int bounce = 0; bounce < MAX_BOUNCES_PER_TICK && time > 0; bounce++) {
+			double vx = ballMovementSpeed * ballXDirection;
+			double vy = ballMovementSpeed * ballYDirection;
+
+			// find the earliest impact, only considering the sides facing the ball.
+			Box target = null;
+			double impact = NO_IMPACT;
+			double t;
+			if (vx < 0 && (t = sweep(ball, vx, vy, leftPaddle, time)) < impact) {
+				target = leftPaddle;
+				impact = t;
+			}
+			if (vx > 0 && (t = sweep(ball, vx, vy, rightPaddle, time)) < impact) {
+				target = rightPaddle;
+				impact = t;
+			}
+			if (vy < 0 && (t = sweep(ball, vx, vy, topWall, time)) < impact) {
+				target = topWall;
+				impact = t;
+			}
+			if (vy > 0 && (t = sweep(ball, vx, vy, bottomWall, time)) < impact) {
+				target = bottomWall;
+				impact = t;
+			}
+
+			if (target == null) {
+				ball.moveTo(ball.getX() + vx * time, ball.getY() + vy * time);
+				break;
+			}
+
+			// move the ball to the point of impact and resolve the bounce.
+			ball.moveTo(ball.getX() + vx * impact, ball.getY() + vy * impact);
+			time -= impact;
+			if (target == leftPaddle) {
+				// prevent ball from invading the paddle and set a new direction.
+				ball.setX(leftPaddle.getMaxX() + NUDGE);
+				ballXDirection = DIRECTION_RIGHT;
+				increaseBallSpeed();
+				events |= EVENT_PADDLE_HIT;
+			} else if (target == rightPaddle) {
+				// prevent ball from invading the paddle and set a new direction.
+				ball.setX(rightPaddle.getX() - ball.getWidth() - NUDGE);
+				ballXDirection = DIRECTION_LEFT;
+				increaseBallSpeed();
+				events |= EVENT_PADDLE_HIT;
+			} else if (target == topWall) {
+				// prevent ball from invading the wall and set a new direction.
+				ball.setY(topWall.getMaxY() + NUDGE);
+				ballYDirection = DIRECTION_DOWN;
+				events |= EVENT_WALL_HIT;
+			} else {
+				// prevent ball from invading the wall and set a new direction.
+				ball.setY(bottomWall.getY() - ball.getHeight() - NUDGE);
+				ballYDirection = DIRECTION_UP;
+				events |= EVENT_WALL_HIT;
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * <p>
+	 * Find the time of impact of a moving box against a static box.
+	 * </p>
+	 * <p>
+	 * The time is expressed as a portion of the tick, so the moving box touches
+	 * the target after it has moved by {@code time * velocity}. A box which is
+	 * already touching or overlapping the target has the impact time of zero.
+	 * </p>
+	 * @param box The moving box.
+	 * @param vx The velocity of the moving box along the x-axis.
+	 * @param vy The velocity of the moving box along the y-axis.
+	 * @param target The static box to check against.
+	 * @param maxTime The maximum time of impact to consider.
+	 * @return The time of impact or {@link #NO_IMPACT} if there's no impact.
+	 */
+	private static double sweep(Box box, double vx, double vy, Box target, double maxTime) {
+		// skip the targets that are outside of the area covered by the movement.
+		double dx = vx * maxTime;
+		double dy = vy * maxTime;
+		if (box.getMaxX() + Math.max(dx, 0) < target.getX() || box.getX() + Math.min(dx, 0) > target.getMaxX()
+				|| box.getMaxY() + Math.max(dy, 0) < target.getY() || box.getY() + Math.min(dy, 0) > target.getMaxY()) {
+			return NO_IMPACT;
+		}
+
+		double xEntry;
+		double xExit;
+		if (vx > 0) {
+			xEntry = (target.getX() - box.getMaxX()) / vx;
+			xExit = (target.getMaxX() - box.getX()) / vx;
+		} else if (vx < 0) {
+			xEntry = (target.getMaxX() - box.getX()) / vx;
+			xExit = (target.getX() - box.getMaxX()) / vx;
+		} else if (box.getMaxX() < target.getX() || box.getX() > target.getMaxX()) {
+			return NO_IMPACT;
+		} else {
+			xEntry = Double.NEGATIVE_INFINITY;
+			xExit = Double.POSITIVE_INFINITY;
+		}
+
+		double yEntry;
+		double yExit;
+		if (vy > 0) {
+			yEntry = (target.getY() - box.getMaxY()) / vy;
+			yExit = (target.getMaxY() - box.getY()) / vy;
+		} else if (vy < 0) {
+			yEntry = (target.getMaxY() - box.getY()) / vy;
+			yExit = (target.getY() - box.getMaxY()) / vy;
+		} else if (box.getMaxY() < target.getY() || box.getY() > target.getMaxY()) {
+			return NO_IMPACT;
+		} else {
+			yEntry = Double.NEGATIVE_INFINITY;
+			yExit = Double.POSITIVE_INFINITY;
+		}
+
+		double entry = Math.max(xEntry, yEntry);
+		double exit = Math.min(xExit, yExit);
+		if (entry > exit || entry > maxTime || exit < 0) {
+			return NO_IMPACT;
+		}
+		return Math.max(entry, 0);
+	}
+
+	/**
+	 * <p>
+	 * Reset the court state.
+	 * </p>
+	 * <p>
+	 * This function can be used to reset the game position into the default
+	 * position where the ball and the paddles are being repositioned in the
+	 * middle of the court. Typically used when either player scores a point.
+	 * </p>
+	 */
+	public void reset() {
+		// set the ball back into the middle of the court.
+		ball.moveTo(BALL_INITIAL_X, BALL_INITIAL_Y);
+
+		// randomise a new direction for the ball.
+		int randomValue = random.nextInt(3);
+		switch (randomValue) {
+			case 0:
+				ballXDirection = DIRECTION_LEFT;
+				ballYDirection = DIRECTION_UP;
+				break;
+			case 1:
+				ballXDirection = DIRECTION_LEFT;
+				ballYDirection = DIRECTION_DOWN;
+				break;
+			case 2:
+				ballXDirection = DIRECTION_RIGHT;
+				ballYDirection = DIRECTION_UP;
+				break;
+			case 3:
+				ballXDirection = DIRECTION_RIGHT;
+				ballYDirection = DIRECTION_DOWN;
+				break;
+			default:
+				throw new IllegalStateException("Unsupport direction random: " + randomValue);
+		}
+
+		// reset the ball movement velocity.
+		ballMovementSpeed = rules.getBallInitialSpeed();
+
+		// set paddles back into the middle of the y-axis.
+		leftPaddle.setY(paddleInitialY);
+		rightPaddle.setY(paddleInitialY);
+
+		// start a count down to evaded chaotic round starts.
+		countDown = rules.getCountdownTicks();
+	}
+
+	/**
+	 * Handle a goal for the player who just received the given score.
+	 * @param score The new score of the scoring player.
+	 * @param goalEvent The goal event flag of the scoring player.
+	 * @return The event flags for the simulated tick.
+	 */
+	private int score(int score, int goalEvent) {
+		reset();
+		return score >= WINNING_SCORE ? (goalEvent | EVENT_MATCH_OVER) : goalEvent;
+	}
+
+	/** Increase the ball movement speed after a paddle hit. */
+	private void increaseBallSpeed() {
+		ballMovementSpeed += rules.getBallSpeedIncrease();
+		ballMovementSpeed = Math.min(ballMovementSpeed, rules.getBallMaxSpeed());
+	}
+
+	/**
+	 * Move the given paddle into the given direction and keep it within walls.
+	 * @param paddle The paddle to move.
+	 * @param direction The movement direction of the paddle.
+	 */
+	private void movePaddle(Box paddle, double direction) {
+		paddle.setY(paddle.getY() + (direction * rules.getPaddleMovementSpeed()));
+		if (paddle.intersects(topWall)) {
+			paddle.setY(topWall.getMaxY() + NUDGE);
+		} else if (paddle.intersects(bottomWall)) {
+			paddle.setY(bottomWall.getY() - paddle.getHeight() - NUDGE);
+		}
+	}
+
+	/**
+	 * Save the whole mutable state of the engine into the given array.
+	 * @param states The array to save the state into.
+	 * @param offset The index of the first of {@link #STATE_SIZE} slots to use.
+	 */
+	public void saveState(long[] states, int offset) {
+		states[offset] = Double.doubleToRawLongBits(ball.getX());
+		states[offset + 1] = Double.doubleToRawLongBits(ball.getY());
+		states[offset + 2] = Double.doubleToRawLongBits(leftPaddle.getY());
+		states[offset + 3] = Double.doubleToRawLongBits(rightPaddle.getY());
+		states[offset + 4] = Double.doubleToRawLongBits(ballMovementSpeed);
+		states[offset + 5] = Double.doubleToRawLongBits(ballXDirection);
+		states[offset + 6] = Double.doubleToRawLongBits(ballYDirection);
+		states[offset + 7] = countDown;
+		states[offset + 8] = ctx.getPlayer1Score();
+		states[offset + 9] = ctx.getPlayer2Score();
+		states[offset + 10] = random.getState();
+	}
+
+	/**
+	 * Load the whole mutable state of the engine from the given array.
+	 * @param states The array containing a state saved with {@link #saveState(long[], int)}.
+	 * @param offset The index of the first of {@link #STATE_SIZE} slots to use.
+	 */
+	public void loadState(long[] states, int offset) {
+		ball.moveTo(Double.longBitsToDouble(states[offset]), Double.longBitsToDouble(states[offset + 1]));
+		leftPaddle.setY(Double.longBitsToDouble(states[offset + 2]));
+		rightPaddle.setY(Double.longBitsToDouble(states[offset + 3]));
+		ballMovementSpeed = Double.longBitsToDouble(states[offset + 4]);
+		ballXDirection = Double.longBitsToDouble(states[offset + 5]);
+		ballYDirection = Double.longBitsToDouble(states[offset + 6]);
+		countDown = (int) states[offset + 7];
+		ctx.setPlayer1Score((int) states[offset + 8]);
+		ctx.setPlayer2Score((int) states[offset + 9]);
+		random.setState(states[offset + 10]);
+	}
+
+	/**
+	 * <p>
+	 * Calculate a checksum of the whole mutable state of the engine.
+	 * </p>
+	 * <p>
+	 * Two engines which have simulated the same match have the same checksum,
+	 * so comparing the checksums tells whether the simulations have diverged.
+	 * The checksum doesn't allocate.
+	 * </p>
+	 * @return The checksum of the state.
+	 */
+	public long checksum() {
+		saveState(checksumState, 0);
+		long checksum = 0xcbf29ce484222325L;
+		for (long value : checksumState) {
+			checksum = (checksum ^ value) * 0x100000001b3L;
+		}
+		return checksum;
+	}
+
+	public PongContext getContext() {
+		return ctx;
+	}
+
+	public CourtRules getRules() {
+		return rules;
+	}
+
+	public double getBallX() {
+		return ball.getX();
+	}
+
+	public double getBallY() {
+		return ball.getY();
+	}
+
+	public double getBallMovementSpeed() {
+		return ballMovementSpeed;
+	}
+
+	public double getBallXDirection() {
+		return ballXDirection;
+	}
+
+	public double getBallYDirection() {
+		return ballYDirection;
+	}
+
+	public double getLeftPaddleY() {
+		return leftPaddle.getY();
+	}
+
+	public double getRightPaddleY() {
+		return rightPaddle.getY();
+	}
+
+	public int getCountDown() {
+		return countDown;
+	}
+
+	// ================================================
+	// = entity boxes (not to be modified by callers) =
+	// ================================================
+
+	public Box getTopWall() {
+		return topWall;
+	}
+
+	public Box getBottomWall() {
+		return bottomWall;
+	}
+
+	public Box getLeftGoal() {
+		return leftGoal;
+	}
+
+	public Box getRightGoal() {
+		return rightGoal;
+	}
+
+	public Box getLeftPaddle() {
+		return leftPaddle;
+	}
+
+	public Box getRightPaddle() {
+		return rightPaddle;
+	}
+
+	public Box getBall() {
+		return ball;
+	}
+
+}
@@ -0,0 +1,60 @@
+package net.toiviainen.pong.engine;
+
+/**
+ * <p>
+ * A random number generator with an accessible state.
+ * </p>
+ * <p>
+ * This generator produces exactly the same sequence as {@link java.util.Random}
+ * with the same seed, so the recorded matches replay just like before. Unlike
+ * the JDK generator, its whole state is a single long which can be saved and
+ * restored, which makes it possible to roll the engine back in time.
+ * </p>
+ */
+final class CourtRandom {
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long state;
+
+	CourtRandom(long seed) {
+		setSeed(seed);
+	}
+
+	void setSeed(long seed) {
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	long getState() {
+		return state;
+	}
+
+	void setState(long state) {
+		this.state = state & MASK;
+	}
+
+	/**
+	 * Get the next random integer within the range [0..bound).
+	 * @param bound The exclusive upper bound, which must be positive.
+	 * @return The next random integer.
+	 */
+	int nextInt(int bound) {
+		int r = next(31);
+		int m = bound - 1;
+		if ((bound & m) == 0) {
+			return (int) ((bound * (long) r) >> 31);
+		}
+		for (int u = r; u - (r = u % bound) + m < 0; u = next(31)) {
+			// reject the values which would skew the distribution.
+		}
+		return r;
+	}
+
+	private int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+
+}
@@ -0,0 +1,123 @@
+package net.toiviainen.pong.engine;
+
+import static net.toiviainen.pong.engine.CourtEngine.COURT_HEIGHT;
+import static net.toiviainen.pong.engine.CourtEngine.WALL_HEIGHT;
+
+import java.util.Locale;
+
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * The tunable gameplay parameters of the court engine.
+ * </p>
+ * <p>
+ * The rules are immutable, so a single instance can be shared between any
+ * amount of engines and threads. A variant is created from the
+ * {@link #DEFAULT} rules with the {@code with} functions, each of which
+ * returns a copy with a single parameter changed. The geometry of the court
+ * itself (e.g. the walls and the paddle positions) is not part of the rules.
+ * </p>
+ */
+public final class CourtRules {
+
+	/** The rules of the original game. */
+	public static final CourtRules DEFAULT = new CourtRules(3.0, 0.5, 10.0, 7.5, CourtEngine.PADDLE_HEIGHT, 50);
+
+	private final double ballInitialSpeed;
+	private final double ballSpeedIncrease;
+	private final double ballMaxSpeed;
+	private final double paddleMovementSpeed;
+	private final double paddleHeight;
+	private final int countdownTicks;
+
+	/**
+	 * Create new rules.
+	 * @param ballInitialSpeed The initial velocity of the ball movement.
+	 * @param ballSpeedIncrease The velocity added to the ball on each paddle hit.
+	 * @param ballMaxSpeed The maximum velocity of the ball movement.
+	 * @param paddleMovementSpeed The movement speed of the paddles.
+	 * @param paddleHeight The height of the paddles.
+	 * @param countdownTicks The ticks to wait before each round starts.
+	 * @throws IllegalArgumentException On any invalid values.
+	 */
+	public CourtRules(double ballInitialSpeed, double ballSpeedIncrease, double ballMaxSpeed,
+			double paddleMovementSpeed, double paddleHeight, int countdownTicks) throws IllegalArgumentException {
+		Args.isGte(ballInitialSpeed, Double.MIN_VALUE, "The initial ball speed must be positive!");
+		Args.isGte(ballSpeedIncrease, 0.0, "The ball speed increase cannot be negative!");
+		Args.isGte(ballMaxSpeed, ballInitialSpeed, "The maximum ball speed cannot be below the initial speed!");
+		Args.isGte(paddleMovementSpeed, 0.0, "The paddle movement speed cannot be negative!");
+		Args.isGte(paddleHeight, 1.0, "The paddle height must be at least one!");
+		Args.isGte(COURT_HEIGHT - 2 * WALL_HEIGHT - 1.0, paddleHeight, "The paddle must fit between the walls!");
+		Args.isGte(countdownTicks, 0, "The count down cannot be negative!");
+		this.ballInitialSpeed = ballInitialSpeed;
+		this.ballSpeedIncrease = ballSpeedIncrease;
+		this.ballMaxSpeed = ballMaxSpeed;
+		this.paddleMovementSpeed = paddleMovementSpeed;
+		this.paddleHeight = paddleHeight;
+		this.countdownTicks = countdownTicks;
+	}
+
+	public CourtRules withBallInitialSpeed(double ballInitialSpeed) throws IllegalArgumentException {
+		return new CourtRules(ballInitialSpeed, ballSpeedIncrease, ballMaxSpeed, paddleMovementSpeed, paddleHeight,
+				countdownTicks);
+	}
+
+	public CourtRules withBallSpeedIncrease(double ballSpeedIncrease) throws IllegalArgumentException {
+		return new CourtRules(ballInitialSpeed, ballSpeedIncrease, ballMaxSpeed, paddleMovementSpeed, paddleHeight,
+				countdownTicks);
+	}
+
+	public CourtRules withBallMaxSpeed(double ballMaxSpeed) throws IllegalArgumentException {
+		return new CourtRules(ballInitialSpeed, ballSpeedIncrease, ballMaxSpeed, paddleMovementSpeed, paddleHeight,
+				countdownTicks);
+	}
+
+	public CourtRules withPaddleMovementSpeed(double paddleMovementSpeed) throws IllegalArgumentException {
+		return new CourtRules(ballInitialSpeed, ballSpeedIncrease, ballMaxSpeed, paddleMovementSpeed, paddleHeight,
+				countdownTicks);
+	}
+
+	public CourtRules withPaddleHeight(double paddleHeight) throws IllegalArgumentException {
+		return new CourtRules(ballInitialSpeed, ballSpeedIncrease, ballMaxSpeed, paddleMovementSpeed, paddleHeight,
+				countdownTicks);
+	}
+
+	public CourtRules withCountdownTicks(int countdownTicks) throws IllegalArgumentException {
+		return new CourtRules(ballInitialSpeed, ballSpeedIncrease, ballMaxSpeed, paddleMovementSpeed, paddleHeight,
+				countdownTicks);
+	}
+
+	public double getBallInitialSpeed() {
+		return ballInitialSpeed;
+	}
+
+	public double getBallSpeedIncrease() {
+		return ballSpeedIncrease;
+	}
+
+	public double getBallMaxSpeed() {
+		return ballMaxSpeed;
+	}
+
+	public double getPaddleMovementSpeed() {
+		return paddleMovementSpeed;
+	}
+
+	public double getPaddleHeight() {
+		return paddleHeight;
+	}
+
+	public int getCountdownTicks() {
+		return countdownTicks;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT,
+				"CourtRules[ballInitialSpeed=%s, ballSpeedIncrease=%s, ballMaxSpeed=%s, paddleMovementSpeed=%s, "
+						+ "paddleHeight=%s, countdownTicks=%d]",
+				ballInitialSpeed, ballSpeedIncrease, ballMaxSpeed, paddleMovementSpeed, paddleHeight, countdownTicks);
+	}
+
+}
@@ -0,0 +1,22 @@
+package net.toiviainen.pong.engine;
+
+/**
+ * <p>
+ * A controller which moves a paddle without a human player.
+ * </p>
+ * <p>
+ * Controllers are asked for the movement direction of their paddle once per
+ * tick before the court engine is being stepped. The implementations should be
+ * cheap to call as they are used in batch simulations of millions of matches.
+ * </p>
+ */
+public interface PaddleController {
+
+	/**
+	 * Resolve the movement direction of the controlled paddle for the next tick.
+	 * @param engine The court engine to read the current state from.
+	 * @return The movement direction (e.g. {@link CourtEngine#DIRECTION_UP}).
+	 */
+	double nextDirection(CourtEngine engine);
+
+}
@@ -0,0 +1,79 @@
+package net.toiviainen.pong.engine;
+
+import static net.toiviainen.pong.engine.CourtEngine.STATE_SIZE;
+
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A preallocated ring buffer of the engine states of the latest ticks.
+ * </p>
+ * <p>
+ * The states are stored back to back in a single {@code long} array, where the
+ * slot of a tick is selected with its lowest bits. Saving and loading never
+ * allocates, so the ring can be used on every tick of a running match. Each
+ * slot is tagged with its tick, so a state which has been overwritten by a
+ * newer tick cannot be loaded by accident.
+ * </p>
+ */
+public final class SnapshotRing {
+
+	private final long[] states;
+	private final int[] ticks;
+	private final int mask;
+
+	/**
+	 * Create a new ring.
+	 * @param capacity The amount of ticks to keep, which must be a power of two.
+	 * @throws IllegalArgumentException On any invalid values.
+	 */
+	public SnapshotRing(int capacity) throws IllegalArgumentException {
+		Args.isGte(capacity, 1, "The capacity must be at least one!");
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("The capacity must be a power of two!");
+		}
+		states = new long[capacity * STATE_SIZE];
+		ticks = new int[capacity];
+		mask = capacity - 1;
+		clear();
+	}
+
+	/**
+	 * Forget all the saved states.
+	 */
+	public void clear() {
+		for (int i = 0; i < ticks.length; i++) {
+			ticks[i] = -1;
+		}
+	}
+
+	/**
+	 * Save the current state of the engine as the state of the given tick.
+	 * @param tick The tick of the state.
+	 * @param engine The engine to save.
+	 */
+	public void save(int tick, CourtEngine engine) {
+		int slot = tick & mask;
+		engine.saveState(states, slot * STATE_SIZE);
+		ticks[slot] = tick;
+	}
+
+	/**
+	 * Load the state of the given tick into the engine.
+	 * @param tick The tick of the state.
+	 * @param engine The engine to load into.
+	 * @throws IllegalStateException When the state of the tick is no longer kept.
+	 */
+	public void load(int tick, CourtEngine engine) throws IllegalStateException {
+		int slot = tick & mask;
+		if (ticks[slot] != tick) {
+			throw new IllegalStateException("The state of the tick is no longer kept: " + tick);
+		}
+		engine.loadState(states, slot * STATE_SIZE);
+	}
+
+	public int getCapacity() {
+		return ticks.length;
+	}
+
+}
@@ -0,0 +1,189 @@
+package net.toiviainen.pong.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * The timing statistics of the main loop.
+ * </p>
+ * <p>
+ * The main loop records the duration of each tick, the interval between the
+ * main loop pulses, the duration of the scene rendering and the age of the
+ * input events when a tick applies them into separate histograms. A pulse
+ * which arrives more than one and a half frames after the previous pulse is
+ * also counted as a missed frame.
+ * </p>
+ * <p>
+ * The statistics also track the time the main loop has been paused while the
+ * shown scene is idle and the processor time used by the whole process, so
+ * the power use of the different settings can be compared.
+ * </p>
+ */
+public final class FrameStats {
+
+	private final long frameNanos;
+
+	private final Histogram tickTimes = new Histogram();
+	private final Histogram pulseIntervals = new Histogram();
+	private final Histogram renderTimes = new Histogram();
+	private final Histogram inputLatencies = new Histogram();
+	private final AtomicLong missedFrames = new AtomicLong();
+
+	private final long startTime = System.nanoTime();
+	private final long startCpuTime = getProcessCpuTime();
+
+	private long previousPulse = -1;
+	private long pausedAt = -1;
+	private long pausedTime;
+
+	/**
+	 * Create new statistics for a main loop with the given frame duration.
+	 * @param frameNanos The expected duration of a single frame.
+	 */
+	public FrameStats(long frameNanos) {
+		this.frameNanos = frameNanos;
+	}
+
+	/**
+	 * Record the timestamp of a main loop pulse.
+	 * @param now The timestamp of the pulse in nanoseconds.
+	 */
+	public void recordPulse(long now) {
+		if (previousPulse >= 0) {
+			long interval = now - previousPulse;
+			pulseIntervals.record(interval);
+			if (interval * 2 > frameNanos * 3) {
+				missedFrames.incrementAndGet();
+			}
+		}
+		previousPulse = now;
+	}
+
+	/**
+	 * Record that the main loop has been paused, so the time until it resumes
+	 * is not counted as a pulse interval.
+	 * @param now The current timestamp in nanoseconds.
+	 */
+	public void recordPause(long now) {
+		pausedAt = now;
+		previousPulse = -1;
+	}
+
+	/**
+	 * Record that the main loop has been resumed from a pause.
+	 * @param now The current timestamp in nanoseconds.
+	 */
+	public void recordResume(long now) {
+		if (pausedAt >= 0) {
+			pausedTime += now - pausedAt;
+			pausedAt = -1;
+		}
+	}
+
+	/**
+	 * Record the duration of a single tick.
+	 * @param nanos The duration of the tick in nanoseconds.
+	 */
+	public void recordTick(long nanos) {
+		tickTimes.record(nanos);
+	}
+
+	/**
+	 * Record the duration of a single render pass.
+	 * @param nanos The duration of the rendering in nanoseconds.
+	 */
+	public void recordRender(long nanos) {
+		renderTimes.record(nanos);
+	}
+
+	public Histogram getTickTimes() {
+		return tickTimes;
+	}
+
+	public Histogram getPulseIntervals() {
+		return pulseIntervals;
+	}
+
+	public Histogram getRenderTimes() {
+		return renderTimes;
+	}
+
+	public Histogram getInputLatencies() {
+		return inputLatencies;
+	}
+
+	public long getMissedFrames() {
+		return missedFrames.get();
+	}
+
+	/**
+	 * Get the portion of the time the main loop has been paused.
+	 * @return The paused portion [0..1] of the time since the construction.
+	 */
+	public double getPausedShare() {
+		long now = System.nanoTime();
+		long paused = pausedTime + (pausedAt >= 0 ? now - pausedAt : 0);
+		return (double) paused / Math.max(1, now - startTime);
+	}
+
+	/**
+	 * Get the average processor use of the whole process.
+	 * @return The processor time per wall-clock time since the construction,
+	 *         where one means a single fully used core.
+	 */
+	public double getCpuUsage() {
+		long elapsed = Math.max(1, System.nanoTime() - startTime);
+		return (double) (getProcessCpuTime() - startCpuTime) / elapsed;
+	}
+
+	private static long getProcessCpuTime() {
+		return ProcessHandle.current().info().totalCpuDuration().map(Duration::toNanos).orElse(0L);
+	}
+
+	/**
+	 * Build a human readable summary of the statistics.
+	 * @return A multi-line summary of the statistics.
+	 */
+	public String summary() {
+		StringBuilder builder = new StringBuilder(256);
+		builder.append("         p50      p99      p99.9    max      (ms)\n");
+		appendRow(builder, "tick  ", tickTimes);
+		appendRow(builder, "pulse ", pulseIntervals);
+		appendRow(builder, "render", renderTimes);
+		appendRow(builder, "input ", inputLatencies);
+		builder.append("ticks: ").append(tickTimes.getCount());
+		builder.append("  missed frames: ").append(missedFrames.get()).append('\n');
+		builder.append(String.format(Locale.ROOT, "cpu: %.1f%% of a core  paused: %.1f%% of the time",
+				getCpuUsage() * 100, getPausedShare() * 100));
+		return builder.toString();
+	}
+
+	/**
+	 * Write the summary of the statistics into the given file.
+	 * @param file The file to write into.
+	 * @throws IOException When the writing fails.
+	 */
+	public void writeTo(Path file) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write(summary());
+			writer.write(System.lineSeparator());
+		}
+	}
+
+	private static void appendRow(StringBuilder builder, String name, Histogram histogram) {
+		builder.append(name);
+		builder.append(String.format(Locale.ROOT, " %8.3f %8.3f %8.3f %8.3f%n",
+				histogram.getValueAtPercentile(50) / 1e6,
+				histogram.getValueAtPercentile(99) / 1e6,
+				histogram.getValueAtPercentile(99.9) / 1e6,
+				histogram.getMax() / 1e6));
+	}
+
+}
@@ -0,0 +1,253 @@
+package net.toiviainen.pong.metrics;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.toiviainen.pong.PongContext;
+
+/**
+ * <p>
+ * The monitoring view of a running game.
+ * </p>
+ * <p>
+ * The metrics are read from the {@link FrameStats} of the main loop, the
+ * session counters of the {@link PongContext} and the platform beans of the
+ * JVM. The game threads only update their lock-free histograms and counters
+ * as before, and all the work of reading them is done on the thread asking
+ * for the metrics, i.e. a JMX connection or the {@link MetricsEndpoint}.
+ * </p>
+ * <p>
+ * The metrics are registered as an MXBean with {@link #register()}, and
+ * {@link #toPrometheus()} formats the same values in the Prometheus text
+ * exposition format.
+ * </p>
+ * <p>
+ * The tick and render durations are exported as Prometheus summaries whose
+ * quantiles are computed over the whole lifetime of the game, as the
+ * histograms are never reset. The {@code _sum} and {@code _count} samples of
+ * the summaries are exact, so the average duration over any recent window can
+ * still be derived from them with {@code rate()}.
+ * </p>
+ */
+public final class GameMetrics implements GameMetricsMXBean {
+
+	/** The name of the registered MXBean. */
+	public static final String OBJECT_NAME = "net.toiviainen.pong:type=GameMetrics";
+
+	/** The minimum time over which the tick rate is averaged. */
+	private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final FrameStats stats;
+	private final PongContext ctx;
+	private final Supplier<String> sceneName;
+
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+	// the rate is only touched by the reading threads.
+	private long rateTicks;
+	private long rateTime = System.nanoTime();
+	private double rate;
+
+	/**
+	 * Create new metrics for a game.
+	 * @param stats The statistics of the main loop.
+	 * @param ctx The game context with the session counters.
+	 * @param sceneName The supplier of the name of the shown scene, which is
+	 *        called from the reading threads.
+	 * @throws NullPointerException If any of the parameters is null.
+	 */
+	public GameMetrics(FrameStats stats, PongContext ctx, Supplier<String> sceneName) throws NullPointerException {
+		this.stats = requireNonNull(stats, "The stats cannot be null!");
+		this.ctx = requireNonNull(ctx, "The context cannot be null!");
+		this.sceneName = requireNonNull(sceneName, "The scene name cannot be null!");
+	}
+
+	/**
+	 * Register the metrics into the platform MBean server.
+	 * @throws JMException When the registration fails.
+	 */
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+
+	/**
+	 * Unregister the metrics from the platform MBean server, if registered.
+	 * @throws JMException When the unregistration fails.
+	 */
+	public void unregister() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	@Override
+	public long getTicks() {
+		return stats.getTickTimes().getCount();
+	}
+
+	@Override
+	public synchronized double getTicksPerSecond() {
+		long now = System.nanoTime();
+		if (now - rateTime >= RATE_WINDOW_NANOS) {
+			long ticks = getTicks();
+			rate = (ticks - rateTicks) * 1e9 / (now - rateTime);
+			rateTicks = ticks;
+			rateTime = now;
+		}
+		return rate;
+	}
+
+	@Override
+	public String getSceneName() {
+		String name = sceneName.get();
+		return name != null ? name : "";
+	}
+
+	@Override
+	public double getTickDurationP50Micros() {
+		return stats.getTickTimes().getValueAtPercentile(50) / 1e3;
+	}
+
+	@Override
+	public double getTickDurationP99Micros() {
+		return stats.getTickTimes().getValueAtPercentile(99) / 1e3;
+	}
+
+	@Override
+	public double getTickDurationMaxMicros() {
+		return stats.getTickTimes().getMax() / 1e3;
+	}
+
+	@Override
+	public double getRenderDurationP99Micros() {
+		return stats.getRenderTimes().getValueAtPercentile(99) / 1e3;
+	}
+
+	@Override
+	public long getMissedFrames() {
+		return stats.getMissedFrames();
+	}
+
+	@Override
+	public long getGoalsScored() {
+		return ctx.getGoalsScored();
+	}
+
+	@Override
+	public long getMatchesCompleted() {
+		return ctx.getMatchesCompleted();
+	}
+
+	@Override
+	public long getHeapUsedBytes() {
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	@Override
+	public long getHeapMaxBytes() {
+		MemoryUsage heap = memory.getHeapMemoryUsage();
+		return heap.getMax() >= 0 ? heap.getMax() : heap.getCommitted();
+	}
+
+	@Override
+	public long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : collectors) {
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	@Override
+	public long getGcTimeMillis() {
+		long time = 0;
+		for (GarbageCollectorMXBean collector : collectors) {
+			time += Math.max(0, collector.getCollectionTime());
+		}
+		return time;
+	}
+
+	/**
+	 * Format the metrics in the Prometheus text exposition format.
+	 * @return The metrics as text.
+	 */
+	public String toPrometheus() {
+		StringBuilder builder = new StringBuilder(2048);
+		appendMetric(builder, "pong_ticks_total", "counter", "Simulation ticks run.", getTicks());
+		appendMetric(builder, "pong_ticks_per_second", "gauge", "Simulation ticks per second.", getTicksPerSecond());
+		appendHeader(builder, "pong_tick_duration_seconds", "summary",
+				"Duration of a simulation tick, quantiles over the lifetime of the game.");
+		appendSample(builder, "pong_tick_duration_seconds{quantile=\"0.5\"}", getTickDurationP50Micros() / 1e6);
+		appendSample(builder, "pong_tick_duration_seconds{quantile=\"0.99\"}", getTickDurationP99Micros() / 1e6);
+		appendSample(builder, "pong_tick_duration_seconds{quantile=\"1\"}", getTickDurationMaxMicros() / 1e6);
+		appendTotals(builder, "pong_tick_duration_seconds", stats.getTickTimes());
+		appendHeader(builder, "pong_render_duration_seconds", "summary",
+				"Duration of rendering a frame, quantiles over the lifetime of the game.");
+		appendSample(builder, "pong_render_duration_seconds{quantile=\"0.99\"}", getRenderDurationP99Micros() / 1e6);
+		appendTotals(builder, "pong_render_duration_seconds", stats.getRenderTimes());
+		appendMetric(builder, "pong_missed_frames_total", "counter", "Pulses later than one and a half frames.",
+				getMissedFrames());
+		appendHeader(builder, "pong_scene_info", "gauge", "The scene shown by the game.");
+		appendSample(builder, "pong_scene_info{scene=\"" + escape(getSceneName()) + "\"}", 1);
+		appendMetric(builder, "pong_goals_total", "counter", "Goals scored in the session.", getGoalsScored());
+		appendMetric(builder, "pong_matches_total", "counter", "Matches completed in the session.",
+				getMatchesCompleted());
+		appendMetric(builder, "pong_heap_used_bytes", "gauge", "Used heap memory.", getHeapUsedBytes());
+		appendMetric(builder, "pong_heap_max_bytes", "gauge", "Maximum heap memory.", getHeapMaxBytes());
+		appendMetric(builder, "pong_gc_collections_total", "counter", "Garbage collections.", getGcCount());
+		appendMetric(builder, "pong_gc_time_seconds_total", "counter", "Time spent in garbage collections.",
+				getGcTimeMillis() / 1e3);
+		return builder.toString();
+	}
+
+	private static void appendMetric(StringBuilder builder, String name, String type, String help, double value) {
+		appendHeader(builder, name, type, help);
+		appendSample(builder, name, value);
+	}
+
+	private static void appendHeader(StringBuilder builder, String name, String type, String help) {
+		builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void appendSample(StringBuilder builder, String name, double value) {
+		builder.append(name).append(' ');
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			builder.append((long) value);
+		} else {
+			builder.append(String.format(Locale.ROOT, "%.9g", value));
+		}
+		builder.append('\n');
+	}
+
+	/**
+	 * Append the sum in seconds and the count samples of a duration summary.
+	 * @param builder The builder to append into.
+	 * @param name The name of the summary.
+	 * @param histogram The histogram of the durations in nanoseconds.
+	 */
+	private static void appendTotals(StringBuilder builder, String name, Histogram histogram) {
+		appendSample(builder, name + "_sum", histogram.getSum() / 1e9);
+		appendSample(builder, name + "_count", histogram.getCount());
+	}
+
+	private static String escape(String label) {
+		return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+}
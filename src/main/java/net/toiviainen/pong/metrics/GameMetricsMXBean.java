@@ -0,0 +1,45 @@
+package net.toiviainen.pong.metrics;
+
+/**
+ * <p>
+ * The management interface of the {@link GameMetrics}.
+ * </p>
+ * <p>
+ * The durations are in microseconds and the rates are averaged over the time
+ * since the previous read of the rate, but at least over a second. The
+ * duration percentiles and maximums are lifetime figures: they cover every
+ * tick and frame since the game was started, not a recent window, so a
+ * recent slowdown shows in them only slowly.
+ * </p>
+ */
+public interface GameMetricsMXBean {
+
+	long getTicks();
+
+	double getTicksPerSecond();
+
+	String getSceneName();
+
+	double getTickDurationP50Micros();
+
+	double getTickDurationP99Micros();
+
+	double getTickDurationMaxMicros();
+
+	double getRenderDurationP99Micros();
+
+	long getMissedFrames();
+
+	long getGoalsScored();
+
+	long getMatchesCompleted();
+
+	long getHeapUsedBytes();
+
+	long getHeapMaxBytes();
+
+	long getGcCount();
+
+	long getGcTimeMillis();
+
+}
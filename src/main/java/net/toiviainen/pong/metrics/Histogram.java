@@ -0,0 +1,131 @@
+package net.toiviainen.pong.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A lock-free histogram for recording durations in nanoseconds.
+ * </p>
+ * <p>
+ * The values are counted into logarithmic buckets, where each power of two is
+ * split into 32 linear sub-buckets. This keeps the relative error of the
+ * reported percentiles at about three percent while the whole histogram stays
+ * in a fixed array. Recording a value never allocates nor blocks, so values
+ * can be recorded from any thread while another thread reads the results.
+ * </p>
+ */
+public final class Histogram {
+
+	/** The amount of bits used for the linear sub-buckets. */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/** The amount of linear sub-buckets within each power of two. */
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/** The total amount of buckets required to cover all positive longs. */
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record the given value into the histogram.
+	 * @param value The value to record. Negative values are recorded as zero.
+	 */
+	public void record(long value) {
+		long v = Math.max(value, 0);
+		buckets.incrementAndGet(bucketIndex(v));
+		count.incrementAndGet();
+		sum.addAndGet(v);
+		long current;
+		while (v > (current = max.get())) {
+			if (max.compareAndSet(current, v)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Get the value at the given percentile.
+	 * @param percentile The percentile [0..100] to look for.
+	 * @return The lower bound of the bucket containing the percentile.
+	 * @throws IllegalArgumentException When the percentile is out of range.
+	 */
+	public long getValueAtPercentile(double percentile) throws IllegalArgumentException {
+		Args.isGte(percentile, 0.0, "The percentile must be equal or higher than zero!");
+		Args.isGte(100.0, percentile, "The percentile must be equal or lower than hundred!");
+
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += buckets.get(i);
+			if (seen >= target) {
+				return Math.min(bucketValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Get the amount of recorded values.
+	 * @return The amount of recorded values.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Get the exact sum of the recorded values.
+	 * @return The sum of the recorded values.
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * Get the highest recorded value.
+	 * @return The highest recorded value.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Resolve the index of the bucket for the given non-negative value.
+	 * @param value The value to resolve the bucket for.
+	 * @return The index of the bucket.
+	 */
+	private static int bucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+		return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * Resolve the lowest value that belongs into the given bucket.
+	 * @param index The index of the bucket.
+	 * @return The lowest value of the bucket.
+	 */
+	private static long bucketValue(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long subBucket = index % SUB_BUCKET_COUNT;
+		return (SUB_BUCKET_COUNT + subBucket) << shift;
+	}
+
+}
@@ -0,0 +1,94 @@
+package net.toiviainen.pong.metrics;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A tiny HTTP endpoint which serves the {@link GameMetrics} for a Prometheus
+ * scraper.
+ * </p>
+ * <p>
+ * The endpoint only listens on the loopback address, so the metrics are only
+ * visible to the monitoring agent of the machine itself. The requests are
+ * served one at a time by a single daemon thread, which also does all the
+ * work of reading the metrics, so a scrape never runs on the game threads.
+ * </p>
+ */
+public final class MetricsEndpoint implements Closeable {
+
+	/** The path of the metrics. */
+	public static final String PATH = "/metrics";
+
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final GameMetrics metrics;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	/**
+	 * Start serving the metrics at the given port of the loopback address.
+	 * @param port The port to listen to, or zero for any free port.
+	 * @param metrics The metrics to serve.
+	 * @throws IOException When the port cannot be bound.
+	 */
+	public MetricsEndpoint(int port, GameMetrics metrics) throws IOException {
+		Args.isBetween(port, 0, 65535, "The port must be within [0..65535]!");
+		this.metrics = requireNonNull(metrics, "The metrics cannot be null!");
+
+		executor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "pong-metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext(PATH, this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Get the port the endpoint is listening to.
+	 * @return The bound port.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+}
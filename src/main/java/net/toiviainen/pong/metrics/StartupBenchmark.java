@@ -0,0 +1,156 @@
+package net.toiviainen.pong.metrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A command-line entry point for measuring the startup time of the game.
+ * </p>
+ * <p>
+ * The benchmark launches the game repeatedly in a new JVM with the
+ * {@code --startup-probe=true} option, which makes the game print the time of
+ * its first rendered frame and exit. The startup time is measured from just
+ * before the process is started, so it includes the launch of the JVM, the
+ * start of the JavaFX toolkit and the construction of the welcome scene.
+ * </p>
+ * <p>
+ * By default the game is launched with the JVM and the module or class path
+ * of this benchmark. The {@code --image=directory} option launches the game
+ * from a runtime image instead, and each {@code --jvm-arg=value} is passed to
+ * the launched JVM (e.g. {@code --jvm-arg=-Xshare:off} to compare the startup
+ * without the class-data-sharing archive).
+ * </p>
+ * <p>
+ * Supported arguments: {@code --runs=N}, {@code --image=directory} and
+ * {@code --jvm-arg=value}.
+ * </p>
+ */
+public final class StartupBenchmark {
+
+	/** The prefix of the line printed by the game on its first frame. */
+	public static final String FIRST_FRAME_PREFIX = "first-frame-epoch-micros=";
+
+	/** The amount of launches by default. */
+	private static final int DEFAULT_RUNS = 10;
+
+	/** The maximum time to wait for a single launch. */
+	private static final long LAUNCH_TIMEOUT_SECONDS = 60;
+
+	private static final String MAIN_MODULE = "net.toiviainen.pong";
+	private static final String MAIN_CLASS = "net.toiviainen.pong.PongApplication";
+
+	private StartupBenchmark() {
+		throw new AssertionError("No net.toiviainen.pong.metrics.StartupBenchmark instances for you!");
+	}
+
+	/**
+	 * Build the command which launches the game.
+	 * @param image The runtime image directory or null to use this JVM.
+	 * @param jvmArgs The arguments for the launched JVM.
+	 * @return The command with its arguments.
+	 */
+	static List<String> buildCommand(String image, List<String> jvmArgs) {
+		List<String> command = new ArrayList<>();
+		if (image != null) {
+			command.add(Paths.get(image, "bin", "java").toString());
+			command.addAll(jvmArgs);
+			command.add("-m");
+			command.add(MAIN_MODULE + "/" + MAIN_CLASS);
+		} else {
+			command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+			command.addAll(jvmArgs);
+			String modulePath = System.getProperty("jdk.module.path");
+			if (modulePath != null) {
+				command.add("-p");
+				command.add(modulePath);
+				command.add("-m");
+				command.add(MAIN_MODULE + "/" + MAIN_CLASS);
+			} else {
+				command.add("-cp");
+				command.add(System.getProperty("java.class.path"));
+				command.add(MAIN_CLASS);
+			}
+		}
+		command.add("--startup-probe=true");
+		return command;
+	}
+
+	/**
+	 * Launch the game once and wait for its first frame.
+	 * @param command The command which launches the game.
+	 * @return The time from the launch to the first frame in microseconds.
+	 * @throws IOException When the game didn't report its first frame.
+	 * @throws InterruptedException When interrupted while waiting for the exit.
+	 */
+	static long launch(List<String> command) throws IOException, InterruptedException {
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		long start = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+		Process process = builder.start();
+		long firstFrame = -1;
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(FIRST_FRAME_PREFIX)) {
+					firstFrame = Long.parseLong(line.substring(FIRST_FRAME_PREFIX.length()).trim());
+				}
+			}
+		}
+		if (!process.waitFor(LAUNCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+			process.destroyForcibly();
+			throw new IOException("The game didn't exit within " + LAUNCH_TIMEOUT_SECONDS + " seconds!");
+		}
+		if (firstFrame < 0) {
+			throw new IOException("The game exited with " + process.exitValue() + " before its first frame!");
+		}
+		return firstFrame - start;
+	}
+
+	public static void main(String args[]) throws Exception {
+		int runs = DEFAULT_RUNS;
+		String image = null;
+		List<String> jvmArgs = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.startsWith("--runs=")) {
+				runs = Integer.parseInt(arg.substring("--runs=".length()));
+			} else if (arg.startsWith("--image=")) {
+				image = arg.substring("--image=".length());
+			} else if (arg.startsWith("--jvm-arg=")) {
+				jvmArgs.add(arg.substring("--jvm-arg=".length()));
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + arg);
+			}
+		}
+		Args.isGte(runs, 1, "The amount of runs must be at least one!");
+
+		List<String> command = buildCommand(image, jvmArgs);
+		System.out.printf("command: %s%n", String.join(" ", command));
+		long[] times = new long[runs];
+		for (int run = 0; run < runs; run++) {
+			times[run] = launch(command);
+			System.out.printf("run %2d: %.1f ms%n", run + 1, times[run] / 1e3);
+		}
+
+		Arrays.sort(times);
+		long total = 0;
+		for (long time : times) {
+			total += time;
+		}
+		System.out.printf("first frame (ms): min %.1f  median %.1f  mean %.1f  max %.1f%n", times[0] / 1e3,
+				times[runs / 2] / 1e3, total / 1e3 / runs, times[runs - 1] / 1e3);
+	}
+
+}
@@ -0,0 +1,121 @@
+package net.toiviainen.pong.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * An artificial latency and packet loss injector for the outgoing packets.
+ * </p>
+ * <p>
+ * This injector makes it possible to test the network play on a single
+ * machine over the loopback interface. Each outgoing packet is either dropped
+ * with the configured probability or held back for the configured delay (plus
+ * a random jitter) before it's actually being sent. The injector is meant to
+ * be used only from the network thread of a session.
+ * </p>
+ */
+public final class LatencyInjector {
+
+	/** An injector which sends all packets immediately. */
+	public static final LatencyInjector NONE = new LatencyInjector(0, 0, 0.0, 0);
+
+	/** A packet which is waiting to be sent. */
+	private static final class Pending implements Comparable<Pending> {
+		final long sendAt;
+		final ByteBuffer data;
+
+		Pending(long sendAt, ByteBuffer data) {
+			this.sendAt = sendAt;
+			this.data = data;
+		}
+
+		@Override
+		public int compareTo(Pending other) {
+			return Long.compare(sendAt, other.sendAt);
+		}
+	}
+
+	private final long delayNanos;
+	private final long jitterNanos;
+	private final double lossRate;
+	private final Random random;
+	private final PriorityQueue<Pending> pending = new PriorityQueue<>();
+
+	/**
+	 * Create a new injector.
+	 * @param delayNanos The delay added to each packet in nanoseconds.
+	 * @param jitterNanos The maximum random delay added on top of the delay.
+	 * @param lossRate The probability [0..1] of dropping a packet.
+	 * @param seed The seed for the random jitter and loss.
+	 * @throws IllegalArgumentException On any invalid values.
+	 */
+	public LatencyInjector(long delayNanos, long jitterNanos, double lossRate, long seed)
+			throws IllegalArgumentException {
+		Args.isGte(delayNanos, 0, "The delay must be equal or higher than zero!");
+		Args.isGte(jitterNanos, 0, "The jitter must be equal or higher than zero!");
+		Args.isGte(lossRate, 0.0, "The loss rate must be equal or higher than zero!");
+		Args.isGte(1.0, lossRate, "The loss rate must be equal or lower than one!");
+		this.delayNanos = delayNanos;
+		this.jitterNanos = jitterNanos;
+		this.lossRate = lossRate;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Check whether the injector modifies the traffic at all.
+	 * @return Whether any delay, jitter or loss has been configured.
+	 */
+	public boolean isActive() {
+		return delayNanos > 0 || jitterNanos > 0 || lossRate > 0;
+	}
+
+	/**
+	 * Send the given packet through the injector.
+	 * @param channel The connected channel to send with.
+	 * @param packet The packet to send.
+	 * @throws IOException When the sending fails.
+	 */
+	void send(DatagramChannel channel, ByteBuffer packet) throws IOException {
+		if (!isActive()) {
+			channel.write(packet);
+			return;
+		}
+		if (lossRate > 0 && random.nextDouble() < lossRate) {
+			return;
+		}
+		long jitter = jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0;
+		ByteBuffer copy = ByteBuffer.allocate(packet.remaining());
+		copy.put(packet);
+		copy.flip();
+		pending.add(new Pending(System.nanoTime() + delayNanos + jitter, copy));
+	}
+
+	/**
+	 * Send all packets which have been held back for long enough.
+	 * @param channel The connected channel to send with.
+	 * @throws IOException When the sending fails.
+	 */
+	void flush(DatagramChannel channel) throws IOException {
+		long now = System.nanoTime();
+		while (!pending.isEmpty() && pending.peek().sendAt <= now) {
+			channel.write(pending.poll().data);
+		}
+	}
+
+	/**
+	 * Get the time until the next held back packet should be sent.
+	 * @param max The maximum time to return.
+	 * @return The time in nanoseconds until the next packet is due.
+	 */
+	long nextDueIn(long max) {
+		Pending next = pending.peek();
+		return next == null ? max : Math.max(0, Math.min(max, next.sendAt - System.nanoTime()));
+	}
+
+}
@@ -0,0 +1,794 @@
+package net.toiviainen.pong.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.toiviainen.pong.FixedTimestep;
+import net.toiviainen.pong.metrics.Histogram;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A lockstep input synchronization session between two machines.
+ * </p>
+ * <p>
+ * Both machines run the same deterministic simulation and exchange only the
+ * encoded paddle input of each tick. The input sampled on tick {@code T} is
+ * scheduled for the tick {@code T + delay}, where the delay is derived from
+ * the measured round-trip time at the start of each match. A tick may only
+ * be simulated when the inputs of both players are known, so when the remote
+ * input hasn't arrived in time the simulation stalls instead of diverging.
+ * </p>
+ * <p>
+ * The socket is a non-blocking {@link DatagramChannel} which is served by a
+ * {@link Selector} loop on a dedicated network thread. Each input packet
+ * carries all the local inputs which the peer hasn't yet acknowledged, so a
+ * lost packet is covered by the next one without any explicit retransmission.
+ * The simulation thread and the network thread share only the input rings and
+ * their atomic progress markers, so neither of them ever blocks.
+ * </p>
+ * <p>
+ * The side which finishes a match first may start the next one while the
+ * other side still waits for the final inputs of the previous match. That's
+ * why the rings are kept separately for the even and odd matches, so the
+ * previous match can still be completed while the next one starts. The sides
+ * can never drift further apart, as neither can finish a match without the
+ * inputs of the other side.
+ * </p>
+ * <p>
+ * The hosting side controls the left paddle and the connecting side controls
+ * the right paddle. The host also decides the session seed, from which both
+ * sides derive the same engine seed for every match. The connecting side only
+ * learns the seed when the host welcomes it, so a match must not be started
+ * before the session {@link #isConnected()}.
+ * </p>
+ * <p>
+ * The sides also exchange a checksum of their simulation state every
+ * {@link #CHECKSUM_INTERVAL} ticks. A checksum which differs from the local
+ * one of the same tick fails the session just like a broken socket does, and
+ * the simulation thread learns about either from {@link #getFailure()}.
+ * </p>
+ */
+public final class LockstepSession implements Closeable {
+
+	/** The default UDP port for the hosting side. */
+	public static final int DEFAULT_PORT = 7777;
+
+	/** The amount of ticks between the exchanged state checksums. */
+	public static final int CHECKSUM_INTERVAL = 60;
+
+	/** The amount of ticks kept in the input rings (a power of two). */
+	private static final int RING_SIZE = 1024;
+	private static final int RING_MASK = RING_SIZE - 1;
+
+	/** The maximum amount of inputs carried within a single packet. */
+	private static final int MAX_INPUTS_PER_PACKET = 256;
+
+	/** The minimum input delay in ticks, even on a zero latency link. */
+	private static final int MIN_INPUT_DELAY = 2;
+
+	/** The maximum input delay in ticks, regardless of the latency. */
+	private static final int MAX_INPUT_DELAY = 30;
+
+	/** The amount of checksums kept for the comparison (a power of two). */
+	private static final int CHECKSUM_SLOTS = 8;
+	private static final int CHECKSUM_MASK = CHECKSUM_SLOTS - 1;
+
+	private static final long HELLO_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long PING_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+	private static final long RESEND_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(15);
+
+	// packet types.
+	private static final byte HELLO = 1;
+	private static final byte WELCOME = 2;
+	private static final byte PING = 3;
+	private static final byte PONG = 4;
+	private static final byte INPUT = 5;
+	private static final byte CHECKSUM = 6;
+
+	/** The progress marker of a match parity which hasn't been used yet. */
+	private static final long NO_PROGRESS = progress(-1, -1);
+
+	private final boolean host;
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private final LatencyInjector injector;
+	private final Thread thread;
+	private final long stepNanos;
+
+	private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(16 + MAX_INPUTS_PER_PACKET)
+			.order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(2048).order(ByteOrder.LITTLE_ENDIAN);
+
+	// ============================================================
+	// The state shared between the simulation and network threads.
+	// ============================================================
+
+	private final byte[][] localInputs = new byte[2][RING_SIZE];
+	private final byte[][] remoteInputs = new byte[2][RING_SIZE];
+
+	/** The match number and the latest submitted local tick per match parity. */
+	private final AtomicLongArray localProgress = new AtomicLongArray(new long[] { NO_PROGRESS, NO_PROGRESS });
+
+	/** The match number and the latest contiguously received remote tick per match parity. */
+	private final AtomicLongArray remoteProgress = new AtomicLongArray(new long[] { NO_PROGRESS, NO_PROGRESS });
+
+	/** The match number and the tick of the local checksum per slot, or none while it's written. */
+	private final AtomicLongArray localChecksumTicks = new AtomicLongArray(CHECKSUM_SLOTS);
+	private final AtomicLongArray localChecksums = new AtomicLongArray(CHECKSUM_SLOTS);
+
+	private volatile boolean connected;
+	private volatile boolean running = true;
+	private volatile Exception failure;
+	private volatile long latestChecksumTick = NO_PROGRESS;
+	private volatile long sessionSeed;
+	private volatile long smoothedRoundTrip = -1;
+
+	// ============================================================
+	// The state owned by the simulation thread.
+	// ============================================================
+
+	private int match = -1;
+	private int inputDelay = MIN_INPUT_DELAY;
+	private long stallStart;
+
+	// ============================================================
+	// The state owned by the network thread.
+	// ============================================================
+
+	private final int[] networkMatch = { -1, -1 };
+	private final int[] peerAckedTick = { -1, -1 };
+	private final int[] sentTick = { -1, -1 };
+	private final boolean[] ackPending = new boolean[2];
+	private final long[] lastSendTime = new long[2];
+	private long lastPingTime;
+	private long lastHelloTime;
+	private long sentChecksumTick = NO_PROGRESS;
+	private final long[] remoteChecksumTicks = new long[CHECKSUM_SLOTS];
+	private final long[] remoteChecksums = new long[CHECKSUM_SLOTS];
+	private final boolean[] remoteChecksumPending = new boolean[CHECKSUM_SLOTS];
+
+	// ============================================================
+	// The statistics.
+	// ============================================================
+
+	private final Histogram roundTripTimes = new Histogram();
+	private final Histogram stallTimes = new Histogram();
+	private volatile long stalls;
+	private volatile long packetsSent;
+	private volatile long packetsReceived;
+	private volatile long checksumsCompared;
+
+	private LockstepSession(boolean host, DatagramChannel channel, LatencyInjector injector, long seed,
+			long stepNanos) throws IOException {
+		this.host = host;
+		this.channel = channel;
+		this.injector = Args.notNull(injector, "The latency injector cannot be null!");
+		this.sessionSeed = seed;
+		this.stepNanos = stepNanos;
+		for (int i = 0; i < CHECKSUM_SLOTS; i++) {
+			localChecksumTicks.set(i, NO_PROGRESS);
+			remoteChecksumTicks[i] = NO_PROGRESS;
+		}
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+		thread = new Thread(this::run, "pong-net");
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * Create a session which waits for the remote player to connect.
+	 * @param port The local UDP port to listen at, or zero for any free port.
+	 * @param injector The injector for the outgoing packets.
+	 * @return The started session.
+	 * @throws IOException When the socket cannot be opened.
+	 */
+	public static LockstepSession host(int port, LatencyInjector injector) throws IOException {
+		Args.isBetween(port, 0, 65535, "The port must be within [0..65535]!");
+		DatagramChannel channel = DatagramChannel.open();
+		channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		channel.bind(new InetSocketAddress(port));
+		LockstepSession session = new LockstepSession(true, channel, injector, System.nanoTime(),
+				FixedTimestep.DEFAULT_STEP_NANOS);
+		session.thread.start();
+		return session;
+	}
+
+	/**
+	 * Create a session which connects into a hosting remote player.
+	 * @param remote The address of the hosting player.
+	 * @param injector The injector for the outgoing packets.
+	 * @return The started session.
+	 * @throws IOException When the socket cannot be opened.
+	 */
+	public static LockstepSession connect(InetSocketAddress remote, LatencyInjector injector) throws IOException {
+		Args.notNull(remote, "The remote address cannot be null!");
+		DatagramChannel channel = DatagramChannel.open();
+		channel.bind(null);
+		channel.connect(remote);
+		LockstepSession session = new LockstepSession(false, channel, injector, 0,
+				FixedTimestep.DEFAULT_STEP_NANOS);
+		session.thread.start();
+		return session;
+	}
+
+	/**
+	 * Parse a {@code host:port} pair into a socket address.
+	 * @param address The address to parse. The port defaults to {@link #DEFAULT_PORT}.
+	 * @return The parsed address.
+	 */
+	public static InetSocketAddress parseAddress(String address) {
+		Args.notNull(address, "The address cannot be null!");
+		int colon = address.lastIndexOf(':');
+		if (colon < 0) {
+			return new InetSocketAddress(address, DEFAULT_PORT);
+		}
+		return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+	}
+
+	// ============================================================
+	// The simulation thread API.
+	// ============================================================
+
+	/**
+	 * <p>
+	 * Start a new match within the session.
+	 * </p>
+	 * <p>
+	 * The input delay is re-tuned from the current round-trip estimate and the
+	 * local inputs of the first delayed ticks are submitted as neutral, so the
+	 * peer doesn't need to know the local delay at all.
+	 * </p>
+	 */
+	public void startMatch() {
+		long roundTrip = smoothedRoundTrip;
+		int delay = roundTrip < 0 ? MIN_INPUT_DELAY : (int) ((roundTrip / 2 + stepNanos - 1) / stepNanos) + 1;
+		startMatch(Math.min(MAX_INPUT_DELAY, Math.max(MIN_INPUT_DELAY, delay)));
+	}
+
+	/**
+	 * Start a new match within the session with the given input delay.
+	 * @param inputDelay The input delay in ticks, which may also be zero.
+	 * @throws IllegalArgumentException On any invalid values.
+	 */
+	public void startMatch(int inputDelay) throws IllegalArgumentException {
+		Args.isBetween(inputDelay, 0, MAX_INPUT_DELAY, "The input delay must be within [0..30]!");
+		match++;
+		this.inputDelay = inputDelay;
+		stallStart = 0;
+		localProgress.set(match & 1, progress(match, -1));
+		for (int tick = 0; tick < inputDelay; tick++) {
+			publishLocalInput(tick, (byte) 0);
+		}
+		selector.wakeup();
+	}
+
+	/**
+	 * <p>
+	 * Submit the local input sampled on the given simulation tick.
+	 * </p>
+	 * <p>
+	 * The input is scheduled for the tick {@code tick + getInputDelay()}. Each
+	 * tick may be submitted only once and in an increasing order.
+	 * </p>
+	 * @param tick The simulation tick on which the input was sampled.
+	 * @param input The encoded input.
+	 */
+	public void submitLocalInput(int tick, byte input) {
+		int target = tick + inputDelay;
+		if (target <= tick(localProgress.get(match & 1))) {
+			return;
+		}
+		publishLocalInput(target, input);
+		selector.wakeup();
+	}
+
+	/**
+	 * <p>
+	 * Check whether both inputs of the given tick are known.
+	 * </p>
+	 * <p>
+	 * A negative answer is counted as a stall, which lasts until the inputs
+	 * of the tick become available.
+	 * </p>
+	 * @param tick The simulation tick to check.
+	 * @return Whether the tick may be simulated.
+	 */
+	public boolean isTickReady(int tick) {
+		long remote = remoteProgress.get(match & 1);
+		boolean ready = match(remote) == match && tick(remote) >= tick
+				&& tick(localProgress.get(match & 1)) >= tick;
+		if (!ready) {
+			if (stallStart == 0) {
+				stallStart = System.nanoTime();
+				stalls++;
+			}
+		} else if (stallStart != 0) {
+			stallTimes.record(System.nanoTime() - stallStart);
+			stallStart = 0;
+		}
+		return ready;
+	}
+
+	/**
+	 * Get the input of the left paddle on the given tick.
+	 * @param tick A tick for which {@link #isTickReady(int)} has returned true.
+	 * @return The encoded input.
+	 */
+	public byte getLeftInput(int tick) {
+		return host ? localInputs[match & 1][tick & RING_MASK] : remoteInputs[match & 1][tick & RING_MASK];
+	}
+
+	/**
+	 * Get the input of the right paddle on the given tick.
+	 * @param tick A tick for which {@link #isTickReady(int)} has returned true.
+	 * @return The encoded input.
+	 */
+	public byte getRightInput(int tick) {
+		return host ? remoteInputs[match & 1][tick & RING_MASK] : localInputs[match & 1][tick & RING_MASK];
+	}
+
+	/**
+	 * Get the input of the local player on the given tick.
+	 * @param tick A tick for which the local input has been submitted.
+	 * @return The encoded input.
+	 */
+	public byte getLocalInput(int tick) {
+		return localInputs[match & 1][tick & RING_MASK];
+	}
+
+	/**
+	 * Get the input of the remote player on the given tick.
+	 * @param tick A tick up to {@link #getConfirmedRemoteTick()}.
+	 * @return The encoded input.
+	 */
+	public byte getRemoteInput(int tick) {
+		return remoteInputs[match & 1][tick & RING_MASK];
+	}
+
+	/**
+	 * <p>
+	 * Get the latest tick up to which all the remote inputs have arrived.
+	 * </p>
+	 * <p>
+	 * Unlike {@link #isTickReady(int)}, this function doesn't count stalls, so
+	 * it can be used to simulate ahead of the remote input with predictions.
+	 * </p>
+	 * @return The latest tick of the current match or -1 when there's none.
+	 */
+	public int getConfirmedRemoteTick() {
+		long remote = remoteProgress.get(match & 1);
+		return match(remote) == match ? tick(remote) : -1;
+	}
+
+	/**
+	 * <p>
+	 * Submit the checksum of the simulation state of the current match.
+	 * </p>
+	 * <p>
+	 * The checksums are exchanged only on every {@link #CHECKSUM_INTERVAL}
+	 * ticks and the checksums of the other ticks are ignored. Each tick may
+	 * be submitted only once and in an increasing order.
+	 * </p>
+	 * @param ticks The amount of ticks simulated for the state.
+	 * @param checksum The checksum of the state.
+	 */
+	public void submitChecksum(int ticks, long checksum) {
+		if (ticks <= 0 || ticks % CHECKSUM_INTERVAL != 0) {
+			return;
+		}
+		// hide the slot from the network thread while it's being written.
+		int slot = (ticks / CHECKSUM_INTERVAL) & CHECKSUM_MASK;
+		long key = progress(match, ticks);
+		localChecksumTicks.set(slot, NO_PROGRESS);
+		localChecksums.set(slot, checksum);
+		localChecksumTicks.set(slot, key);
+		latestChecksumTick = key;
+		selector.wakeup();
+	}
+
+	/**
+	 * Get the seed of the current match, which is the same on both sides.
+	 * @return The seed for the engine.
+	 * @throws IllegalStateException When the session isn't connected yet.
+	 */
+	public long getMatchSeed() throws IllegalStateException {
+		if (!connected) {
+			throw new IllegalStateException("The seed is not known before the session is connected!");
+		}
+		return sessionSeed * 31 + match;
+	}
+
+	/**
+	 * <p>
+	 * Get the reason why the session has failed.
+	 * </p>
+	 * <p>
+	 * The session fails when its socket breaks or when the simulations of the
+	 * sides have diverged. A failed session never recovers, so the inputs the
+	 * simulation waits for will never arrive and the match must be ended.
+	 * </p>
+	 * @return The reason of the failure or null while the session is healthy.
+	 */
+	public Exception getFailure() {
+		return failure;
+	}
+
+	public int getInputDelay() {
+		return inputDelay;
+	}
+
+	public boolean isHost() {
+		return host;
+	}
+
+	public boolean isConnected() {
+		return connected;
+	}
+
+	public int getLocalPort() {
+		try {
+			return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public Histogram getRoundTripTimes() {
+		return roundTripTimes;
+	}
+
+	public Histogram getStallTimes() {
+		return stallTimes;
+	}
+
+	public long getStalls() {
+		return stalls;
+	}
+
+	/**
+	 * Build a human readable summary of the network statistics.
+	 * @return A multi-line summary of the statistics.
+	 */
+	public String summary() {
+		StringBuilder builder = new StringBuilder(256);
+		builder.append("         p50      p99      p99.9    max      (ms)\n");
+		appendRow(builder, "rtt   ", roundTripTimes);
+		appendRow(builder, "stall ", stallTimes);
+		builder.append("input delay: ").append(inputDelay);
+		builder.append("  stalls: ").append(stalls);
+		builder.append("  packets: ").append(packetsSent).append(" sent / ");
+		builder.append(packetsReceived).append(" received");
+		builder.append("  checksums: ").append(checksumsCompared).append(" compared");
+		return builder.toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		selector.wakeup();
+		try {
+			thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		selector.close();
+		channel.close();
+	}
+
+	private void publishLocalInput(int tick, byte input) {
+		localInputs[match & 1][tick & RING_MASK] = input;
+		localProgress.set(match & 1, progress(match, tick));
+	}
+
+	private static void appendRow(StringBuilder builder, String name, Histogram histogram) {
+		builder.append(name);
+		builder.append(String.format(Locale.ROOT, " %8.3f %8.3f %8.3f %8.3f%n",
+				histogram.getValueAtPercentile(50) / 1e6,
+				histogram.getValueAtPercentile(99) / 1e6,
+				histogram.getValueAtPercentile(99.9) / 1e6,
+				histogram.getMax() / 1e6));
+	}
+
+	private static long progress(int match, int tick) {
+		return ((long) match << 32) | (tick & 0xffffffffL);
+	}
+
+	private static int match(long progress) {
+		return (int) (progress >> 32);
+	}
+
+	private static int tick(long progress) {
+		return (int) progress;
+	}
+
+	// ============================================================
+	// The network thread.
+	// ============================================================
+
+	private void run() {
+		try {
+			while (running) {
+				long timeout = injector.nextDueIn(RESEND_INTERVAL_NANOS);
+				selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeout)));
+				selector.selectedKeys().clear();
+				if (!running) {
+					break;
+				}
+				receive();
+				compareChecksums();
+				send();
+				try {
+					injector.flush(channel);
+				} catch (PortUnreachableException e) {
+					// the peer isn't listening (yet), so just keep trying.
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// the simulation thread must not keep waiting for the inputs.
+			if (running) {
+				failure = e;
+			}
+		}
+	}
+
+	private void receive() throws IOException {
+		while (true) {
+			receiveBuffer.clear();
+			SocketAddress sender;
+			try {
+				sender = channel.receive(receiveBuffer);
+			} catch (PortUnreachableException e) {
+				// the peer isn't listening (yet), so just keep trying.
+				return;
+			}
+			if (sender == null) {
+				return;
+			}
+			receiveBuffer.flip();
+			if (receiveBuffer.remaining() < 1) {
+				continue;
+			}
+			packetsReceived++;
+			byte type = receiveBuffer.get();
+			switch (type) {
+				case HELLO:
+					if (host && receiveBuffer.remaining() >= 8) {
+						if (!channel.isConnected()) {
+							channel.connect(sender);
+							connected = true;
+						}
+						sendBuffer.clear();
+						sendBuffer.put(WELCOME).putLong(sessionSeed);
+						write();
+					}
+					break;
+				case WELCOME:
+					if (!host && receiveBuffer.remaining() >= 8) {
+						sessionSeed = receiveBuffer.getLong();
+						connected = true;
+					}
+					break;
+				case PING:
+					if (connected && receiveBuffer.remaining() >= 8) {
+						long timestamp = receiveBuffer.getLong();
+						sendBuffer.clear();
+						sendBuffer.put(PONG).putLong(timestamp);
+						write();
+					}
+					break;
+				case PONG:
+					if (receiveBuffer.remaining() >= 8) {
+						long roundTrip = System.nanoTime() - receiveBuffer.getLong();
+						roundTripTimes.record(roundTrip);
+						long smoothed = smoothedRoundTrip;
+						smoothedRoundTrip = smoothed < 0 ? roundTrip : smoothed + (roundTrip - smoothed) / 8;
+					}
+					break;
+				case INPUT:
+					if (connected && receiveBuffer.remaining() >= 14) {
+						receiveInputs();
+					}
+					break;
+				case CHECKSUM:
+					if (connected && receiveBuffer.remaining() >= 16) {
+						long key = progress(receiveBuffer.getInt(), receiveBuffer.getInt());
+						int slot = (tick(key) / CHECKSUM_INTERVAL) & CHECKSUM_MASK;
+						if (match(key) >= 0 && tick(key) > 0 && key > remoteChecksumTicks[slot]) {
+							remoteChecksumTicks[slot] = key;
+							remoteChecksums[slot] = receiveBuffer.getLong();
+							remoteChecksumPending[slot] = true;
+						}
+					}
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	private void receiveInputs() {
+		int packetMatch = receiveBuffer.getInt();
+		int ackTick = receiveBuffer.getInt();
+		int firstTick = receiveBuffer.getInt();
+		int count = receiveBuffer.getShort() & 0xffff;
+		if (packetMatch < 0 || count > receiveBuffer.remaining()) {
+			return;
+		}
+		int parity = packetMatch & 1;
+		ackPending[parity] = true;
+		if (match(localProgress.get(parity)) == packetMatch) {
+			syncSlot(parity, packetMatch);
+			peerAckedTick[parity] = Math.max(peerAckedTick[parity], ackTick);
+		}
+
+		// a packet of a newer match replaces the match of the same parity.
+		long remote = remoteProgress.get(parity);
+		if (match(remote) > packetMatch) {
+			return;
+		} else if (match(remote) < packetMatch) {
+			remote = progress(packetMatch, -1);
+			remoteProgress.set(parity, remote);
+		}
+
+		// accept only the inputs which directly continue the received ones.
+		int contiguous = tick(remote);
+		byte[] inputs = remoteInputs[parity];
+		for (int i = 0; i < count; i++) {
+			byte input = receiveBuffer.get();
+			int tick = firstTick + i;
+			if (tick == contiguous + 1) {
+				inputs[tick & RING_MASK] = input;
+				contiguous = tick;
+			}
+		}
+		if (contiguous != tick(remote)) {
+			remoteProgress.set(parity, progress(packetMatch, contiguous));
+		}
+	}
+
+	/**
+	 * Compare the received checksums against the local ones of the same ticks
+	 * and fail the session when they differ.
+	 */
+	private void compareChecksums() {
+		for (int slot = 0; slot < CHECKSUM_SLOTS; slot++) {
+			if (!remoteChecksumPending[slot]) {
+				continue;
+			}
+			long key = remoteChecksumTicks[slot];
+			long localKey = localChecksumTicks.get(slot);
+			long checksum = localChecksums.get(slot);
+			if (localKey != key || localChecksumTicks.get(slot) != key) {
+				// wait for the local tick, unless it has already been replaced.
+				if (localKey != NO_PROGRESS && localKey > key) {
+					remoteChecksumPending[slot] = false;
+				}
+				continue;
+			}
+			remoteChecksumPending[slot] = false;
+			checksumsCompared++;
+			if (checksum != remoteChecksums[slot]) {
+				failure = new IllegalStateException(String.format(Locale.ROOT,
+						"The match %d diverged from the peer by the tick %d!", match(key), tick(key)));
+			}
+		}
+	}
+
+	/**
+	 * Reset the sending state of the given parity when a new match has started.
+	 * @param parity The parity of the match.
+	 * @param current The current match of the parity.
+	 */
+	private void syncSlot(int parity, int current) {
+		if (networkMatch[parity] != current) {
+			networkMatch[parity] = current;
+			peerAckedTick[parity] = -1;
+			sentTick[parity] = -1;
+		}
+	}
+
+	private void send() throws IOException {
+		long now = System.nanoTime();
+		if (!connected) {
+			if (!host && now - lastHelloTime >= HELLO_INTERVAL_NANOS) {
+				sendBuffer.clear();
+				sendBuffer.put(HELLO).putLong(now);
+				write();
+				lastHelloTime = now;
+			}
+			return;
+		}
+		if (now - lastPingTime >= PING_INTERVAL_NANOS) {
+			sendBuffer.clear();
+			sendBuffer.put(PING).putLong(now);
+			write();
+			lastPingTime = now;
+		}
+		sendInputs(0, now);
+		sendInputs(1, now);
+		sendChecksum(now);
+	}
+
+	private void sendChecksum(long now) throws IOException {
+		// send each checksum once and repeat the latest one with the pings.
+		long key = latestChecksumTick;
+		if (key == NO_PROGRESS || (key == sentChecksumTick && now != lastPingTime)) {
+			return;
+		}
+		int slot = (tick(key) / CHECKSUM_INTERVAL) & CHECKSUM_MASK;
+		long checksum = localChecksums.get(slot);
+		if (localChecksumTicks.get(slot) != key) {
+			// a newer checksum is being written, so send that one later.
+			return;
+		}
+		sendBuffer.clear();
+		sendBuffer.put(CHECKSUM).putInt(match(key)).putInt(tick(key)).putLong(checksum);
+		write();
+		sentChecksumTick = key;
+	}
+
+	private void sendInputs(int parity, long now) throws IOException {
+		long local = localProgress.get(parity);
+		int current = match(local);
+		if (current < 0) {
+			return;
+		}
+		syncSlot(parity, current);
+		int latest = tick(local);
+		boolean fresh = latest > sentTick[parity];
+		boolean resend = latest > peerAckedTick[parity] && now - lastSendTime[parity] >= RESEND_INTERVAL_NANOS;
+		if (!fresh && !resend && !ackPending[parity]) {
+			return;
+		}
+
+		// carry all the inputs which the peer hasn't yet acknowledged.
+		long remote = remoteProgress.get(parity);
+		int first = peerAckedTick[parity] + 1;
+		int count = Math.max(0, Math.min(latest - first + 1, MAX_INPUTS_PER_PACKET));
+		byte[] inputs = localInputs[parity];
+		sendBuffer.clear();
+		sendBuffer.put(INPUT);
+		sendBuffer.putInt(current);
+		sendBuffer.putInt(match(remote) == current ? tick(remote) : -1);
+		sendBuffer.putInt(first);
+		sendBuffer.putShort((short) count);
+		for (int i = 0; i < count; i++) {
+			sendBuffer.put(inputs[(first + i) & RING_MASK]);
+		}
+
+		// drop the packet if a newer match has replaced the inputs meanwhile.
+		if (match(localProgress.get(parity)) != current) {
+			return;
+		}
+		write();
+		sentTick[parity] = Math.max(sentTick[parity], first + count - 1);
+		lastSendTime[parity] = now;
+		ackPending[parity] = false;
+	}
+
+	private void write() throws IOException {
+		sendBuffer.flip();
+		try {
+			injector.send(channel, sendBuffer);
+			packetsSent++;
+		} catch (PortUnreachableException e) {
+			// a pending error from an earlier packet, the peer may come up later.
+		}
+	}
+
+}
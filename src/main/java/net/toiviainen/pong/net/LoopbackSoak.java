@@ -0,0 +1,209 @@
+package net.toiviainen.pong.net;
+
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_MATCH_OVER;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.engine.PaddleController;
+import net.toiviainen.pong.replay.InputLog;
+import net.toiviainen.pong.sim.BallFollower;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A command-line entry point for soaking the lockstep play over the loopback.
+ * </p>
+ * <p>
+ * This tool runs both sides of a network session within a single process,
+ * where each side drives its own headless {@link CourtEngine} with a scripted
+ * paddle controller as fast as the lockstep allows. The latency injector is
+ * applied to the outgoing packets of both sides. The sides exchange the state
+ * checksums during the matches like the game does, and after each match the
+ * states of both engines are also compared to verify that the sides haven't
+ * diverged, and
+ * finally the network statistics of both sides are printed. With the
+ * {@code --rollback} argument the sides use the {@link RollbackSimulation}
+ * instead of waiting for each other in lockstep.
+ * </p>
+ * <p>
+ * Supported arguments: {@code --matches=N}, {@code --max-ticks=N} (per match),
+ * {@code --delay=ms}, {@code --jitter=ms}, {@code --loss=rate} and
+ * {@code --rollback}.
+ * </p>
+ */
+public final class LoopbackSoak {
+
+	private LoopbackSoak() {
+		throw new AssertionError("No net.toiviainen.pong.net.LoopbackSoak instances for you!");
+	}
+
+	/**
+	 * Play the given amount of matches on one side of the session.
+	 * @param session The session of the side.
+	 * @param matches The amount of matches to play.
+	 * @param maxTicks The maximum amount of ticks per match.
+	 * @param rollback Whether to play with rollbacks instead of lockstep.
+	 * @return The checksums of the final engine states of each match.
+	 */
+	static long[] play(LockstepSession session, int matches, long maxTicks, boolean rollback) {
+		while (!session.isConnected()) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		long[] checksums = new long[matches];
+		PongContext ctx = new PongContext();
+		CourtEngine engine = new CourtEngine(ctx);
+		PaddleController controller = new BallFollower(session.isHost());
+		RollbackSimulation simulation = rollback ? new RollbackSimulation(engine, session) : null;
+		for (int match = 0; match < matches; match++) {
+			ctx.reset();
+			long ticks;
+			if (simulation != null) {
+				simulation.startMatch();
+				engine.restart(session.getMatchSeed());
+				ticks = playRollback(session, simulation, engine, controller, maxTicks);
+			} else {
+				session.startMatch();
+				engine.restart(session.getMatchSeed());
+				ticks = playLockstep(session, engine, controller, maxTicks);
+			}
+			long checksum = ticks;
+			checksum = checksum * 31 + ctx.getPlayer1Score();
+			checksum = checksum * 31 + ctx.getPlayer2Score();
+			checksum = checksum * 31 + Double.doubleToLongBits(engine.getBallX());
+			checksum = checksum * 31 + Double.doubleToLongBits(engine.getBallY());
+			checksum = checksum * 31 + Double.doubleToLongBits(engine.getLeftPaddleY());
+			checksum = checksum * 31 + Double.doubleToLongBits(engine.getRightPaddleY());
+			checksums[match] = checksum;
+		}
+		if (simulation != null) {
+			System.out.println(simulation.summary());
+		}
+		return checksums;
+	}
+
+	private static long playLockstep(LockstepSession session, CourtEngine engine, PaddleController controller,
+			long maxTicks) {
+		int events = 0;
+		int tick = 0;
+		while ((events & EVENT_MATCH_OVER) == 0 && tick < maxTicks) {
+			session.submitLocalInput(tick, InputLog.encode(controller.nextDirection(engine)));
+			while (!session.isTickReady(tick)) {
+				checkFailure(session);
+				LockSupport.parkNanos(50000);
+			}
+			events = engine.step(InputLog.decode(session.getLeftInput(tick)),
+					InputLog.decode(session.getRightInput(tick)));
+			tick++;
+			if (tick % LockstepSession.CHECKSUM_INTERVAL == 0) {
+				session.submitChecksum(tick, engine.checksum());
+			}
+		}
+		checkFailure(session);
+		return tick;
+	}
+
+	private static long playRollback(LockstepSession session, RollbackSimulation simulation, CourtEngine engine,
+			PaddleController controller, long maxTicks) {
+		int events = 0;
+		while ((events & EVENT_MATCH_OVER) == 0 && simulation.getTick() < maxTicks) {
+			int tick = simulation.getTick();
+			events = simulation.advance(InputLog.encode(controller.nextDirection(engine)));
+			if (simulation.getTick() == tick) {
+				checkFailure(session);
+				LockSupport.parkNanos(50000);
+			}
+		}
+
+		// both sides must agree on the final state once all the input has arrived.
+		while (!simulation.isSettled()) {
+			checkFailure(session);
+			LockSupport.parkNanos(50000);
+		}
+		checkFailure(session);
+		return simulation.getTick();
+	}
+
+	/**
+	 * Stop playing when the session has failed, as the inputs would never arrive.
+	 * @param session The session to check.
+	 * @throws IllegalStateException When the session has failed.
+	 */
+	private static void checkFailure(LockstepSession session) throws IllegalStateException {
+		Exception failure = session.getFailure();
+		if (failure != null) {
+			throw new IllegalStateException("The session has failed!", failure);
+		}
+	}
+
+	public static void main(String args[]) throws Exception {
+		int matches = 3;
+		long maxTicks = Long.MAX_VALUE;
+		boolean rollback = false;
+		long delay = 0;
+		long jitter = 0;
+		double loss = 0;
+		for (String arg : args) {
+			if (arg.startsWith("--matches=")) {
+				matches = Integer.parseInt(arg.substring("--matches=".length()));
+			} else if (arg.startsWith("--max-ticks=")) {
+				maxTicks = Long.parseLong(arg.substring("--max-ticks=".length()));
+			} else if (arg.startsWith("--delay=")) {
+				delay = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(arg.substring("--delay=".length())));
+			} else if (arg.startsWith("--jitter=")) {
+				jitter = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(arg.substring("--jitter=".length())));
+			} else if (arg.startsWith("--loss=")) {
+				loss = Double.parseDouble(arg.substring("--loss=".length()));
+			} else if (arg.equals("--rollback")) {
+				rollback = true;
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + arg);
+			}
+		}
+		Args.isGte(matches, 1, "The amount of matches must be at least one!");
+		Args.isGte(maxTicks, 1, "The maximum amount of ticks must be at least one!");
+
+		// run both sides of the session on their own threads.
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		long start = System.nanoTime();
+		try (LockstepSession host = LockstepSession.host(0, new LatencyInjector(delay, jitter, loss, 1));
+				LockstepSession client = LockstepSession.connect(
+						new InetSocketAddress(InetAddress.getLoopbackAddress(), host.getLocalPort()),
+						new LatencyInjector(delay, jitter, loss, 2))) {
+			int matchCount = matches;
+			long tickLimit = maxTicks;
+			boolean useRollback = rollback;
+			Future<long[]> hostResult = executor.submit((Callable<long[]>) () -> play(host, matchCount, tickLimit, useRollback));
+			Future<long[]> clientResult = executor.submit((Callable<long[]>) () -> play(client, matchCount, tickLimit, useRollback));
+			long[] hostChecksums = hostResult.get();
+			long[] clientChecksums = clientResult.get();
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			boolean diverged = false;
+			for (int match = 0; match < matches; match++) {
+				boolean same = hostChecksums[match] == clientChecksums[match];
+				diverged |= !same;
+				System.out.printf("match %d:     %s%n", match, same ? "in sync" : "DIVERGED");
+			}
+			System.out.printf("elapsed:     %.3f s%n", seconds);
+			System.out.println("host:");
+			System.out.println(host.summary());
+			System.out.println("client:");
+			System.out.println(client.summary());
+			if (diverged) {
+				System.exit(1);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,20 @@
+package net.toiviainen.pong.net;
+
+/**
+ * <p>
+ * The available synchronization strategies for the network play.
+ * </p>
+ * <p>
+ * The strategy is selected at the application startup with the named
+ * parameter {@code --netcode=lockstep|rollback}.
+ * </p>
+ */
+public enum NetcodeType {
+
+	/** Wait for the delayed remote input before simulating each tick. */
+	LOCKSTEP,
+
+	/** Simulate with predicted remote input and roll back on mispredictions. */
+	ROLLBACK;
+
+}
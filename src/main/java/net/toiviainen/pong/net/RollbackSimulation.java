@@ -0,0 +1,242 @@
+package net.toiviainen.pong.net;
+
+import static java.util.Objects.requireNonNull;
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_MATCH_OVER;
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_NONE;
+
+import java.util.Locale;
+
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.engine.SnapshotRing;
+import net.toiviainen.pong.metrics.Histogram;
+import net.toiviainen.pong.replay.InputLog;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A rollback driver for a network match.
+ * </p>
+ * <p>
+ * Instead of waiting for the remote input like the plain lockstep, this driver
+ * simulates each tick immediately with the local input and a predicted remote
+ * input, which is simply the latest remote input that has arrived. The state
+ * of the engine is saved into a {@link SnapshotRing} before each tick, so when
+ * the actual remote input turns out to differ from the prediction, the engine
+ * is rolled back into the state before the mispredicted tick and simulated
+ * again up to the current tick. Neither the snapshots nor the re-simulation
+ * allocate, so rolling back a few dozen ticks fits well within a frame.
+ * </p>
+ * <p>
+ * The end of the match is reported only after all the inputs leading into it
+ * have been confirmed, since a late remote input may still change the outcome.
+ * For the same reason, the state checksums are submitted to the session only
+ * once the ticks they were calculated on have been confirmed.
+ * The simulation stalls if it would get further ahead of the confirmed input
+ * than the snapshot ring can roll back.
+ * </p>
+ */
+public final class RollbackSimulation {
+
+	/** The default amount of ticks that can be rolled back. */
+	public static final int DEFAULT_CAPACITY = 32;
+
+	/** An event flag for a tick where the state was rolled back and re-simulated. */
+	public static final int EVENT_ROLLBACK = 1 << 5;
+
+	private final CourtEngine engine;
+	private final LockstepSession session;
+	private final SnapshotRing snapshots;
+	private final byte[] usedRemoteInputs;
+	private final long[] checksums;
+	private final int mask;
+
+	private int tick;
+	private int verifiedTick;
+	private int matchOverTick;
+
+	private final Histogram rollbackDepths = new Histogram();
+	private final Histogram rollbackTimes = new Histogram();
+	private long stalls;
+
+	public RollbackSimulation(CourtEngine engine, LockstepSession session) throws NullPointerException {
+		this(engine, session, DEFAULT_CAPACITY);
+	}
+
+	public RollbackSimulation(CourtEngine engine, LockstepSession session, int capacity)
+			throws NullPointerException, IllegalArgumentException {
+		this.engine = requireNonNull(engine, "The engine cannot be null!");
+		this.session = requireNonNull(session, "The session cannot be null!");
+		Args.isGte(capacity, 2, "The capacity must be at least two!");
+		this.snapshots = new SnapshotRing(capacity);
+		this.usedRemoteInputs = new byte[capacity];
+		this.checksums = new long[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Start a new match without any input delay. The engine must be restarted
+	 * with the {@link LockstepSession#getMatchSeed()} after this call.
+	 */
+	public void startMatch() {
+		session.startMatch(0);
+		snapshots.clear();
+		tick = 0;
+		verifiedTick = -1;
+		matchOverTick = -1;
+	}
+
+	/**
+	 * <p>
+	 * Advance the match with the given local input.
+	 * </p>
+	 * <p>
+	 * The returned events contain the events of all ticks simulated within this
+	 * call, including the re-simulated ones, and {@link #EVENT_ROLLBACK} if the
+	 * state was rolled back. The scores may therefore also have decreased.
+	 * </p>
+	 * @param localInput The encoded local input for the current tick.
+	 * @return The event flags of the simulated ticks.
+	 */
+	public int advance(byte localInput) {
+		session.submitLocalInput(tick, localInput);
+		int events = verify();
+		if (matchOverTick >= 0) {
+			// hold the final state until the ticks leading into it are confirmed.
+			return verifiedTick >= matchOverTick ? events | EVENT_MATCH_OVER : events;
+		}
+		if (tick - verifiedTick >= snapshots.getCapacity()) {
+			stalls++;
+			return events;
+		}
+		events |= simulate(tick);
+		tick++;
+		return events;
+	}
+
+	/**
+	 * Check whether all the simulated ticks have been confirmed.
+	 * @return Whether the current state no longer depends on any predictions.
+	 */
+	public boolean isSettled() {
+		verify();
+		return verifiedTick >= tick - 1;
+	}
+
+	/**
+	 * Verify the newly confirmed ticks and submit the checksums of their states.
+	 * @return The event flags of the re-simulated ticks.
+	 */
+	private int verify() {
+		int previous = verifiedTick;
+		int events = reconcile();
+		for (int t = previous + 1; t <= verifiedTick; t++) {
+			if ((t + 1) % LockstepSession.CHECKSUM_INTERVAL == 0) {
+				session.submitChecksum(t + 1, checksums[t & mask]);
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * Compare the newly confirmed remote inputs against the predictions and
+	 * roll back to the first mispredicted tick.
+	 * @return The event flags of the re-simulated ticks.
+	 */
+	private int reconcile() {
+		int confirmed = Math.min(session.getConfirmedRemoteTick(), tick - 1);
+		if (confirmed <= verifiedTick) {
+			return EVENT_NONE;
+		}
+		int mispredicted = -1;
+		for (int t = verifiedTick + 1; t <= confirmed; t++) {
+			if (session.getRemoteInput(t) != usedRemoteInputs[t & mask]) {
+				mispredicted = t;
+				break;
+			}
+		}
+		verifiedTick = confirmed;
+		if (mispredicted < 0) {
+			return EVENT_NONE;
+		}
+
+		// roll back into the state before the misprediction and simulate again.
+		long start = System.nanoTime();
+		int end = tick;
+		int events = EVENT_ROLLBACK;
+		snapshots.load(mispredicted, engine);
+		matchOverTick = -1;
+		for (int t = mispredicted; t < end; t++) {
+			events |= simulate(t);
+			if (matchOverTick >= 0) {
+				// the corrected timeline ends earlier than the predicted one.
+				tick = t + 1;
+				verifiedTick = Math.min(verifiedTick, t);
+				break;
+			}
+		}
+		rollbackDepths.record(end - mispredicted);
+		rollbackTimes.record(System.nanoTime() - start);
+		return events;
+	}
+
+	/**
+	 * Simulate the given tick with the best known remote input.
+	 * @param t The tick to simulate.
+	 * @return The event flags of the tick without the match over flag.
+	 */
+	private int simulate(int t) {
+		// predict the remote input to stay the same as it was when last heard.
+		int confirmed = session.getConfirmedRemoteTick();
+		byte remote;
+		if (t <= confirmed) {
+			remote = session.getRemoteInput(t);
+		} else {
+			remote = confirmed >= 0 ? session.getRemoteInput(confirmed) : 0;
+		}
+		usedRemoteInputs[t & mask] = remote;
+		snapshots.save(t, engine);
+
+		byte local = session.getLocalInput(t);
+		int events;
+		if (session.isHost()) {
+			events = engine.step(InputLog.decode(local), InputLog.decode(remote));
+		} else {
+			events = engine.step(InputLog.decode(remote), InputLog.decode(local));
+		}
+		if ((t + 1) % LockstepSession.CHECKSUM_INTERVAL == 0) {
+			checksums[t & mask] = engine.checksum();
+		}
+		if ((events & EVENT_MATCH_OVER) != 0) {
+			matchOverTick = t;
+		}
+		return events & ~EVENT_MATCH_OVER;
+	}
+
+	public int getTick() {
+		return tick;
+	}
+
+	public Histogram getRollbackDepths() {
+		return rollbackDepths;
+	}
+
+	public Histogram getRollbackTimes() {
+		return rollbackTimes;
+	}
+
+	/**
+	 * Build a human readable summary of the rollback statistics.
+	 * @return A multi-line summary of the statistics.
+	 */
+	public String summary() {
+		StringBuilder builder = new StringBuilder(128);
+		builder.append(String.format(Locale.ROOT, "rollbacks: %d  depth p50/p99/max: %d/%d/%d ticks%n",
+				rollbackDepths.getCount(), rollbackDepths.getValueAtPercentile(50),
+				rollbackDepths.getValueAtPercentile(99), rollbackDepths.getMax()));
+		builder.append(String.format(Locale.ROOT, "rollback time p50/p99/max: %.3f/%.3f/%.3f ms  stalls: %d",
+				rollbackTimes.getValueAtPercentile(50) / 1e6, rollbackTimes.getValueAtPercentile(99) / 1e6,
+				rollbackTimes.getMax() / 1e6, stalls));
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,96 @@
+package net.toiviainen.pong.replay;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>
+ * The binary format of the recorded match input logs.
+ * </p>
+ * <p>
+ * An input log starts with a fixed-size little-endian header, which contains
+ * the seed of the court engine together with the scores at the start and at
+ * the end of the match. The header is followed by two signed bytes for each
+ * simulated tick, which contain the quantized movement directions of the
+ * left and the right paddle. A match which was not finished has the final
+ * scores of -1.
+ * </p>
+ *
+ * <pre>
+ * offset  size  field
+ * 0       4     magic ("PONG")
+ * 4       2     version
+ * 6       2     reserved
+ * 8       8     engine seed
+ * 16      4     player 1 score at start
+ * 20      4     player 2 score at start
+ * 24      4     player 1 score at end
+ * 28      4     player 2 score at end
+ * 32      2*n   left and right paddle directions for n ticks
+ * </pre>
+ */
+public final class InputLog {
+
+	/** The magic number at the beginning of each input log. */
+	public static final int MAGIC = 0x504F4E47;
+
+	/** The current version of the input log format. */
+	public static final short VERSION = 1;
+
+	/** The size of the input log header in bytes. */
+	public static final int HEADER_SIZE = 32;
+
+	/** The size of a single tick record in bytes. */
+	public static final int TICK_SIZE = 2;
+
+	/** The offset of the final scores within the header. */
+	static final int FINAL_SCORES_OFFSET = 24;
+
+	/** The byte order of the input log. */
+	static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/** The scale between a movement direction and its quantized value. */
+	private static final double DIRECTION_SCALE = 127.0;
+
+	private InputLog() {
+		throw new AssertionError("No net.toiviainen.pong.replay.InputLog instances for you!");
+	}
+
+	/**
+	 * Quantize the given movement direction into a byte.
+	 * @param direction The movement direction [-1..1].
+	 * @return The quantized movement direction.
+	 */
+	public static byte encode(double direction) {
+		return (byte) Math.round(Math.max(-1.0, Math.min(1.0, direction)) * DIRECTION_SCALE);
+	}
+
+	/**
+	 * Resolve the movement direction from its quantized value.
+	 * @param value The quantized movement direction.
+	 * @return The movement direction [-1..1].
+	 */
+	public static double decode(byte value) {
+		return value / DIRECTION_SCALE;
+	}
+
+	/**
+	 * Write the header of an input log into the given buffer.
+	 * @param buffer The buffer to write into.
+	 * @param seed The seed of the court engine.
+	 * @param player1Score The score of the first player at the start.
+	 * @param player2Score The score of the second player at the start.
+	 */
+	static void writeHeader(ByteBuffer buffer, long seed, int player1Score, int player2Score) {
+		buffer.order(BYTE_ORDER);
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short) 0);
+		buffer.putLong(seed);
+		buffer.putInt(player1Score);
+		buffer.putInt(player2Score);
+		buffer.putInt(-1);
+		buffer.putInt(-1);
+	}
+
+}
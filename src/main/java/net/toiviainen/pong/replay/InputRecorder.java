@@ -0,0 +1,98 @@
+package net.toiviainen.pong.replay;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import net.toiviainen.pong.PongContext;
+
+/**
+ * <p>
+ * A recorder which writes the input of a match into an input log.
+ * </p>
+ * <p>
+ * The tick records are collected into a direct buffer, which is written into
+ * the file channel only when it becomes full. At 60 ticks per second a full
+ * buffer contains more than nine minutes of input, so recording a tick costs
+ * only two buffer writes. See {@link InputLog} for the format.
+ * </p>
+ */
+public final class InputRecorder implements Closeable {
+
+	/** The size of the write buffer in bytes. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+
+	private boolean closed = false;
+
+	/**
+	 * Create a new recorder which writes into the given file.
+	 * @param file The file to write the input log into.
+	 * @param seed The seed of the court engine.
+	 * @param ctx The game context with the scores at the start of the match.
+	 * @throws IOException When the file cannot be opened.
+	 */
+	public InputRecorder(Path file, long seed, PongContext ctx) throws IOException {
+		requireNonNull(file, "The file cannot be null!");
+		requireNonNull(ctx, "The context cannot be null!");
+
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		InputLog.writeHeader(buffer, seed, ctx.getPlayer1Score(), ctx.getPlayer2Score());
+	}
+
+	/**
+	 * Record the input of a single tick.
+	 * @param left The quantized movement direction of the left paddle.
+	 * @param right The quantized movement direction of the right paddle.
+	 * @throws IOException When writing into the file fails.
+	 */
+	public void record(byte left, byte right) throws IOException {
+		if (buffer.remaining() < InputLog.TICK_SIZE) {
+			flush();
+		}
+		buffer.put(left);
+		buffer.put(right);
+	}
+
+	/**
+	 * Finish the recording with the final scores and close the file.
+	 * @param ctx The game context with the final scores of the match.
+	 * @throws IOException When writing into the file fails.
+	 */
+	public void finish(PongContext ctx) throws IOException {
+		flush();
+		ByteBuffer scores = ByteBuffer.allocate(8).order(InputLog.BYTE_ORDER);
+		scores.putInt(ctx.getPlayer1Score());
+		scores.putInt(ctx.getPlayer2Score());
+		scores.flip();
+		channel.write(scores, InputLog.FINAL_SCORES_OFFSET);
+		close();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			flush();
+			channel.close();
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+}
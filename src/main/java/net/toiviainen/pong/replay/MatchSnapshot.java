@@ -0,0 +1,159 @@
+package net.toiviainen.pong.replay;
+
+import static java.util.Objects.requireNonNull;
+import static net.toiviainen.pong.engine.CourtEngine.STATE_SIZE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import net.toiviainen.pong.engine.CourtEngine;
+
+/**
+ * <p>
+ * A snapshot of a match in progress, which can be saved into a file and
+ * resumed later.
+ * </p>
+ * <p>
+ * The snapshot contains the whole state of the court engine as saved by
+ * {@link CourtEngine#saveState(long[], int)}, which also includes the scores
+ * of the game context, together with the tick of the match. The snapshot file
+ * has a fixed-size little-endian layout:
+ * </p>
+ *
+ * <pre>
+ * offset  size  field
+ * 0       4     magic ("PSAV")
+ * 4       2     version
+ * 6       2     engine state size in longs
+ * 8       4     match tick
+ * 12      4     reserved
+ * 16      8*n   engine state
+ * </pre>
+ * <p>
+ * The file is written into a temporary file next to the target, forced onto
+ * the storage device and only then moved over the target, so a crash in the
+ * middle of a write leaves the previous snapshot in place instead of an empty
+ * or a partially written file. The buffers are allocated once, so saving a
+ * snapshot only costs the file system operations. Those may take milliseconds,
+ * so the game saves its snapshots with a {@link SnapshotWriter}.
+ * </p>
+ */
+public final class MatchSnapshot {
+
+	/** The magic number at the beginning of each snapshot. */
+	public static final int MAGIC = 0x50534156;
+
+	/** The current version of the snapshot format. */
+	public static final short VERSION = 1;
+
+	/** The size of the snapshot file in bytes. */
+	public static final int FILE_SIZE = 16 + STATE_SIZE * Long.BYTES;
+
+	private final long[] state = new long[STATE_SIZE];
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(FILE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+	private int matchTick;
+
+	/**
+	 * Capture the current state of the given engine.
+	 * @param engine The engine to capture.
+	 * @param matchTick The amount of ticks simulated in the match.
+	 */
+	public void capture(CourtEngine engine, int matchTick) {
+		engine.saveState(state, 0);
+		this.matchTick = matchTick;
+	}
+
+	/**
+	 * Restore the captured state into the given engine and its context.
+	 * @param engine The engine to restore.
+	 */
+	public void restore(CourtEngine engine) {
+		engine.loadState(state, 0);
+	}
+
+	public int getMatchTick() {
+		return matchTick;
+	}
+
+	/**
+	 * Write the captured state atomically and durably into the given file.
+	 * @param file The file to write into.
+	 * @throws IOException When writing, forcing or moving the file fails.
+	 */
+	public void write(Path file) throws IOException {
+		requireNonNull(file, "The file cannot be null!");
+
+		buffer.clear();
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short) STATE_SIZE);
+		buffer.putInt(matchTick);
+		buffer.putInt(0);
+		for (long value : state) {
+			buffer.putLong(value);
+		}
+		buffer.flip();
+
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			// the rename may reach the disk before the data otherwise.
+			channel.force(true);
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Read a snapshot from the given file.
+	 * @param file The file to read from.
+	 * @return The snapshot read from the file.
+	 * @throws IOException When reading fails or the file is not a valid snapshot.
+	 */
+	public static MatchSnapshot read(Path file) throws IOException {
+		requireNonNull(file, "The file cannot be null!");
+
+		MatchSnapshot snapshot = new MatchSnapshot();
+		ByteBuffer buffer = snapshot.buffer;
+		buffer.clear();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() != FILE_SIZE) {
+				throw new IOException("The snapshot has an invalid size: " + channel.size());
+			}
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new IOException("The snapshot ended unexpectedly!");
+				}
+			}
+		}
+		buffer.flip();
+
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("The file is not a match snapshot: " + file);
+		}
+		short version = buffer.getShort();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot version: " + version);
+		}
+		short stateSize = buffer.getShort();
+		if (stateSize != STATE_SIZE) {
+			throw new IOException("Unsupported engine state size: " + stateSize);
+		}
+		snapshot.matchTick = buffer.getInt();
+		buffer.getInt();
+		for (int i = 0; i < STATE_SIZE; i++) {
+			snapshot.state[i] = buffer.getLong();
+		}
+		return snapshot;
+	}
+
+}
@@ -0,0 +1,128 @@
+package net.toiviainen.pong.replay;
+
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_MATCH_OVER;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A command-line entry point for replaying recorded matches.
+ * </p>
+ * <p>
+ * The replay maps the input log into memory and runs the recorded input
+ * through a headless {@link CourtEngine} as fast as possible. When the log
+ * contains the final scores of the match, the scores of the replay are being
+ * verified against them. The replay can be repeated to use the recorded
+ * matches as performance regression inputs.
+ * </p>
+ * <p>
+ * Usage: {@code ReplayRunner <file>... [--repeat=N]}
+ * </p>
+ */
+public final class ReplayRunner {
+
+	private ReplayRunner() {
+		throw new AssertionError("No net.toiviainen.pong.replay.ReplayRunner instances for you!");
+	}
+
+	/**
+	 * Replay the given input log.
+	 * @param log The contents of the input log.
+	 * @param ctx The game context to store the scores into.
+	 * @return The amount of replayed ticks.
+	 * @throws IllegalArgumentException When the input log is not valid.
+	 */
+	public static long replay(ByteBuffer log, PongContext ctx) throws IllegalArgumentException {
+		ByteBuffer buffer = log.duplicate().order(InputLog.BYTE_ORDER);
+		Args.isGte(buffer.remaining(), InputLog.HEADER_SIZE, "The input log is too short!");
+		if (buffer.getInt() != InputLog.MAGIC) {
+			throw new IllegalArgumentException("The input log has an invalid magic number!");
+		}
+		short version = buffer.getShort();
+		if (version != InputLog.VERSION) {
+			throw new IllegalArgumentException("Unsupported input log version: " + version);
+		}
+		buffer.getShort();
+		long seed = buffer.getLong();
+		ctx.setPlayer1Score(buffer.getInt());
+		ctx.setPlayer2Score(buffer.getInt());
+		buffer.getInt();
+		buffer.getInt();
+
+		// run the recorded ticks through the engine.
+		CourtEngine engine = new CourtEngine(ctx, seed);
+		long ticks = 0;
+		while (buffer.remaining() >= InputLog.TICK_SIZE) {
+			double left = InputLog.decode(buffer.get());
+			double right = InputLog.decode(buffer.get());
+			ticks++;
+			if ((engine.step(left, right) & EVENT_MATCH_OVER) != 0) {
+				break;
+			}
+		}
+		return ticks;
+	}
+
+	/**
+	 * Replay the given input log and verify the final scores.
+	 * @param file The input log file.
+	 * @param repeat The amount of times to replay the match.
+	 * @throws IOException When the file cannot be read.
+	 * @throws IllegalStateException When the replay doesn't match the record.
+	 */
+	private static void run(Path file, int repeat) throws IOException, IllegalStateException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			log.order(InputLog.BYTE_ORDER);
+			int expectedPlayer1Score = log.getInt(InputLog.FINAL_SCORES_OFFSET);
+			int expectedPlayer2Score = log.getInt(InputLog.FINAL_SCORES_OFFSET + 4);
+
+			PongContext ctx = new PongContext();
+			long ticks = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < repeat; i++) {
+				ticks += replay(log, ctx);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			String result;
+			if (expectedPlayer1Score < 0) {
+				result = "unfinished";
+			} else if (expectedPlayer1Score == ctx.getPlayer1Score() && expectedPlayer2Score == ctx.getPlayer2Score()) {
+				result = "ok";
+			} else {
+				throw new IllegalStateException("Replay of " + file + " ended " + ctx.getPlayer2Score() + " - "
+						+ ctx.getPlayer1Score() + " but was recorded as " + expectedPlayer2Score + " - "
+						+ expectedPlayer1Score);
+			}
+			System.out.printf("%s: %s, %d - %d, %d ticks, %.0f ticks/sec%n", file, result, ctx.getPlayer2Score(),
+					ctx.getPlayer1Score(), ticks / repeat, ticks / seconds);
+		}
+	}
+
+	public static void main(String args[]) throws Exception {
+		int repeat = 1;
+		for (String arg : args) {
+			if (arg.startsWith("--repeat=")) {
+				repeat = Integer.parseInt(arg.substring("--repeat=".length()));
+			}
+		}
+		Args.isGte(repeat, 1, "The repeat count must be at least one!");
+		for (String arg : args) {
+			if (!arg.startsWith("--")) {
+				run(Paths.get(arg), repeat);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,171 @@
+package net.toiviainen.pong.replay;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.util.TripleBuffer;
+
+/**
+ * <p>
+ * A writer which saves the match snapshots into a file on its own thread.
+ * </p>
+ * <p>
+ * Writing a snapshot durably takes a flush onto the storage device and a
+ * rename, which may take milliseconds, so the thread running the ticks only
+ * captures the engine state into a preallocated {@link MatchSnapshot} and
+ * hands it over through a {@link TripleBuffer}. The writer thread polls for
+ * the requests instead of being woken up, as waking it up could switch to it
+ * in the middle of a tick on a single core, and the snapshots are only saved
+ * every few seconds anyway. It then writes the latest handed over snapshot,
+ * or deletes the file when the latest request was to delete it, so the
+ * requests submitted between two polls are coalesced into the latest one.
+ * </p>
+ * <p>
+ * A failed write is only reported, as losing a snapshot must not end the
+ * match, and the saving is given up after a few consecutive failures.
+ * Closing the writer completes the latest request before returning.
+ * </p>
+ */
+public final class SnapshotWriter implements Closeable {
+
+	/** The amount of consecutive failed writes after which to give up. */
+	public static final int MAX_FAILURES = 3;
+
+	/** The interval between checking for new requests. */
+	private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	/** A request handed over to the writer thread. */
+	private static final class Request {
+		final MatchSnapshot snapshot = new MatchSnapshot();
+		boolean delete;
+	}
+
+	private final Path file;
+	private final TripleBuffer<Request> requests = new TripleBuffer<>(Request::new);
+	private final Thread thread;
+
+	private volatile long submitted;
+	private volatile boolean closed;
+	private volatile boolean disabled;
+
+	// the writer thread owns these.
+	private long handled;
+	private int failures;
+
+	/**
+	 * Create a new writer and start its thread.
+	 * @param file The snapshot file to write into.
+	 * @throws NullPointerException If the file is null.
+	 */
+	public SnapshotWriter(Path file) throws NullPointerException {
+		this.file = requireNonNull(file, "The file cannot be null!");
+		thread = new Thread(this::run, "pong-snapshot");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Capture the current state of the match and save it in the background.
+	 * Called by the thread which runs the ticks.
+	 * @param engine The engine to capture.
+	 * @param matchTick The amount of ticks simulated in the match.
+	 */
+	public void save(CourtEngine engine, int matchTick) {
+		if (disabled) {
+			return;
+		}
+		Request request = requests.getBack();
+		request.snapshot.capture(engine, matchTick);
+		request.delete = false;
+		submit();
+	}
+
+	/**
+	 * Delete the snapshot file in the background, as the match has finished
+	 * and it must not be resumed. Called by the thread which runs the ticks.
+	 */
+	public void delete() {
+		requests.getBack().delete = true;
+		submit();
+	}
+
+	private void submit() {
+		requests.publish();
+		// a single thread submits at a time, so the increment doesn't race.
+		submitted++;
+	}
+
+	private void run() {
+		while (true) {
+			// read the flag first, so the request submitted before the closing
+			// is always handled.
+			boolean closing = closed;
+			long latest = submitted;
+			if (latest != handled) {
+				handled = latest;
+				handle(requests.getFront());
+			} else if (closing) {
+				return;
+			} else {
+				LockSupport.parkNanos(this, POLL_NANOS);
+			}
+		}
+	}
+
+	private void handle(Request request) {
+		if (request.delete) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				System.err.println("Unable to delete the match snapshot: " + e.getMessage());
+			}
+			return;
+		}
+		try {
+			request.snapshot.write(file);
+			failures = 0;
+		} catch (IOException e) {
+			System.err.println("Unable to save the match snapshot: " + e.getMessage());
+			if (++failures >= MAX_FAILURES) {
+				System.err.println("Giving up saving the match snapshots after " + failures + " failures.");
+				disabled = true;
+			}
+		}
+	}
+
+	/**
+	 * Check whether the saving has been given up after repeated failures.
+	 * @return Whether the snapshots are no longer saved.
+	 */
+	public boolean isDisabled() {
+		return disabled;
+	}
+
+	/**
+	 * Complete the latest request and stop the writer thread.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(thread);
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -1,7 +1,16 @@
 package net.toiviainen.pong.scene;
 
+import javafx.geometry.VPos;
+import javafx.scene.Group;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.metrics.FrameStats;
 
 /**
  * <p>
@@ -10,13 +19,104 @@ import javafx.scene.Scene;
  * <p>
  * This abstraction allows the game to easily change between the scenes. It also
  * provides a way to ensure that each scene contains a support for ticking the
- * current game logic related to the scene.
+ * current game logic related to the scene. The scenes are constructed only
+ * once, so each scene refreshes its state when it's being entered.
+ * </p>
+ * <p>
+ * Each scene also contains a performance overlay which shows the main loop
+ * timing statistics. The overlay is toggled with the {@link #HUD_KEY}.
  * </p>
  */
 public abstract class AbstractScene extends Scene {
 
+	/** The key which toggles the performance overlay. */
+	public static final KeyCode HUD_KEY = KeyCode.F3;
+
+	/** The interval between the performance overlay updates. */
+	private static final long HUD_UPDATE_NANOS = 250000000L;
+
+	private final Text hud;
+
+	private long hudUpdatedAt;
+
 	public AbstractScene(Parent root, int width, int height) {
 		super(root, width, height);
+
+		hud = new Text();
+		hud.setTextOrigin(VPos.TOP);
+		hud.setFont(Font.font("Monospaced", 12));
+		hud.setFill(Color.LIME);
+		hud.setLayoutX(30);
+		hud.setLayoutY(30);
+		hud.setVisible(false);
+
+		// use a filter so the scenes can still freely define their key handlers.
+		addEventFilter(KeyEvent.KEY_PRESSED, x -> {
+			if (x.getCode() == HUD_KEY) {
+				toggleHud();
+			}
+		});
+	}
+
+	/**
+	 * Toggle the visibility of the performance overlay.
+	 */
+	private void toggleHud() {
+		Parent root = getRoot();
+		if (!(root instanceof Group)) {
+			throw new AssertionError("The scene root is not a Group instance!");
+		}
+
+		// keep the overlay as the topmost child of the scene root.
+		Group rootGroup = (Group) root;
+		if (hud.isVisible()) {
+			hud.setVisible(false);
+			rootGroup.getChildren().remove(hud);
+		} else {
+			hud.setVisible(true);
+			rootGroup.getChildren().add(hud);
+			hudUpdatedAt = 0;
+		}
+	}
+
+	/**
+	 * Update the performance overlay, if visible, from the given statistics.
+	 * @param stats The main loop statistics.
+	 * @param now The current timestamp in nanoseconds.
+	 */
+	public final void renderHud(FrameStats stats, long now) {
+		if (hud.isVisible() && (hudUpdatedAt == 0 || now - hudUpdatedAt >= HUD_UPDATE_NANOS)) {
+			hud.setText(stats.summary());
+			hudUpdatedAt = now;
+		}
+	}
+
+	/**
+	 * Check whether the performance overlay is currently visible.
+	 * @return Whether the overlay is visible.
+	 */
+	public final boolean isHudVisible() {
+		return hud.isVisible();
+	}
+
+	/**
+	 * <p>
+	 * A function that is called each time before the scene is being shown.
+	 * </p>
+	 * <p>
+	 * The scene instances are reused for the whole lifetime of the application,
+	 * so this function should reset all the state the scene may have left from
+	 * the previous time it was shown.
+	 * </p>
+	 * @param ctx The game context of the application.
+	 */
+	public abstract void onEnter(PongContext ctx);
+
+	/**
+	 * A function that is called on the current scene when the application stops.
+	 */
+	public void onStop() {
+		// ... nothing to do by default ...
 	}
 
 	/**
@@ -24,4 +124,44 @@ public abstract class AbstractScene extends Scene {
 	 */
 	public abstract void tick();
 
+	/**
+	 * <p>
+	 * A render function that is called once per main loop pulse.
+	 * </p>
+	 * <p>
+	 * The main loop runs a fixed amount of ticks per second, so a pulse may run
+	 * none or several ticks before it calls this function. The provided alpha
+	 * describes how far the time has proceeded from the latest tick towards the
+	 * next one and it can be used to interpolate the rendered state.
+	 * </p>
+	 * @param alpha The portion [0..1) of a tick elapsed since the latest tick.
+	 */
+	public void render(double alpha) {
+		// ... nothing to do by default ...
+	}
+
+	/**
+	 * <p>
+	 * Check whether the scene has nothing to update until the next input.
+	 * </p>
+	 * <p>
+	 * The main loop stops pulsing while the shown scene is idle and the
+	 * performance overlay is hidden, and it starts again on the next key event
+	 * or scene change. Scenes which change on their own must not be idle.
+	 * </p>
+	 * @return Whether the scene is idle.
+	 */
+	public boolean isIdle() {
+		return false;
+	}
+
+	/**
+	 * Check whether the scene runs its ticks on its own thread, in which case
+	 * the main loop only renders the scene and doesn't call {@link #tick()}.
+	 * @return Whether the scene has its own physics thread.
+	 */
+	public boolean hasPhysicsThread() {
+		return false;
+	}
+
 }
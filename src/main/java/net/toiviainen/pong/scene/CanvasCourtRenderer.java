@@ -0,0 +1,119 @@
+package net.toiviainen.pong.scene;
+
+import static net.toiviainen.pong.engine.CourtEngine.COURT_HEIGHT;
+import static net.toiviainen.pong.engine.CourtEngine.COURT_WIDTH;
+import static net.toiviainen.pong.scene.ScoreIndicator.GLYPHS;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import net.toiviainen.pong.engine.Box;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A court renderer which draws the whole court into a single canvas.
+ * </p>
+ * <p>
+ * Instead of keeping a retained node for each court item, this renderer
+ * redraws the court from the primitive state on each frame. This keeps the
+ * scene graph at a single node, which avoids the per-node property and dirty
+ * region tracking of the scene graph. When the static layer is cached, the
+ * walls and the center line are drawn only once into a separate canvas below
+ * and each frame only clears and redraws the moving items and the scores.
+ * </p>
+ */
+class CanvasCourtRenderer implements CourtRenderer {
+
+	private final Node root;
+	private final Canvas canvas;
+	private final GraphicsContext graphics;
+	private final CourtEngine engine;
+	private final boolean cacheStaticLayer;
+
+	private final Box leftPaddle;
+	private final Box rightPaddle;
+	private final Box ball;
+
+	private int leftScore;
+	private int rightScore;
+
+	CanvasCourtRenderer(CourtEngine engine, boolean cacheStaticLayer) {
+		this.engine = engine;
+		this.cacheStaticLayer = cacheStaticLayer;
+		leftPaddle = engine.getLeftPaddle();
+		rightPaddle = engine.getRightPaddle();
+		ball = engine.getBall();
+
+		canvas = new Canvas(COURT_WIDTH, COURT_HEIGHT);
+		graphics = canvas.getGraphicsContext2D();
+		if (cacheStaticLayer) {
+			root = new Group(StaticCourtLayer.createCanvas(engine), canvas);
+		} else {
+			root = canvas;
+		}
+	}
+
+	@Override
+	public Node getNode() {
+		return root;
+	}
+
+	@Override
+	public void setPlayerScore(int player, int score) throws IllegalArgumentException {
+		Args.isBetween(player, 1, 2, "The number must be either one or two!");
+		Args.isGte(score, 0, "The score must be equal or higher than zero!");
+
+		if (player == 1) {
+			rightScore = score;
+		} else if (player == 2) {
+			leftScore = score;
+		}
+	}
+
+	@Override
+	public void draw(double ballX, double ballY, double leftPaddleY, double rightPaddleY) {
+		GraphicsContext g = graphics;
+		if (cacheStaticLayer) {
+			g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+			g.setFill(Color.WHITE);
+		} else {
+			g.setFill(Color.BLACK);
+			g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+			StaticCourtLayer.draw(g, engine);
+		}
+
+		drawScore(leftScore, LEFT_SCORE_X, true);
+		drawScore(rightScore, RIGHT_SCORE_X, false);
+
+		g.fillRect(leftPaddle.getX(), leftPaddleY, leftPaddle.getWidth(), leftPaddle.getHeight());
+		g.fillRect(rightPaddle.getX(), rightPaddleY, rightPaddle.getWidth(), rightPaddle.getHeight());
+		g.fillRect(ballX, ballY, ball.getWidth(), ball.getHeight());
+	}
+
+	/**
+	 * Draw the given score with the shared digit glyphs.
+	 * @param score The score to draw.
+	 * @param x The x-coordinate of the score indicator.
+	 * @param growLeft Whether additional digits are drawn to the left side.
+	 */
+	private void drawScore(int score, double x, boolean growLeft) {
+		int slotCount = 1;
+		for (int remaining = score / 10; remaining > 0; remaining /= 10) {
+			slotCount++;
+		}
+
+		int remaining = score;
+		for (int slot = 0; slot < slotCount; slot++) {
+			double slotX = x + ScoreIndicator.slotOffset(slot, slotCount, growLeft);
+			for (double[] rect : GLYPHS[remaining % 10]) {
+				graphics.fillRect(slotX + rect[0], SCORE_Y + rect[1], rect[2], rect[3]);
+			}
+			remaining /= 10;
+		}
+	}
+
+}
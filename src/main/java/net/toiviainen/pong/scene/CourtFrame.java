@@ -0,0 +1,32 @@
+package net.toiviainen.pong.scene;
+
+/**
+ * <p>
+ * The state of the court published by the physics thread for rendering.
+ * </p>
+ * <p>
+ * A frame contains the moving items of the latest tick and of the tick before
+ * it, so the renderer can interpolate between them, and the timestamp of the
+ * latest tick for computing the interpolation alpha. The frames are reused
+ * through a {@link net.toiviainen.pong.util.TripleBuffer}, so they are only
+ * written by the physics thread before being published.
+ * </p>
+ */
+final class CourtFrame {
+
+	long time;
+
+	double previousBallX;
+	double previousBallY;
+	double previousLeftPaddleY;
+	double previousRightPaddleY;
+
+	double ballX;
+	double ballY;
+	double leftPaddleY;
+	double rightPaddleY;
+
+	int player1Score;
+	int player2Score;
+
+}
@@ -0,0 +1,159 @@
+package net.toiviainen.pong.scene;
+
+import static java.util.Objects.requireNonNull;
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_MATCH_OVER;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.metrics.FrameStats;
+import net.toiviainen.pong.replay.InputRecorder;
+import net.toiviainen.pong.sim.Difficulty;
+import net.toiviainen.pong.sim.InterceptController;
+
+/**
+ * <p>
+ * The resources of the match played in the {@link CourtScene}.
+ * </p>
+ * <p>
+ * The court scene is constructed only once, but each match it begins gets its
+ * own computer controller, input recording and {@link PhysicsThread}. These
+ * are owned by this class, which releases the resources of the previous match
+ * whenever a new one begins, so a long session never accumulates the threads
+ * or the open files of the earlier matches.
+ * </p>
+ */
+final class CourtMatch {
+
+	private final Difficulty difficulty;
+	private final Path recordDirectory;
+	private final FrameStats stats;
+
+	private InterceptController computer;
+	private InputRecorder recorder;
+	private PhysicsThread physics;
+
+	/**
+	 * Create the resources of the court scene matches.
+	 * @param difficulty The difficulty of the computer or null for none.
+	 * @param recordDirectory The directory of the recordings or null for none.
+	 * @param stats The statistics for the tick durations or null to skip them.
+	 */
+	CourtMatch(Difficulty difficulty, Path recordDirectory, FrameStats stats) {
+		this.difficulty = difficulty;
+		this.recordDirectory = recordDirectory;
+		this.stats = stats;
+	}
+
+	/**
+	 * Begin a new match, releasing the resources of the previous one.
+	 * @param seed The seed of the match.
+	 * @param ctx The game context with the scores at the start of the match.
+	 * @param local Whether the match is a local one, which may be played
+	 *        against the computer.
+	 * @param recorded Whether the match may be recorded.
+	 * @throws UncheckedIOException When the recording cannot be started.
+	 */
+	void begin(long seed, PongContext ctx, boolean local, boolean recorded) throws UncheckedIOException {
+		end();
+
+		// let the computer control the left paddle in the local matches.
+		computer = difficulty != null && local ? new InterceptController(true, difficulty, seed) : null;
+
+		if (recordDirectory != null && recorded) {
+			Path file = recordDirectory.resolve("match-" + System.currentTimeMillis() + ".pong");
+			try {
+				recorder = new InputRecorder(file, seed, ctx);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to record the match into: " + file, e);
+			}
+		}
+	}
+
+	/**
+	 * Start running the ticks of the match on its own physics thread.
+	 * @param tick The tick which returns whether to continue the match.
+	 * @throws NullPointerException If the tick is null.
+	 */
+	void startPhysics(BooleanSupplier tick) throws NullPointerException {
+		stopPhysics();
+		physics = new PhysicsThread(requireNonNull(tick, "The tick cannot be null!"), stats);
+		physics.start();
+	}
+
+	/**
+	 * Stop the physics thread of the match, if any.
+	 */
+	void stopPhysics() {
+		if (physics != null) {
+			physics.shutdown();
+			physics = null;
+		}
+	}
+
+	/**
+	 * Record the input of a tick, finishing the recording when the match is
+	 * over. Called by the thread which runs the ticks.
+	 * @param left The quantized movement direction of the left paddle.
+	 * @param right The quantized movement direction of the right paddle.
+	 * @param events The event flags of the tick.
+	 * @param ctx The game context with the current scores.
+	 * @throws UncheckedIOException When writing the recording fails.
+	 */
+	void record(byte left, byte right, int events, PongContext ctx) throws UncheckedIOException {
+		if (recorder == null) {
+			return;
+		}
+		try {
+			recorder.record(left, right);
+			if ((events & EVENT_MATCH_OVER) != 0) {
+				recorder.finish(ctx);
+				recorder = null;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to record the match input!", e);
+		}
+	}
+
+	/**
+	 * Close the recording of an unfinished match, if any.
+	 * @throws UncheckedIOException When closing the recording fails.
+	 */
+	private void closeRecorder() throws UncheckedIOException {
+		if (recorder != null) {
+			try {
+				recorder.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to close the match recording!", e);
+			} finally {
+				recorder = null;
+			}
+		}
+	}
+
+	/**
+	 * Release all the resources of the match. The input of an unfinished match
+	 * is kept in its recording.
+	 */
+	void end() {
+		stopPhysics();
+		closeRecorder();
+		computer = null;
+	}
+
+	InterceptController getComputer() {
+		return computer;
+	}
+
+	InputRecorder getRecorder() {
+		return recorder;
+	}
+
+	PhysicsThread getPhysics() {
+		return physics;
+	}
+
+}
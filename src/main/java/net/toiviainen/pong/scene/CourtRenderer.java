@@ -0,0 +1,77 @@
+package net.toiviainen.pong.scene;
+
+import static net.toiviainen.pong.PongApplication.RESOLUTION_HEIGHT;
+import static net.toiviainen.pong.PongApplication.RESOLUTION_WIDTH;
+import static net.toiviainen.pong.engine.CourtEngine.BOX_WIDTH;
+
+import javafx.scene.Node;
+import net.toiviainen.pong.engine.CourtEngine;
+
+/**
+ * <p>
+ * A renderer for the court scene.
+ * </p>
+ * <p>
+ * The court scene keeps the simulation state and the renderer only draws the
+ * court from the values it receives from the scene. This allows the scene to
+ * use different rendering strategies without changing the game logic.
+ * </p>
+ */
+interface CourtRenderer {
+
+	/** The amount of digits in the score indicators. */
+	int SCORE_DIGITS = 2;
+
+	/** The x-coordinate of the ones digit of the left score indicator. */
+	double LEFT_SCORE_X = RESOLUTION_WIDTH / 2 - (70 + RESOLUTION_WIDTH / 10);
+
+	/** The x-coordinate of the first digit of the right score indicator. */
+	double RIGHT_SCORE_X = RESOLUTION_WIDTH / 2 + 70;
+
+	/** The y-coordinate of both score indicators. */
+	double SCORE_Y = RESOLUTION_HEIGHT / 10;
+
+	/** The vertical distance between the boxes of the center line. */
+	double CENTER_LINE_STEP = 1.93 * BOX_WIDTH;
+
+	/**
+	 * Create a renderer of the given type.
+	 * @param type The type of the renderer.
+	 * @param engine The engine which defines the court layout.
+	 * @param cacheStaticLayer Whether to draw the static items as a cached layer.
+	 * @return The created renderer.
+	 */
+	static CourtRenderer create(CourtRendererType type, CourtEngine engine, boolean cacheStaticLayer) {
+		switch (type) {
+			case CANVAS:
+				return new CanvasCourtRenderer(engine, cacheStaticLayer);
+			case NODES:
+			default:
+				return new NodeCourtRenderer(engine, cacheStaticLayer);
+		}
+	}
+
+	/**
+	 * Get the node which contains the court graphics.
+	 * @return The root node of the renderer.
+	 */
+	Node getNode();
+
+	/**
+	 * Set the given score for the target player.
+	 * @param player The index [1|2] of the target player.
+	 * @param score The score for the target player.
+	 * @throws IllegalArgumentException On any invalid values.
+	 */
+	void setPlayerScore(int player, int score) throws IllegalArgumentException;
+
+	/**
+	 * Draw the moving items of the court into the given positions.
+	 * @param ballX The x-coordinate of the ball.
+	 * @param ballY The y-coordinate of the ball.
+	 * @param leftPaddleY The y-coordinate of the left paddle.
+	 * @param rightPaddleY The y-coordinate of the right paddle.
+	 */
+	void draw(double ballX, double ballY, double leftPaddleY, double rightPaddleY);
+
+}
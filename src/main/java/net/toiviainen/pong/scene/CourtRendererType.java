@@ -0,0 +1,20 @@
+package net.toiviainen.pong.scene;
+
+/**
+ * <p>
+ * The available rendering strategies for the court scene.
+ * </p>
+ * <p>
+ * The strategy is selected at the application startup with the named
+ * parameter {@code --renderer=nodes|canvas}.
+ * </p>
+ */
+public enum CourtRendererType {
+
+	/** Render the court with a retained scene graph node per court item. */
+	NODES,
+
+	/** Render the court by drawing everything into a single canvas. */
+	CANVAS;
+
+}
@@ -3,20 +3,36 @@ package net.toiviainen.pong.scene;
 import static java.util.Objects.requireNonNull;
 import static net.toiviainen.pong.PongApplication.RESOLUTION_HEIGHT;
 import static net.toiviainen.pong.PongApplication.RESOLUTION_WIDTH;
-
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_NONE;
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_MATCH_OVER;
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_NONE;
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_PLAYER1_GOAL;
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_PLAYER2_GOAL;
+import static net.toiviainen.pong.engine.CourtEngine.WINNING_SCORE;
+
+import java.nio.ByteBuffer;
 import java.util.Random;
 
-import javafx.collections.ObservableList;
-import javafx.geometry.Bounds;
+import javafx.application.Platform;
 import javafx.scene.Group;
-import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-import javafx.stage.Stage;
+import net.toiviainen.pong.FixedTimestep;
 import net.toiviainen.pong.PongApplication;
 import net.toiviainen.pong.PongContext;
-import net.toiviainen.pong.util.Args;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.metrics.FrameStats;
+import net.toiviainen.pong.net.LockstepSession;
+import net.toiviainen.pong.net.NetcodeType;
+import net.toiviainen.pong.net.RollbackSimulation;
+import net.toiviainen.pong.replay.InputLog;
+import net.toiviainen.pong.replay.MatchSnapshot;
+import net.toiviainen.pong.replay.SnapshotWriter;
+import net.toiviainen.pong.sim.InterceptController;
+import net.toiviainen.pong.spectate.SpectatorHub;
+import net.toiviainen.pong.spectate.StateEncoder;
+import net.toiviainen.pong.spectate.StateStream;
+import net.toiviainen.pong.util.TripleBuffer;
 
 /**
  * <p>
@@ -24,180 +40,98 @@ import net.toiviainen.pong.util.Args;
  * </p>
  * <p>
  * This scene is the in-game scene which will contain the instances that are
- * required to actually play the game. This is the scene which handles the
- * simulation logics that make the game to act as an real-time application.
+ * required to actually play the game. The simulation logic itself lives in the
+ * {@link CourtEngine}, which this scene drives with the player input and then
+ * renders from on each main loop pulse.
+ * </p>
+ * <p>
+ * When requested at the startup, the local matches are simulated on their own
+ * {@link PhysicsThread} instead of the main loop. The physics thread publishes
+ * the state of each tick through a {@link TripleBuffer}, which the rendering
+ * reads on each pulse without ever waiting for the simulation, and the end of
+ * the match is passed back to the JavaFX application thread with
+ * {@link Platform#runLater(Runnable)}. The physics thread and the other
+ * resources of each match are owned by a {@link CourtMatch}.
+ * </p>
+ * <p>
+ * When requested at the startup, the state of a local match is also saved
+ * into a {@link MatchSnapshot} periodically and when the application stops,
+ * so an interrupted match can be resumed on the next startup. The thread which
+ * runs the ticks only captures the state, while the file is written by the
+ * {@link SnapshotWriter} on its own thread, so saving never stalls a tick.
+ * </p>
+ * <p>
+ * A network match starts only once the session is connected, since the
+ * connecting side doesn't know the seed of the match before that. When the
+ * session fails during the match, e.g. as the peer has become unreachable or
+ * the simulations have diverged, the match ends in the
+ * {@link NetworkErrorScene}.
  * </p>
  */
 public class CourtScene extends AbstractScene {
 
-	/** The width of the small boxes used around the scene. */
-	private static final int BOX_WIDTH = (RESOLUTION_WIDTH / 40);
-
-	/** The height for the top and bottom walls. */
-	private static final int WALL_HEIGHT = BOX_WIDTH;
-
-	/** The height for the left and right paddle. */
-	private static final int PADDLE_HEIGHT = BOX_WIDTH * 5;
-
-	/** The offset of the paddles from the edges of the scene. */
-	private static final int EDGE_OFFSET = RESOLUTION_HEIGHT / 20;
-
-	/** A constant definition for paddle movement speed. */
-	private static final double PADDLE_MOVEMENT_SPEED = 7.5;
-
-	/** The amount to nudge items on a collision. */
-	private static final double NUDGE = 0.01;
-
-	/** The ticks to wait before resuming from the initial or reset state. */
-	private static int COUNTDOWN_TICKS = 50;
-
-	// ================================
-	// = movement direction constants =
-	// ================================
-
-	/** A direction constant for the upward movement. */
-	private static final double DIRECTION_UP = -1.0;
-
-	/** A direction constant for the downward movement. */
-	private static final double DIRECTION_DOWN = 1.0;
-
-	/** A direction constant for the right movement. */
-	private static final double DIRECTION_RIGHT = 1.0;
-
-	/** A direction constant for the left movement. */
-	private static final double DIRECTION_LEFT = -1.0;
-
-	/** A direction constant for being still. */
-	private static final double DIRECTION_NONE = 0.0;
-
-	// =========================================
-	// = number indicator generation constants =
-	// =========================================
-
-	/** The width of a number indicator. */
-	private static final double NUMBER_WIDTH = (RESOLUTION_WIDTH / 10);
-
-	/** The height of a number indicator. */
-	private static final double NUMBER_HEIGHT = (RESOLUTION_HEIGHT / 6);
-
-	/** The thickness of a number indicator number side. */
-	private static final double NUMBER_THICKNESS = NUMBER_HEIGHT / 5;
-
-	// ==================
-	// = ball constants =
-	// ==================
-
-	/** The initial velocity of the ball movement. */
-	private static final double BALL_INITIAL_SPEED = 3.0;
-
-	/** The amount of velocity to be added to ball on each paddle collision. */
-	private static final double BALL_SPEED_INCREASE = 0.5;
-
-	/** The maximum velocity for the ball movement. */
-	private static final double BALL_MAX_SPEED = 10.0;
-
 	// ===================
 	// = class variables =
 	// ===================
 
 	private final PongApplication application;
-	private final PongContext ctx;
-
-	private final Rectangle topWall;
-	private final Rectangle bottomWall;
+	private final CourtEngine engine;
+	private final CourtRenderer renderer;
+	private final RollbackSimulation rollback;
+	private final StateEncoder broadcastEncoder = new StateEncoder();
+	private final ByteBuffer broadcastFrame = ByteBuffer.allocate(StateStream.MAX_FRAME_SIZE);
 
-	private final Rectangle leftGoal;
-	private final Rectangle rightGoal;
+	private final Random seeds = new Random();
 
-	private final Rectangle leftPaddle;
-	private final Rectangle rightPaddle;
+	private final KeyInput input;
+	private final TripleBuffer<CourtFrame> frames;
+	private final SnapshotWriter snapshots;
+	private final CourtMatch match;
 
-	private final Group leftScoreIndicator;
-	private final Group rightScoreIndicator;
-
-	private final Group centerLine;
-
-	private final Rectangle ball;
-
-	private final Random random = new Random();
+	private boolean awaitingPeer;
+	private int matchTick;
+	private int previousRollbackTick;
 
 	private double leftPaddleYDirection;
 	private double rightPaddleYDirection;
 
-	private double ballMovementSpeed = BALL_INITIAL_SPEED;
-	private double ballXDirection = DIRECTION_RIGHT;
-	private double ballYDirection = DIRECTION_UP;
+	private double previousBallX;
+	private double previousBallY;
+	private double previousLeftPaddleY;
+	private double previousRightPaddleY;
 
-	private int countDown = COUNTDOWN_TICKS;
+	private int shownPlayer1Score = -1;
+	private int shownPlayer2Score = -1;
 
 	public CourtScene(PongApplication application) throws NullPointerException {
 		super(new Group(), RESOLUTION_WIDTH, RESOLUTION_HEIGHT);
 
 		this.application = requireNonNull(application, "The application cannot be null!");
-		this.ctx = requireNonNull(application.getContext(), "The context cannot be null!");
-
-		topWall = new Rectangle();
-		topWall.setLayoutX(0);
-		topWall.setLayoutY(0);
-		topWall.setWidth(RESOLUTION_WIDTH);
-		topWall.setHeight(WALL_HEIGHT);
-		topWall.setFill(Color.WHITE);
-
-		bottomWall = new Rectangle();
-		bottomWall.setLayoutX(0);
-		bottomWall.setLayoutY(RESOLUTION_HEIGHT - WALL_HEIGHT);
-		bottomWall.setWidth(RESOLUTION_WIDTH);
-		bottomWall.setHeight(WALL_HEIGHT);
-		bottomWall.setFill(Color.WHITE);
-
-		leftGoal = new Rectangle();
-		leftGoal.setLayoutX(-RESOLUTION_WIDTH);
-		leftGoal.setLayoutY(0);
-		leftGoal.setWidth(RESOLUTION_WIDTH - BOX_WIDTH);
-		leftGoal.setHeight(RESOLUTION_HEIGHT);
-
-		rightGoal = new Rectangle();
-		rightGoal.setLayoutX(RESOLUTION_WIDTH + BOX_WIDTH);
-		rightGoal.setLayoutY(0);
-		rightGoal.setWidth(RESOLUTION_WIDTH);
-		rightGoal.setHeight(RESOLUTION_HEIGHT);
-
-		leftPaddle = new Rectangle();
-		leftPaddle.setLayoutX(EDGE_OFFSET);
-		leftPaddle.setLayoutY(RESOLUTION_HEIGHT / 2 - PADDLE_HEIGHT / 2);
-		leftPaddle.setWidth(BOX_WIDTH);
-		leftPaddle.setHeight(PADDLE_HEIGHT);
-		leftPaddle.setFill(Color.WHITE);
-
-		rightPaddle = new Rectangle();
-		rightPaddle.setLayoutX(RESOLUTION_WIDTH - EDGE_OFFSET - BOX_WIDTH);
-		rightPaddle.setLayoutY(leftPaddle.getLayoutY());
-		rightPaddle.setWidth(BOX_WIDTH);
-		rightPaddle.setHeight(PADDLE_HEIGHT);
-		rightPaddle.setFill(Color.WHITE);
-
-		leftScoreIndicator = new Group();
-		leftScoreIndicator.setLayoutX(RESOLUTION_WIDTH / 2 - (70 + RESOLUTION_WIDTH / 10));
-		leftScoreIndicator.setLayoutY(RESOLUTION_HEIGHT / 10);
-
-		rightScoreIndicator = new Group();
-		rightScoreIndicator.setLayoutX(RESOLUTION_WIDTH / 2 + 70);
-		rightScoreIndicator.setLayoutY(RESOLUTION_HEIGHT / 10);
-
-		centerLine = new Group();
-		centerLine.setLayoutX(RESOLUTION_WIDTH / 2 - BOX_WIDTH / 2);
-		for (double y = WALL_HEIGHT; y < RESOLUTION_HEIGHT; y += (1.93 * BOX_WIDTH)) {
-			Rectangle box = new Rectangle(0, y, BOX_WIDTH, BOX_WIDTH);
-			box.setFill(Color.WHITE);
-			centerLine.getChildren().add(box);
+		this.engine = new CourtEngine(requireNonNull(application.getContext(), "The context cannot be null!"));
+
+		FrameStats stats = application.getFrameStats();
+		input = new KeyInput(stats != null ? stats.getInputLatencies() : null);
+		match = new CourtMatch(application.getComputerDifficulty(), application.getRecordDirectory(), stats);
+
+		// construct the renderer selected at the application startup.
+		renderer = CourtRenderer.create(application.getCourtRendererType(), engine,
+				application.isStaticLayerCached());
+
+		// use rollbacks instead of lockstep if requested at the startup.
+		LockstepSession session = application.getNetworkSession();
+		if (session != null && application.getNetcodeType() == NetcodeType.ROLLBACK) {
+			rollback = new RollbackSimulation(engine, session);
+		} else {
+			rollback = null;
 		}
 
-		ball = new Rectangle();
-		ball.setFill(Color.WHITE);
-		ball.setLayoutX(RESOLUTION_WIDTH / 2 - BOX_WIDTH / 2);
-		ball.setLayoutY(RESOLUTION_HEIGHT / 2 - BOX_WIDTH / 2);
-		ball.setWidth(BOX_WIDTH);
-		ball.setHeight(BOX_WIDTH);
+		// the network matches are always driven by the main loop.
+		if (application.isPhysicsThreaded() && session == null) {
+			frames = new TripleBuffer<>(CourtFrame::new);
+		} else {
+			frames = null;
+		}
+		snapshots = application.getSnapshotWriter();
 
 		Parent root = getRoot();
 		if (!(root instanceof Group)) {
@@ -205,333 +139,383 @@ public class CourtScene extends AbstractScene {
 		}
 
 		Group rootGroup = (Group) root;
-		ObservableList<Node> children = rootGroup.getChildren();
-		children.add(topWall);
-		children.add(bottomWall);
-		children.add(leftGoal);
-		children.add(rightGoal);
-		children.add(leftPaddle);
-		children.add(rightPaddle);
-		children.add(leftScoreIndicator);
-		children.add(rightScoreIndicator);
-		children.add(centerLine);
-		children.add(ball);
+		rootGroup.getChildren().add(renderer.getNode());
 
 		setFill(Color.BLACK);
 
-		// activate the way to active paddle movement.
-		setOnKeyPressed(x -> {
-			switch (x.getCode()) {
-				case UP:
-					rightPaddleYDirection = DIRECTION_UP;
-					break;
-				case DOWN:
-					rightPaddleYDirection = DIRECTION_DOWN;
-					break;
-				case W:
-					leftPaddleYDirection = DIRECTION_UP;
-					break;
-				case S:
-					leftPaddleYDirection = DIRECTION_DOWN;
-					break;
-				default:
-					break;
-			}
-		});
-
-		// active the way to disable paddle movement.
-		setOnKeyReleased(x -> {
-			switch (x.getCode()) {
-				case UP:
-					if (rightPaddleYDirection == DIRECTION_UP) {
-						rightPaddleYDirection = DIRECTION_NONE;
-					}
-					break;
-				case DOWN:
-					if (rightPaddleYDirection == DIRECTION_DOWN) {
-						rightPaddleYDirection = DIRECTION_NONE;
-					}
-					break;
-				case W:
-					if (leftPaddleYDirection == DIRECTION_UP) {
-						leftPaddleYDirection = DIRECTION_NONE;
-					}
-					break;
-				case S:
-					if (leftPaddleYDirection == DIRECTION_DOWN) {
-						leftPaddleYDirection = DIRECTION_NONE;
-					}
-					break;
-				default:
-					break;
-			}
-		});
+		// only queue the key events, the tick samples them at its start.
+		setOnKeyPressed(x -> input.keyPressed(x.getCode(), System.nanoTime()));
+		setOnKeyReleased(x -> input.keyReleased(x.getCode(), System.nanoTime()));
 
-		// assign initial scores and update score indicators.
-		setPlayerScore(1, 0);
-		setPlayerScore(2, 0);
+		refresh(engine.getContext());
 	}
 
 	@Override
-	public void tick() {
-		// perform only the decrement of the count down timer if it's been set.
-		if (countDown > 0) {
-			countDown--;
+	public void onEnter(PongContext ctx) {
+		// the thread of the previous match may still be finishing.
+		match.stopPhysics();
+
+		// start a new match with a fresh seed so the match can be replayed.
+		// in a network match both sides must derive the same seed instead,
+		// which isn't known before the session has been connected.
+		LockstepSession session = application.getNetworkSession();
+		if (rollback != null) {
+			rollback.startMatch();
+		} else if (session != null) {
+			session.startMatch();
+		}
+		if (session != null && !session.isConnected()) {
+			awaitingPeer = true;
+			refresh(ctx);
 			return;
 		}
+		beginMatch(ctx, session != null ? session.getMatchSeed() : seeds.nextLong());
+	}
 
-		// move the ball.
-		ball.setLayoutX(ball.getLayoutX() + ballMovementSpeed * ballXDirection);
-		ball.setLayoutY(ball.getLayoutY() + ballMovementSpeed * ballYDirection);
+	/**
+	 * Begin the simulation of the started match.
+	 * @param ctx The game context.
+	 * @param seed The seed of the match.
+	 */
+	private void beginMatch(PongContext ctx, long seed) {
+		LockstepSession session = application.getNetworkSession();
+		MatchSnapshot resumed = application.takePendingSnapshot();
+		awaitingPeer = false;
+		matchTick = 0;
+		previousRollbackTick = 0;
+		engine.restart(seed);
+		if (resumed != null) {
+			// continue the interrupted match from its snapshot.
+			resumed.restore(engine);
+			matchTick = resumed.getMatchTick();
+		}
 
-		// move the paddles if and when moved by the players.
-		leftPaddle.setLayoutY(leftPaddle.getLayoutY() + (leftPaddleYDirection * PADDLE_MOVEMENT_SPEED));
-		rightPaddle.setLayoutY(rightPaddle.getLayoutY() + (rightPaddleYDirection * PADDLE_MOVEMENT_SPEED));
+		refresh(ctx);
+		broadcastEncoder.requestKeyframe();
 
-		// get wall references to check against collisions.
-		Bounds topWallBounds = topWall.getBoundsInParent();
-		Bounds bottomWallBounds = bottomWall.getBoundsInParent();
+		// the rollbacks would rewrite the input, so those matches aren't
+		// recorded. a resumed match cannot be replayed from its seed, so
+		// neither is it.
+		match.begin(seed, ctx, session == null, rollback == null && resumed == null);
 
-		// check that the right paddle stays within the scene boundaries.
-		Bounds rightPaddleBounds = rightPaddle.getBoundsInParent();
-		if (rightPaddleBounds.intersects(topWallBounds)) {
-			rightPaddle.setLayoutY(topWall.getLayoutY() + topWall.getHeight() + NUDGE);
-		} else if (rightPaddleBounds.intersects(bottomWallBounds)) {
-			rightPaddle.setLayoutY(bottomWallBounds.getMinY() - rightPaddle.getHeight() - NUDGE);
+		// the physics thread owns the engine until the match is over.
+		if (frames != null) {
+			match.startPhysics(this::tickPhysics);
 		}
+	}
+
+	@Override
+	public void onStop() {
+		match.stopPhysics();
 
-		// check that the left paddle stays within the scene boundaries.
-		Bounds leftPaddleBounds = leftPaddle.getBoundsInParent();
-		if (leftPaddleBounds.intersects(topWallBounds)) {
-			leftPaddle.setLayoutY(topWall.getLayoutY() + topWall.getHeight() + NUDGE);
-		} else if (leftPaddleBounds.intersects(bottomWallBounds)) {
-			leftPaddle.setLayoutY(bottomWallBounds.getMinY() - leftPaddle.getHeight() - NUDGE);
+		// keep an unfinished match for resuming it on the next startup.
+		PongContext ctx = engine.getContext();
+		if (snapshots != null && ctx.getPlayer1Score() < WINNING_SCORE && ctx.getPlayer2Score() < WINNING_SCORE) {
+			snapshots.save(engine, matchTick);
 		}
 
-		// check whether the ball hits something.
-		Bounds ballBounds = ball.getBoundsInParent();
-		if (ballBounds.intersects(leftPaddleBounds)) {
-			// prevent ball from invading the paddle and set a new direction.
-			ball.setLayoutX(leftPaddleBounds.getMaxX() + NUDGE);
-			ballXDirection = DIRECTION_RIGHT;
-
-			// increase the movement speed of the ball.
-			ballMovementSpeed += BALL_SPEED_INCREASE;
-			ballMovementSpeed = Math.min(ballMovementSpeed, BALL_MAX_SPEED);
-		} else if (ballBounds.intersects(rightPaddleBounds)) {
-			// prevent ball from invading the paddle and set a new direction.
-			ball.setLayoutX(rightPaddleBounds.getMinX() - ball.getWidth() - NUDGE);
-			ballXDirection = DIRECTION_LEFT;
-
-			// increase the movement speed of the ball.
-			ballMovementSpeed += BALL_SPEED_INCREASE;
-			ballMovementSpeed = Math.min(ballMovementSpeed, BALL_MAX_SPEED);
-		} else if (ballBounds.intersects(topWallBounds)) {
-			// prevent ball from invading the wall and set a new direction.
-			ball.setLayoutY(topWall.getLayoutY() + topWall.getHeight() + NUDGE);
-			ballYDirection = DIRECTION_DOWN;
-		} else if (ballBounds.intersects(bottomWallBounds)) {
-			// prevent ball from invading the wall and set a new direction.
-			ball.setLayoutY(bottomWallBounds.getMinY() - ball.getHeight() - NUDGE);
-			ballYDirection = DIRECTION_UP;
-		} else {
-			// get goal references to check against goals.
-			Bounds leftGoalBounds = leftGoal.getBoundsInParent();
-			Bounds rightGoalBounds = rightGoal.getBoundsInParent();
-
-			if (ballBounds.intersects(leftGoalBounds)) {
-				int player1Score = ctx.incPlayer1Score();
-				if (player1Score >= 10) {
-					// move into the end game scene so we can show results.
-					Stage primaryStage = application.getPrimaryStage();
-					primaryStage.setScene(new EndGameScene(application));
-				} else {
-					setPlayerScore(1, player1Score);
-					reset();
-				}
-			} else if (ballBounds.intersects(rightGoalBounds)) {
-				int player2Score = ctx.incPlayer2Score();
-				if (player2Score >= 10) {
-					// move into the end game scene so we can show results.
-					Stage primaryStage = application.getPrimaryStage();
-					primaryStage.setScene(new EndGameScene(application));
-				} else {
-					setPlayerScore(2, player2Score);
-					reset();
-				}
+		// keep the input of an unfinished match in its recording.
+		match.end();
+	}
+
+	@Override
+	public boolean hasPhysicsThread() {
+		return frames != null;
+	}
+
+	/**
+	 * Refresh the scene to show the current state with still paddles.
+	 * @param ctx The game context with the current scores.
+	 */
+	private void refresh(PongContext ctx) {
+		input.reset();
+		leftPaddleYDirection = DIRECTION_NONE;
+		rightPaddleYDirection = DIRECTION_NONE;
+
+		// assign the current scores and update score indicators.
+		setPlayerScore(1, ctx.getPlayer1Score());
+		setPlayerScore(2, ctx.getPlayer2Score());
+		storePreviousState();
+		if (frames != null) {
+			publishFrame();
+		}
+		render(0.0);
+	}
+
+	@Override
+	public void tick() {
+		LockstepSession session = application.getNetworkSession();
+		if (session != null && !checkSession(session)) {
+			return;
+		}
+		sampleInput();
+		if (rollback != null) {
+			tickRollback();
+			return;
+		}
+
+		int events = stepMatch();
+		if ((events & EVENT_MATCH_OVER) != 0) {
+			// move into the end game scene so we can show results.
+			application.showScene(EndGameScene.class);
+			return;
+		}
+
+		// update the score indicators if either player scored.
+		PongContext ctx = engine.getContext();
+		if ((events & EVENT_PLAYER1_GOAL) != 0) {
+			setPlayerScore(1, ctx.getPlayer1Score());
+			storePreviousState();
+		} else if ((events & EVENT_PLAYER2_GOAL) != 0) {
+			setPlayerScore(2, ctx.getPlayer2Score());
+			storePreviousState();
+		}
+	}
+
+	/**
+	 * Check the network session before a tick of a network match.
+	 * @param session The network session.
+	 * @return Whether the match may advance.
+	 */
+	private boolean checkSession(LockstepSession session) {
+		if (session.getFailure() != null) {
+			// the missing inputs will never arrive, so end the match here.
+			match.end();
+			application.showScene(NetworkErrorScene.class);
+			return false;
+		}
+		if (awaitingPeer) {
+			if (!session.isConnected()) {
+				return false;
 			}
+			beginMatch(engine.getContext(), session.getMatchSeed());
 		}
+		return true;
 	}
 
 	/**
-	 * <p>
-	 * Reset the game state.
-	 * </p>
-	 * <p>
-	 * This function can be used to reset the game position into the default
-	 * position where the ball and the paddles are being repositioned in the
-	 * middle of the screen. Typically used when either player scores a point.
-	 * </p>
+	 * Run a single tick on the physics thread and publish its state.
+	 * @return Whether the match continues.
 	 */
-	private void reset() {
-		// set the ball back into the middle of the scene.
-		ball.setLayoutX(RESOLUTION_WIDTH / 2 - BOX_WIDTH / 2);
-		ball.setLayoutY(RESOLUTION_HEIGHT / 2 - BOX_WIDTH / 2);
-
-		// randomise a new direction for the ball.
-		int randomValue = random.nextInt(3);
-		switch (randomValue) {
-			case 0:
-				ballXDirection = DIRECTION_LEFT;
-				ballYDirection = DIRECTION_UP;
-				break;
-			case 1:
-				ballXDirection = DIRECTION_LEFT;
-				ballYDirection = DIRECTION_DOWN;
-				break;
-			case 2:
-				ballXDirection = DIRECTION_RIGHT;
-				ballYDirection = DIRECTION_UP;
-				break;
-			case 3:
-				ballXDirection = DIRECTION_RIGHT;
-				ballYDirection = DIRECTION_DOWN;
-				break;
-			default:
-				throw new IllegalStateException("Unsupport direction random: " + randomValue);
+	private boolean tickPhysics() {
+		sampleInput();
+		int events = stepMatch();
+		if ((events & (EVENT_PLAYER1_GOAL | EVENT_PLAYER2_GOAL)) != 0) {
+			// don't interpolate the reset of the ball and the paddles.
+			storePreviousState();
+		}
+		publishFrame();
+		if ((events & EVENT_MATCH_OVER) != 0) {
+			Platform.runLater(() -> application.showScene(EndGameScene.class));
+			return false;
 		}
+		return true;
+	}
 
-		// reset the ball movement velocity.
-		ballMovementSpeed = BALL_INITIAL_SPEED;
+	/**
+	 * Apply the key events since the previous tick.
+	 */
+	private void sampleInput() {
+		input.sample(System.nanoTime());
+		leftPaddleYDirection = input.getLeftDirection();
+		rightPaddleYDirection = input.getRightDirection();
+	}
 
-		// set paddles back into the middle of the y-axis.
-		leftPaddle.setLayoutY(RESOLUTION_HEIGHT / 2 - PADDLE_HEIGHT / 2);
-		rightPaddle.setLayoutY(leftPaddle.getLayoutY());
+	/**
+	 * Advance the local or the lockstep match by a single tick.
+	 * @return The event flags of the tick.
+	 */
+	private int stepMatch() {
+		// quantize the input so the recorded match replays exactly the same.
+		byte left;
+		byte right;
+		LockstepSession session = application.getNetworkSession();
+		InterceptController computer = match.getComputer();
+		if (session != null) {
+			// both key sets control the paddle of the local player.
+			double local = leftPaddleYDirection != DIRECTION_NONE ? leftPaddleYDirection : rightPaddleYDirection;
+			session.submitLocalInput(matchTick, InputLog.encode(local));
+			if (!session.isTickReady(matchTick)) {
+				// wait for the remote input rather than let the sides diverge.
+				return EVENT_NONE;
+			}
+			left = session.getLeftInput(matchTick);
+			right = session.getRightInput(matchTick);
+		} else if (computer != null) {
+			// both key sets control the right paddle against the computer.
+			double human = rightPaddleYDirection != DIRECTION_NONE ? rightPaddleYDirection : leftPaddleYDirection;
+			left = InputLog.encode(computer.nextDirection(engine));
+			right = InputLog.encode(human);
+		} else {
+			left = InputLog.encode(leftPaddleYDirection);
+			right = InputLog.encode(rightPaddleYDirection);
+		}
+		matchTick++;
+
+		storePreviousState();
+		int events = engine.step(InputLog.decode(left), InputLog.decode(right));
+		broadcast(events);
+		if (session != null && matchTick % LockstepSession.CHECKSUM_INTERVAL == 0) {
+			// let the peer verify that the simulations haven't diverged.
+			session.submitChecksum(matchTick, engine.checksum());
+		}
 
-		// start a count down to evaded chaotic round starts.
-		countDown = COUNTDOWN_TICKS;
+		// count the goals and the completed matches for the monitoring.
+		PongContext ctx = engine.getContext();
+		if ((events & (EVENT_PLAYER1_GOAL | EVENT_PLAYER2_GOAL)) != 0) {
+			ctx.addGoalsScored(1);
+		}
+		if ((events & EVENT_MATCH_OVER) != 0) {
+			ctx.incMatchesCompleted();
+		}
+		match.record(left, right, events, ctx);
+		if (snapshots != null) {
+			if ((events & EVENT_MATCH_OVER) != 0) {
+				// a finished match must not be resumed.
+				snapshots.delete();
+			} else if (application.getSnapshotTicks() > 0 && matchTick % application.getSnapshotTicks() == 0) {
+				snapshots.save(engine, matchTick);
+			}
+		}
+		return events;
 	}
 
 	/**
-	 * Set the given score for the target player.
-	 * @param player The index [1|2] of the target player.
-	 * @param score The score [0..9] for the target player.
-	 * @throws IllegalArgumentException On any invalid values.
+	 * Advance the network match with the local input and the predicted remote
+	 * input, which may also roll back and re-simulate the earlier ticks.
 	 */
-	private void setPlayerScore(int player, int score) throws IllegalArgumentException {
-		Args.isBetween(player, 1, 2, "The number must be either one or two!");
-		Args.isBetween(score, 0, 9, "The score must be within the [0..9] range!");
+	private void tickRollback() {
+		// both key sets control the paddle of the local player.
+		double local = leftPaddleYDirection != DIRECTION_NONE ? leftPaddleYDirection : rightPaddleYDirection;
+		storePreviousState();
+		int events = rollback.advance(InputLog.encode(local));
+		if (events != EVENT_NONE || rollback.getTick() != previousRollbackTick) {
+			previousRollbackTick = rollback.getTick();
+			broadcast(events);
+		}
+		if ((events & EVENT_MATCH_OVER) != 0) {
+			// the goals may have been rolled back, so only count the final ones.
+			PongContext ctx = engine.getContext();
+			ctx.addGoalsScored(ctx.getPlayer1Score() + ctx.getPlayer2Score());
+			ctx.incMatchesCompleted();
+			application.showScene(EndGameScene.class);
+			return;
+		}
 
-		if (player == 1) {
-			ObservableList<Node> children = rightScoreIndicator.getChildren();
-			children.clear();
-			children.add(createNumberGroup(score));
-		} else if (player == 2) {
-			ObservableList<Node> children = leftScoreIndicator.getChildren();
-			children.clear();
-			children.add(createNumberGroup(score));
+		// a rollback may also have cancelled a goal, so refresh both scores.
+		if ((events & (EVENT_PLAYER1_GOAL | EVENT_PLAYER2_GOAL | RollbackSimulation.EVENT_ROLLBACK)) != 0) {
+			PongContext ctx = engine.getContext();
+			setPlayerScore(1, ctx.getPlayer1Score());
+			setPlayerScore(2, ctx.getPlayer2Score());
+			storePreviousState();
 		}
 	}
 
 	/**
-	 * Create a new rectangle that is filled with white colour.
-	 * @param x The x-coordinate of the rectangle.
-	 * @param y The y-coordinate of the rectangle.
-	 * @param w The width of the rectangle.
-	 * @param h The height of the rectangle.
-	 * @return A new rectangle filled with white colour.
-	 * @throws IllegalArgumentException Whether any negative values were given.
+	 * Publish the current state into the spectator stream, if broadcasting.
+	 * @param events The event flags of the latest tick.
 	 */
-	private static Rectangle whiteRect(double x, double y, double w, double h) throws IllegalArgumentException {
-		Args.isGte(x, 0, "The x-coordinate must be equal or higher than zero!");
-		Args.isGte(y, 0, "The y-coordinate must be equal or higher than zero!");
-		Args.isGte(w, 0, "The width must be equal or higher than zero!");
-		Args.isGte(h, 0, "The heigh must be equal or higher than zero!");
-
-		// create a new rectangle that is filled with white colour.
-		Rectangle rectangle = new Rectangle(x, y, w, h);
-		rectangle.setFill(Color.WHITE);
-		return rectangle;
+	private void broadcast(int events) {
+		SpectatorHub hub = application.getSpectatorHub();
+		if (hub == null) {
+			return;
+		}
+		broadcastFrame.clear();
+		boolean keyframe = broadcastEncoder.encode(engine, (events & EVENT_MATCH_OVER) != 0, broadcastFrame);
+		broadcastFrame.flip();
+		if (!hub.publish(broadcastFrame, keyframe)) {
+			// the spectators missed a frame, so the next one must be complete.
+			broadcastEncoder.requestKeyframe();
+		}
 	}
 
 	/**
-	 * Create a new number group to render the provided number [0..9] in JavaFX.
-	 * @param number The number to create.
-	 * @return A new group that can be used to render the provided number.
-	 * @throws IllegalArgumentException Whether any invalid number was given.
+	 * Publish the current engine state for the rendering.
 	 */
-	private static Group createNumberGroup(int number) throws IllegalArgumentException {
-		Args.isBetween(number, 0, 9, "The number must be within the [0..9] range!");
-
-		// @formatter:off
-		// construct a new group with the necessary graphics.
-		Group group = new Group();
-		ObservableList<Node> children = group.getChildren();
-		switch (number) {
-			case 0:
-				children.add(whiteRect(0, 0, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT));
-				children.add(whiteRect(NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT));
-				children.add(whiteRect(0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS));
-				break;
-			case 1:
-				children.add(whiteRect(NUMBER_WIDTH / 2 - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT));
-				break;
-			case 2:
-				children.add(whiteRect(0, 0, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT / 2));
-				children.add(whiteRect(0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(0, NUMBER_HEIGHT / 2, NUMBER_THICKNESS, NUMBER_HEIGHT / 2));
-				children.add(whiteRect(0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS));
-				break;
-			case 3:
-				children.add(whiteRect(0, 0, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT));
-				break;
-			case 4:
-				children.add(whiteRect(0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT / 2));
-				children.add(whiteRect(0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT));
-				break;
-			case 5:
-				children.add(whiteRect(0, 0, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT / 2));
-				children.add(whiteRect(0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(NUMBER_WIDTH - NUMBER_THICKNESS, NUMBER_HEIGHT / 2, NUMBER_THICKNESS, NUMBER_HEIGHT / 2));
-				children.add(whiteRect(0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS));
-				break;
-			case 6:
-				children.add(whiteRect(0, 0, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT));
-				children.add(whiteRect(0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(NUMBER_WIDTH - NUMBER_THICKNESS, NUMBER_HEIGHT / 2, NUMBER_THICKNESS, NUMBER_HEIGHT / 2));
-				children.add(whiteRect(0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS));
-				break;
-			case 7:
-				children.add(whiteRect(0, 0, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT));
-				break;
-			case 8:
-				children.add(whiteRect(0, 0, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT));
-				children.add(whiteRect(0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT));
-				children.add(whiteRect(0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS));
-				break;
-			case 9:
-				children.add(whiteRect(0, 0, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT / 2));
-				children.add(whiteRect(0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS));
-				children.add(whiteRect(NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT));
-				children.add(whiteRect(0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS));
-				break;
-			default:
-				break;
+	private void publishFrame() {
+		CourtFrame frame = frames.getBack();
+		frame.time = System.nanoTime();
+		frame.previousBallX = previousBallX;
+		frame.previousBallY = previousBallY;
+		frame.previousLeftPaddleY = previousLeftPaddleY;
+		frame.previousRightPaddleY = previousRightPaddleY;
+		frame.ballX = engine.getBallX();
+		frame.ballY = engine.getBallY();
+		frame.leftPaddleY = engine.getLeftPaddleY();
+		frame.rightPaddleY = engine.getRightPaddleY();
+		PongContext ctx = engine.getContext();
+		frame.player1Score = ctx.getPlayer1Score();
+		frame.player2Score = ctx.getPlayer2Score();
+		frames.publish();
+	}
+
+	@Override
+	public void render(double alpha) {
+		if (frames != null) {
+			renderFrame(frames.getFront());
+			return;
+		}
+
+		// interpolate the moving items between the two latest engine states.
+		renderer.draw(lerp(previousBallX, engine.getBallX(), alpha), lerp(previousBallY, engine.getBallY(), alpha),
+				lerp(previousLeftPaddleY, engine.getLeftPaddleY(), alpha),
+				lerp(previousRightPaddleY, engine.getRightPaddleY(), alpha));
+	}
+
+	/**
+	 * Render the latest frame published by the physics thread. The alpha of the
+	 * main loop is not in sync with the physics thread, so the interpolation
+	 * uses the time elapsed since the tick of the frame instead.
+	 * @param frame The latest frame.
+	 */
+	private void renderFrame(CourtFrame frame) {
+		if (frame.player1Score != shownPlayer1Score) {
+			setPlayerScore(1, frame.player1Score);
+		}
+		if (frame.player2Score != shownPlayer2Score) {
+			setPlayerScore(2, frame.player2Score);
+		}
+		double alpha = (double) (System.nanoTime() - frame.time) / FixedTimestep.DEFAULT_STEP_NANOS;
+		alpha = Math.max(0.0, Math.min(1.0, alpha));
+		renderer.draw(lerp(frame.previousBallX, frame.ballX, alpha), lerp(frame.previousBallY, frame.ballY, alpha),
+				lerp(frame.previousLeftPaddleY, frame.leftPaddleY, alpha),
+				lerp(frame.previousRightPaddleY, frame.rightPaddleY, alpha));
+	}
+
+	/**
+	 * Store the current engine state as the starting point of interpolation.
+	 */
+	private void storePreviousState() {
+		previousBallX = engine.getBallX();
+		previousBallY = engine.getBallY();
+		previousLeftPaddleY = engine.getLeftPaddleY();
+		previousRightPaddleY = engine.getRightPaddleY();
+	}
+
+	/**
+	 * Linearly interpolate between the given values.
+	 * @param from The value at the alpha zero.
+	 * @param to The value at the alpha one.
+	 * @param alpha The interpolation alpha.
+	 * @return The interpolated value.
+	 */
+	private static double lerp(double from, double to, double alpha) {
+		return from + (to - from) * alpha;
+	}
+
+	/**
+	 * Set the given score for the target player.
+	 * @param player The index [1|2] of the target player.
+	 * @param score The score for the target player.
+	 * @throws IllegalArgumentException On any invalid values.
+	 */
+	private void setPlayerScore(int player, int score) throws IllegalArgumentException {
+		renderer.setPlayerScore(player, score);
+		if (player == 1) {
+			shownPlayer1Score = score;
+		} else {
+			shownPlayer2Score = score;
 		}
-		// @formatter:on
-		return group;
 	}
 
 }
@@ -1,10 +1,10 @@
 package net.toiviainen.pong.scene;
 
 import static java.util.Objects.requireNonNull;
-import static net.toiviainen.pong.PongApplication.BIG_FONT;
 import static net.toiviainen.pong.PongApplication.RESOLUTION_HEIGHT;
 import static net.toiviainen.pong.PongApplication.RESOLUTION_WIDTH;
-import static net.toiviainen.pong.PongApplication.SMALL_FONT;
+import static net.toiviainen.pong.PongApplication.getBigFont;
+import static net.toiviainen.pong.PongApplication.getSmallFont;
 
 import javafx.collections.ObservableList;
 import javafx.geometry.VPos;
@@ -14,7 +14,6 @@ import javafx.scene.Parent;
 import javafx.scene.input.KeyCode;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
-import javafx.stage.Stage;
 import net.toiviainen.pong.PongApplication;
 import net.toiviainen.pong.PongContext;
 
@@ -41,50 +40,44 @@ public class EndGameScene extends AbstractScene {
 		super(new Group(), RESOLUTION_WIDTH, RESOLUTION_HEIGHT);
 
 		requireNonNull(application, "The application cannot be null!");
-
-		// get player scores from the session context.
 		PongContext ctx = requireNonNull(application.getContext(), "The context cannot be null!");
-		int p1Score = ctx.getPlayer1Score();
-		int p2Score = ctx.getPlayer2Score();
 
 		topicText = new Text("JavaFX Pong - Results");
 		topicText.setTextOrigin(VPos.CENTER);
-		topicText.setFont(BIG_FONT);
+		topicText.setFont(getBigFont());
 		topicText.setLayoutX((RESOLUTION_WIDTH - topicText.prefWidth(-1)) / 2);
 		topicText.setLayoutY(RESOLUTION_HEIGHT / 6);
 		topicText.setFill(Color.WHITE);
 
 		gameHasEndedText = new Text("Game has ended");
 		gameHasEndedText.setTextOrigin(VPos.CENTER);
-		gameHasEndedText.setFont(SMALL_FONT);
+		gameHasEndedText.setFont(getSmallFont());
 		gameHasEndedText.setLayoutX((RESOLUTION_WIDTH - gameHasEndedText.prefWidth(-1)) / 2);
 		gameHasEndedText.setLayoutY(topicText.getLayoutY() + 100);
 		gameHasEndedText.setFill(Color.WHITE);
 
-		winnerText = new Text((p1Score > p2Score ? "Right" : "Left") + " player won the game!");
+		winnerText = new Text();
 		winnerText.setTextOrigin(VPos.CENTER);
-		winnerText.setFont(SMALL_FONT);
-		winnerText.setLayoutX((RESOLUTION_WIDTH - winnerText.prefWidth(-1)) / 2);
+		winnerText.setFont(getSmallFont());
 		winnerText.setLayoutY(gameHasEndedText.getLayoutY() + 40);
 		winnerText.setFill(Color.WHITE);
 
 		resultsTopicText = new Text("End results:");
 		resultsTopicText.setTextOrigin(VPos.CENTER);
-		resultsTopicText.setFont(SMALL_FONT);
+		resultsTopicText.setFont(getSmallFont());
 		resultsTopicText.setLayoutX((RESOLUTION_WIDTH - resultsTopicText.prefWidth(-1)) / 2);
 		resultsTopicText.setLayoutY(winnerText.getLayoutY() + 40);
 		resultsTopicText.setFill(Color.WHITE);
 
-		resultsText = new Text("" + ctx.getPlayer2Score() + " - " + ctx.getPlayer1Score());
+		resultsText = new Text();
 		resultsText.setTextOrigin(VPos.CENTER);
-		resultsText.setFont(SMALL_FONT);
-		resultsText.setLayoutX((RESOLUTION_WIDTH - resultsText.prefWidth(-1)) / 2);
+		resultsText.setFont(getSmallFont());
 		resultsText.setLayoutY(resultsTopicText.getLayoutY() + 40);
 		resultsText.setFill(Color.WHITE);
 
 		proceedInstructionsText = new Text("Press [ENTER] to proceed");
 		proceedInstructionsText.setTextOrigin(VPos.CENTER);
-		proceedInstructionsText.setFont(SMALL_FONT);
+		proceedInstructionsText.setFont(getSmallFont());
 		proceedInstructionsText.setLayoutX((RESOLUTION_WIDTH - proceedInstructionsText.prefWidth(-1)) / 2);
 		proceedInstructionsText.setLayoutY(resultsText.getLayoutY() + 160);
 		proceedInstructionsText.setFill(Color.WHITE);
@@ -107,17 +100,35 @@ public class EndGameScene extends AbstractScene {
 			if (x.getCode() == KeyCode.ENTER) {
 				// reset the game state and move into the welcoming scene.
 				ctx.reset();
-				Stage primaryStage = application.getPrimaryStage();
-				primaryStage.setScene(new WelcomeScene(application));
+				application.showScene(WelcomeScene.class);
 			}
 		});
 
 		setFill(Color.BLACK);
 	}
 
+	@Override
+	public void onEnter(PongContext ctx) {
+		// get player scores from the session context.
+		int p1Score = ctx.getPlayer1Score();
+		int p2Score = ctx.getPlayer2Score();
+
+		winnerText.setText((p1Score > p2Score ? "Right" : "Left") + " player won the game!");
+		winnerText.setLayoutX((RESOLUTION_WIDTH - winnerText.prefWidth(-1)) / 2);
+
+		resultsText.setText("" + p2Score + " - " + p1Score);
+		resultsText.setLayoutX((RESOLUTION_WIDTH - resultsText.prefWidth(-1)) / 2);
+	}
+
 	@Override
 	public void tick() {
 		// ... nothing to do ...
 	}
 
+	@Override
+	public boolean isIdle() {
+		// the scene only changes when a key is pressed.
+		return true;
+	}
+
 }
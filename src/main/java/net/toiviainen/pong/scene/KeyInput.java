@@ -0,0 +1,224 @@
+package net.toiviainen.pong.scene;
+
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_DOWN;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_NONE;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_UP;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javafx.scene.input.KeyCode;
+import net.toiviainen.pong.metrics.Histogram;
+
+/**
+ * <p>
+ * The paddle keys of the court, sampled at the start of each tick.
+ * </p>
+ * <p>
+ * The key handlers only push the key presses and releases with their
+ * timestamps into a lock-free single-producer single-consumer queue. The tick
+ * then drains the queue and integrates the movement direction of each paddle
+ * over the time since the previous tick, so a key held for a part of the tick
+ * moves the paddle by the same part of a full step. This way a quick press and
+ * release between two ticks still moves the paddle, instead of being lost as it
+ * would be when the tick only sees the latest state of the keys.
+ * </p>
+ * <p>
+ * The age of each event at the moment it's applied is recorded as the input
+ * latency. The key handlers also filter out the repeated presses of the held
+ * keys, so the queue only contains the actual state changes.
+ * </p>
+ */
+final class KeyInput {
+
+	/** The capacity of the event queue, which must be a power of two. */
+	private static final int CAPACITY = 1024;
+
+	private static final int LEFT_UP = 0;
+	private static final int LEFT_DOWN = 1;
+	private static final int RIGHT_UP = 2;
+	private static final int RIGHT_DOWN = 3;
+	private static final int KEY_MASK = 3;
+	private static final int PRESSED = 4;
+
+	// the queue, where the producer writes the tail and the consumer the head.
+	private final long[] times = new long[CAPACITY];
+	private final byte[] events = new byte[CAPACITY];
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	// the producer state, which is only touched by the key handlers.
+	private final boolean[] held = new boolean[4];
+
+	// the consumer state, which is only touched by the tick.
+	private final Histogram latencies;
+	private long sampledAt = -1;
+	private double leftState;
+	private double rightState;
+	private double leftDirection;
+	private double rightDirection;
+
+	/**
+	 * Create the input with a histogram for the input latency.
+	 * @param latencies The histogram for the input latency or null to skip it.
+	 */
+	KeyInput(Histogram latencies) {
+		this.latencies = latencies;
+	}
+
+	/**
+	 * Push a key press into the queue. Called by the key handler.
+	 * @param code The code of the pressed key.
+	 * @param time The timestamp of the press in nanoseconds.
+	 */
+	void keyPressed(KeyCode code, long time) {
+		int key = toKey(code);
+		if (key >= 0 && !held[key]) {
+			held[key] = true;
+			offer(key | PRESSED, time);
+		}
+	}
+
+	/**
+	 * Push a key release into the queue. Called by the key handler.
+	 * @param code The code of the released key.
+	 * @param time The timestamp of the release in nanoseconds.
+	 */
+	void keyReleased(KeyCode code, long time) {
+		int key = toKey(code);
+		if (key >= 0 && held[key]) {
+			held[key] = false;
+			offer(key, time);
+		}
+	}
+
+	private static int toKey(KeyCode code) {
+		switch (code) {
+			case W:
+				return LEFT_UP;
+			case S:
+				return LEFT_DOWN;
+			case UP:
+				return RIGHT_UP;
+			case DOWN:
+				return RIGHT_DOWN;
+			default:
+				return -1;
+		}
+	}
+
+	private void offer(int event, long time) {
+		long t = tail.get();
+		if (t - head.get() >= CAPACITY) {
+			dropped.incrementAndGet();
+			return;
+		}
+		int index = (int) (t & (CAPACITY - 1));
+		times[index] = time;
+		events[index] = (byte) event;
+		tail.lazySet(t + 1);
+	}
+
+	/**
+	 * <p>
+	 * Drain the queue and resolve the paddle directions for the next tick.
+	 * </p>
+	 * <p>
+	 * The directions are the averages of the key states since the previous
+	 * sample. When several ticks are run at once, the first tick consumes the
+	 * whole elapsed time and the following ticks use the latest key states.
+	 * </p>
+	 * @param now The current timestamp in nanoseconds.
+	 */
+	void sample(long now) {
+		long start = sampledAt < 0 ? now : sampledAt;
+		long cursor = start;
+		double leftSum = 0.0;
+		double rightSum = 0.0;
+		long h = head.get();
+		long t = tail.get();
+		for (; h < t; h++) {
+			int index = (int) (h & (CAPACITY - 1));
+			// events older than the previous sample count from its start.
+			long time = Math.min(Math.max(times[index], cursor), now);
+			leftSum += leftState * (time - cursor);
+			rightSum += rightState * (time - cursor);
+			cursor = time;
+			apply(events[index]);
+			if (latencies != null) {
+				latencies.record(now - times[index]);
+			}
+		}
+		head.lazySet(h);
+		leftSum += leftState * (now - cursor);
+		rightSum += rightState * (now - cursor);
+
+		long window = now - start;
+		leftDirection = window > 0 ? leftSum / window : leftState;
+		rightDirection = window > 0 ? rightSum / window : rightState;
+		sampledAt = now;
+	}
+
+	/**
+	 * Apply a key event into the paddle states. The latest pressed key of a
+	 * paddle wins, and a release only stops the paddle moving into its way.
+	 * @param event The key event.
+	 */
+	private void apply(int event) {
+		boolean pressed = (event & PRESSED) != 0;
+		switch (event & KEY_MASK) {
+			case LEFT_UP:
+				leftState = transition(leftState, DIRECTION_UP, pressed);
+				break;
+			case LEFT_DOWN:
+				leftState = transition(leftState, DIRECTION_DOWN, pressed);
+				break;
+			case RIGHT_UP:
+				rightState = transition(rightState, DIRECTION_UP, pressed);
+				break;
+			default:
+				rightState = transition(rightState, DIRECTION_DOWN, pressed);
+				break;
+		}
+	}
+
+	private static double transition(double state, double direction, boolean pressed) {
+		if (pressed) {
+			return direction;
+		}
+		return state == direction ? DIRECTION_NONE : state;
+	}
+
+	/**
+	 * <p>
+	 * Stop both paddles and discard the pending events.
+	 * </p>
+	 * <p>
+	 * Called by the scene on the JavaFX application thread when it's entered,
+	 * i.e. on the same thread as the key handlers, so it never races with the
+	 * producer. It does consume the queue though, so it must not be called
+	 * while a physics thread may be sampling the input.
+	 * </p>
+	 */
+	void reset() {
+		head.lazySet(tail.get());
+		sampledAt = -1;
+		leftState = DIRECTION_NONE;
+		rightState = DIRECTION_NONE;
+		leftDirection = DIRECTION_NONE;
+		rightDirection = DIRECTION_NONE;
+	}
+
+	double getLeftDirection() {
+		return leftDirection;
+	}
+
+	double getRightDirection() {
+		return rightDirection;
+	}
+
+	long getDropped() {
+		return dropped.get();
+	}
+
+}
@@ -0,0 +1,115 @@
+package net.toiviainen.pong.scene;
+
+import static java.util.Objects.requireNonNull;
+import static net.toiviainen.pong.PongApplication.RESOLUTION_HEIGHT;
+import static net.toiviainen.pong.PongApplication.RESOLUTION_WIDTH;
+import static net.toiviainen.pong.PongApplication.getBigFont;
+import static net.toiviainen.pong.PongApplication.getSmallFont;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.geometry.VPos;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Text;
+import net.toiviainen.pong.PongApplication;
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.net.LockstepSession;
+
+/**
+ * <p>
+ * The network error scene for the Pong game.
+ * </p>
+ * <p>
+ * This scene is shown when a network match cannot be continued, i.e. when the
+ * {@link LockstepSession} has failed, or when the followed broadcast of a match
+ * has ended. Scene contains the reason of the failure and the instructions how
+ * to quit the game, as a failed connection cannot be used any further.
+ * </p>
+ */
+public class NetworkErrorScene extends AbstractScene {
+
+	private final PongApplication application;
+
+	private final Text topicText;
+	private final Text matchEndedText;
+	private final Text reasonText;
+	private final Text proceedInstructionsText;
+
+	public NetworkErrorScene(PongApplication application) throws NullPointerException {
+		super(new Group(), RESOLUTION_WIDTH, RESOLUTION_HEIGHT);
+
+		this.application = requireNonNull(application, "The application cannot be null!");
+
+		topicText = new Text("JavaFX Pong - Network error");
+		topicText.setTextOrigin(VPos.CENTER);
+		topicText.setFont(getBigFont());
+		topicText.setLayoutX((RESOLUTION_WIDTH - topicText.prefWidth(-1)) / 2);
+		topicText.setLayoutY(RESOLUTION_HEIGHT / 6);
+		topicText.setFill(Color.WHITE);
+
+		matchEndedText = new Text("The match has been interrupted");
+		matchEndedText.setTextOrigin(VPos.CENTER);
+		matchEndedText.setFont(getSmallFont());
+		matchEndedText.setLayoutX((RESOLUTION_WIDTH - matchEndedText.prefWidth(-1)) / 2);
+		matchEndedText.setLayoutY(topicText.getLayoutY() + 100);
+		matchEndedText.setFill(Color.WHITE);
+
+		reasonText = new Text();
+		reasonText.setTextOrigin(VPos.CENTER);
+		reasonText.setFont(getSmallFont());
+		reasonText.setLayoutY(matchEndedText.getLayoutY() + 40);
+		reasonText.setFill(Color.WHITE);
+
+		proceedInstructionsText = new Text("Press [ENTER] to quit");
+		proceedInstructionsText.setTextOrigin(VPos.CENTER);
+		proceedInstructionsText.setFont(getSmallFont());
+		proceedInstructionsText.setLayoutX((RESOLUTION_WIDTH - proceedInstructionsText.prefWidth(-1)) / 2);
+		proceedInstructionsText.setLayoutY(reasonText.getLayoutY() + 160);
+		proceedInstructionsText.setFill(Color.WHITE);
+
+		Parent root = getRoot();
+		if (!(root instanceof Group)) {
+			throw new AssertionError("The scene root is not a Group instance!");
+		}
+
+		Group rootGroup = (Group) root;
+		ObservableList<Node> children = rootGroup.getChildren();
+		children.add(topicText);
+		children.add(matchEndedText);
+		children.add(reasonText);
+		children.add(proceedInstructionsText);
+
+		setOnKeyReleased(x -> {
+			if (x.getCode() == KeyCode.ENTER) {
+				Platform.exit();
+			}
+		});
+
+		setFill(Color.BLACK);
+	}
+
+	@Override
+	public void onEnter(PongContext ctx) {
+		// show the reason why the connection failed.
+		Exception failure = application.getNetworkFailure();
+		String reason = failure != null ? failure.getMessage() : null;
+		reasonText.setText(reason != null ? reason : "The connection was lost!");
+		reasonText.setLayoutX((RESOLUTION_WIDTH - reasonText.prefWidth(-1)) / 2);
+	}
+
+	@Override
+	public void tick() {
+		// ... nothing to do ...
+	}
+
+	@Override
+	public boolean isIdle() {
+		// the scene only changes when a key is pressed.
+		return true;
+	}
+
+}
@@ -0,0 +1,140 @@
+package net.toiviainen.pong.scene;
+
+import static net.toiviainen.pong.engine.CourtEngine.BOX_WIDTH;
+import static net.toiviainen.pong.engine.CourtEngine.COURT_HEIGHT;
+import static net.toiviainen.pong.engine.CourtEngine.COURT_WIDTH;
+import static net.toiviainen.pong.engine.CourtEngine.WALL_HEIGHT;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import net.toiviainen.pong.engine.Box;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A court renderer which uses a retained scene graph node per court item.
+ * </p>
+ * <p>
+ * The paddles, ball and score indicators are built as separate nodes, which
+ * are then moved into the drawn positions. The walls and the center line are
+ * either merged into a single cached {@link StaticCourtLayer} or, when the
+ * cache is disabled, built as separate nodes along with the goals.
+ * </p>
+ */
+class NodeCourtRenderer implements CourtRenderer {
+
+	private final Group root;
+
+	private final Rectangle leftPaddle;
+	private final Rectangle rightPaddle;
+
+	private final ScoreIndicator leftScoreIndicator;
+	private final ScoreIndicator rightScoreIndicator;
+
+	private final Rectangle ball;
+
+	NodeCourtRenderer(CourtEngine engine, boolean cacheStaticLayer) {
+		leftPaddle = createRectangle(engine.getLeftPaddle());
+		leftPaddle.setFill(Color.WHITE);
+
+		rightPaddle = createRectangle(engine.getRightPaddle());
+		rightPaddle.setFill(Color.WHITE);
+
+		leftScoreIndicator = new ScoreIndicator(SCORE_DIGITS, true);
+		leftScoreIndicator.setLayoutX(LEFT_SCORE_X);
+		leftScoreIndicator.setLayoutY(SCORE_Y);
+
+		rightScoreIndicator = new ScoreIndicator(SCORE_DIGITS, false);
+		rightScoreIndicator.setLayoutX(RIGHT_SCORE_X);
+		rightScoreIndicator.setLayoutY(SCORE_Y);
+
+		ball = createRectangle(engine.getBall());
+		ball.setFill(Color.WHITE);
+
+		root = new Group();
+		ObservableList<Node> children = root.getChildren();
+		if (cacheStaticLayer) {
+			children.add(StaticCourtLayer.createPath(engine));
+		} else {
+			addStaticNodes(children, engine);
+		}
+		children.add(leftPaddle);
+		children.add(rightPaddle);
+		children.add(leftScoreIndicator);
+		children.add(rightScoreIndicator);
+		children.add(ball);
+	}
+
+	/**
+	 * Add the walls, goals and the center line as separate nodes.
+	 * @param children The children to add the nodes into.
+	 * @param engine The engine which defines the court layout.
+	 */
+	private static void addStaticNodes(ObservableList<Node> children, CourtEngine engine) {
+		Rectangle topWall = createRectangle(engine.getTopWall());
+		topWall.setFill(Color.WHITE);
+
+		Rectangle bottomWall = createRectangle(engine.getBottomWall());
+		bottomWall.setFill(Color.WHITE);
+
+		Rectangle leftGoal = createRectangle(engine.getLeftGoal());
+		Rectangle rightGoal = createRectangle(engine.getRightGoal());
+
+		Group centerLine = new Group();
+		centerLine.setLayoutX(COURT_WIDTH / 2 - BOX_WIDTH / 2);
+		for (double y = WALL_HEIGHT; y < COURT_HEIGHT; y += CENTER_LINE_STEP) {
+			Rectangle box = new Rectangle(0, y, BOX_WIDTH, BOX_WIDTH);
+			box.setFill(Color.WHITE);
+			centerLine.getChildren().add(box);
+		}
+
+		children.add(topWall);
+		children.add(bottomWall);
+		children.add(leftGoal);
+		children.add(rightGoal);
+		children.add(centerLine);
+	}
+
+	@Override
+	public Node getNode() {
+		return root;
+	}
+
+	@Override
+	public void setPlayerScore(int player, int score) throws IllegalArgumentException {
+		Args.isBetween(player, 1, 2, "The number must be either one or two!");
+
+		if (player == 1) {
+			rightScoreIndicator.setScore(score);
+		} else if (player == 2) {
+			leftScoreIndicator.setScore(score);
+		}
+	}
+
+	@Override
+	public void draw(double ballX, double ballY, double leftPaddleY, double rightPaddleY) {
+		ball.setLayoutX(ballX);
+		ball.setLayoutY(ballY);
+		leftPaddle.setLayoutY(leftPaddleY);
+		rightPaddle.setLayoutY(rightPaddleY);
+	}
+
+	/**
+	 * Create a new rectangle node with the position and size of the given box.
+	 * @param box The court engine box to create the node for.
+	 * @return A new rectangle matching the given box.
+	 */
+	private static Rectangle createRectangle(Box box) {
+		Rectangle rectangle = new Rectangle();
+		rectangle.setLayoutX(box.getX());
+		rectangle.setLayoutY(box.getY());
+		rectangle.setWidth(box.getWidth());
+		rectangle.setHeight(box.getHeight());
+		return rectangle;
+	}
+
+}
@@ -0,0 +1,94 @@
+package net.toiviainen.pong.scene;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import javafx.application.Platform;
+import net.toiviainen.pong.FixedTimestep;
+import net.toiviainen.pong.metrics.FrameStats;
+
+/**
+ * <p>
+ * A thread which runs the simulation ticks of a scene at a fixed rate.
+ * </p>
+ * <p>
+ * The thread uses the same {@link FixedTimestep} as the main loop, but it
+ * sleeps until the next tick is due instead of waiting for the pulses of the
+ * JavaFX application thread. This way a slow layout, style or garbage
+ * collection pause of the rendering doesn't delay the simulation. The tick
+ * returns false when the simulation has ended, which also ends the thread.
+ * </p>
+ * <p>
+ * An exception thrown by a tick ends the thread and it's thrown again on the
+ * JavaFX application thread, so it's reported like any other failure of the
+ * game.
+ * </p>
+ */
+final class PhysicsThread extends Thread {
+
+	private final FixedTimestep timestep = new FixedTimestep();
+	private final BooleanSupplier tick;
+	private final FrameStats stats;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Create a new physics thread.
+	 * @param tick The tick which returns whether to continue the simulation.
+	 * @param stats The statistics for the tick durations or null to skip them.
+	 * @throws NullPointerException If the tick is null.
+	 */
+	PhysicsThread(BooleanSupplier tick, FrameStats stats) throws NullPointerException {
+		super("pong-physics");
+		this.tick = requireNonNull(tick, "The tick cannot be null!");
+		this.stats = stats;
+		setDaemon(true);
+	}
+
+	@Override
+	public void run() {
+		try {
+			timestep.advance(System.nanoTime());
+			while (running) {
+				int steps = timestep.advance(System.nanoTime());
+				for (int i = 0; i < steps && running; i++) {
+					long tickStart = System.nanoTime();
+					boolean more = tick.getAsBoolean();
+					if (stats != null) {
+						stats.recordTick(System.nanoTime() - tickStart);
+					}
+					if (!more) {
+						return;
+					}
+				}
+				LockSupport.parkNanos(this, (long) ((1.0 - timestep.getAlpha()) * timestep.getStepNanos()));
+			}
+		} catch (RuntimeException e) {
+			Platform.runLater(() -> {
+				throw e;
+			});
+		}
+	}
+
+	/**
+	 * Stop the thread and wait until it has finished its current tick.
+	 */
+	void shutdown() {
+		running = false;
+		LockSupport.unpark(this);
+		boolean interrupted = false;
+		while (isAlive()) {
+			try {
+				join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,252 @@
+package net.toiviainen.pong.scene;
+
+import static net.toiviainen.pong.PongApplication.RESOLUTION_HEIGHT;
+import static net.toiviainen.pong.PongApplication.RESOLUTION_WIDTH;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A score indicator for the court scene.
+ * </p>
+ * <p>
+ * This indicator builds the shapes of all ten digits for each of its digit
+ * slots once at construction. Changing the score only toggles the visibility
+ * of the prebuilt digit groups, so no nodes are being added into or removed
+ * from the scene graph in the middle of the game. The amount of digit slots
+ * defines the maximum score the indicator is able to show.
+ * </p>
+ */
+class ScoreIndicator extends Group {
+
+	/** The width of a number indicator. */
+	static final double NUMBER_WIDTH = (RESOLUTION_WIDTH / 10);
+
+	/** The height of a number indicator. */
+	static final double NUMBER_HEIGHT = (RESOLUTION_HEIGHT / 6);
+
+	/** The thickness of a number indicator number side. */
+	static final double NUMBER_THICKNESS = NUMBER_HEIGHT / 5;
+
+	/** The horizontal space between two digits of a multi-digit number. */
+	static final double DIGIT_SPACING = NUMBER_THICKNESS;
+
+	// @formatter:off
+	/** The rectangles ({x, y, width, height}) of each digit [0..9]. */
+	static final double[][][] GLYPHS = {
+		// 0
+		{
+			{ 0, 0, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ 0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT },
+			{ NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT },
+			{ 0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS },
+		},
+		// 1
+		{
+			{ NUMBER_WIDTH / 2 - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT },
+		},
+		// 2
+		{
+			{ 0, 0, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT / 2 },
+			{ 0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ 0, NUMBER_HEIGHT / 2, NUMBER_THICKNESS, NUMBER_HEIGHT / 2 },
+			{ 0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS },
+		},
+		// 3
+		{
+			{ 0, 0, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ 0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ 0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT },
+		},
+		// 4
+		{
+			{ 0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT / 2 },
+			{ 0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT },
+		},
+		// 5
+		{
+			{ 0, 0, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ 0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT / 2 },
+			{ 0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ NUMBER_WIDTH - NUMBER_THICKNESS, NUMBER_HEIGHT / 2, NUMBER_THICKNESS, NUMBER_HEIGHT / 2 },
+			{ 0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS },
+		},
+		// 6
+		{
+			{ 0, 0, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ 0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT },
+			{ 0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ NUMBER_WIDTH - NUMBER_THICKNESS, NUMBER_HEIGHT / 2, NUMBER_THICKNESS, NUMBER_HEIGHT / 2 },
+			{ 0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS },
+		},
+		// 7
+		{
+			{ 0, 0, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT },
+		},
+		// 8
+		{
+			{ 0, 0, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ 0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT },
+			{ 0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT },
+			{ 0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS },
+		},
+		// 9
+		{
+			{ 0, 0, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ 0, 0, NUMBER_THICKNESS, NUMBER_HEIGHT / 2 },
+			{ 0, NUMBER_HEIGHT / 2 - NUMBER_THICKNESS / 2, NUMBER_WIDTH, NUMBER_THICKNESS },
+			{ NUMBER_WIDTH - NUMBER_THICKNESS, 0, NUMBER_THICKNESS, NUMBER_HEIGHT },
+			{ 0, NUMBER_HEIGHT - NUMBER_THICKNESS, NUMBER_WIDTH, NUMBER_THICKNESS },
+		},
+	};
+	// @formatter:on
+
+	private final Group[] slots;
+	private final Group[][] digits;
+	private final int[] visibleDigits;
+	private final boolean growLeft;
+	private final int maxScore;
+	private final String maxScoreMessage;
+
+	private int visibleSlots = 0;
+
+	/**
+	 * Create a new score indicator.
+	 * @param slotCount The amount of digit slots to build.
+	 * @param growLeft Whether additional digits are added to the left side.
+	 * @throws IllegalArgumentException When the slot count is not positive.
+	 */
+	ScoreIndicator(int slotCount, boolean growLeft) throws IllegalArgumentException {
+		Args.isBetween(slotCount, 1, 9, "The slot count must be within the [1..9] range!");
+		this.growLeft = growLeft;
+
+		// build the digits for each slot, where the slot zero holds the ones.
+		slots = new Group[slotCount];
+		digits = new Group[slotCount][10];
+		visibleDigits = new int[slotCount];
+		int maxScore = 0;
+		for (int slot = 0; slot < slotCount; slot++) {
+			slots[slot] = new Group();
+			for (int digit = 0; digit < 10; digit++) {
+				Group group = createNumberGroup(digit);
+				group.setVisible(false);
+				digits[slot][digit] = group;
+				slots[slot].getChildren().add(group);
+			}
+			visibleDigits[slot] = -1;
+			getChildren().add(slots[slot]);
+			maxScore = maxScore * 10 + 9;
+		}
+		this.maxScore = maxScore;
+		this.maxScoreMessage = "The score must be within the [0.." + maxScore + "] range!";
+	}
+
+	/**
+	 * Show the given score in the indicator.
+	 * @param score The score to show.
+	 * @throws IllegalArgumentException When the score doesn't fit the indicator.
+	 */
+	void setScore(int score) throws IllegalArgumentException {
+		Args.isBetween(score, 0, maxScore, maxScoreMessage);
+
+		// resolve the digits to show and toggle only the changed digits.
+		int slotCount = 0;
+		int remaining = score;
+		do {
+			showDigit(slotCount, remaining % 10);
+			remaining /= 10;
+			slotCount++;
+		} while (remaining > 0);
+		for (int slot = slotCount; slot < slots.length; slot++) {
+			showDigit(slot, -1);
+		}
+
+		// reposition the slots only when the amount of digits changes.
+		if (slotCount != visibleSlots) {
+			visibleSlots = slotCount;
+			for (int slot = 0; slot < slotCount; slot++) {
+				slots[slot].setLayoutX(slotOffset(slot, slotCount, growLeft));
+			}
+		}
+	}
+
+	/**
+	 * Get the horizontal offset of a digit slot from the indicator position.
+	 * @param slot The index of the slot, where the slot zero holds the ones.
+	 * @param slotCount The amount of digits in the shown number.
+	 * @param growLeft Whether additional digits are added to the left side.
+	 * @return The offset of the slot along the x-axis.
+	 */
+	static double slotOffset(int slot, int slotCount, boolean growLeft) {
+		double offset = NUMBER_WIDTH + DIGIT_SPACING;
+		return growLeft ? -slot * offset : (slotCount - 1 - slot) * offset;
+	}
+
+	/**
+	 * Show the given digit in the given slot and hide the previous one.
+	 * @param slot The index of the slot.
+	 * @param digit The digit to show or -1 to hide the slot.
+	 */
+	private void showDigit(int slot, int digit) {
+		int previous = visibleDigits[slot];
+		if (previous != digit) {
+			if (previous >= 0) {
+				digits[slot][previous].setVisible(false);
+			}
+			if (digit >= 0) {
+				digits[slot][digit].setVisible(true);
+			}
+			visibleDigits[slot] = digit;
+		}
+	}
+
+	/**
+	 * Create a new rectangle that is filled with white colour.
+	 * @param x The x-coordinate of the rectangle.
+	 * @param y The y-coordinate of the rectangle.
+	 * @param w The width of the rectangle.
+	 * @param h The height of the rectangle.
+	 * @return A new rectangle filled with white colour.
+	 * @throws IllegalArgumentException Whether any negative values were given.
+	 */
+	private static Rectangle whiteRect(double x, double y, double w, double h) throws IllegalArgumentException {
+		Args.isGte(x, 0, "The x-coordinate must be equal or higher than zero!");
+		Args.isGte(y, 0, "The y-coordinate must be equal or higher than zero!");
+		Args.isGte(w, 0, "The width must be equal or higher than zero!");
+		Args.isGte(h, 0, "The heigh must be equal or higher than zero!");
+
+		// create a new rectangle that is filled with white colour.
+		Rectangle rectangle = new Rectangle(x, y, w, h);
+		rectangle.setFill(Color.WHITE);
+		return rectangle;
+	}
+
+	/**
+	 * Create a new number group to render the provided number [0..9] in JavaFX.
+	 * @param number The number to create.
+	 * @return A new group that can be used to render the provided number.
+	 * @throws IllegalArgumentException Whether any invalid number was given.
+	 */
+	static Group createNumberGroup(int number) throws IllegalArgumentException {
+		Args.isBetween(number, 0, 9, "The number must be within the [0..9] range!");
+
+		// construct a new group with the necessary graphics.
+		Group group = new Group();
+		ObservableList<Node> children = group.getChildren();
+		for (double[] rect : GLYPHS[number]) {
+			children.add(whiteRect(rect[0], rect[1], rect[2], rect[3]));
+		}
+		return group;
+	}
+
+}
@@ -0,0 +1,153 @@
+package net.toiviainen.pong.scene;
+
+import static java.util.Objects.requireNonNull;
+import static net.toiviainen.pong.PongApplication.RESOLUTION_HEIGHT;
+import static net.toiviainen.pong.PongApplication.RESOLUTION_WIDTH;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import javafx.scene.Group;
+import javafx.scene.Parent;
+import javafx.scene.paint.Color;
+import net.toiviainen.pong.PongApplication;
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.spectate.SpectatorConnection;
+import net.toiviainen.pong.spectate.StateDecoder;
+
+/**
+ * <p>
+ * The spectator scene for the Pong game.
+ * </p>
+ * <p>
+ * This scene shows a match which is being played elsewhere. It doesn't run a
+ * simulation of its own, but draws the court with the same renderer as the
+ * {@link CourtScene} from the states received through the spectator stream.
+ * When the stream ends or breaks, the scene moves into the
+ * {@link NetworkErrorScene}.
+ * </p>
+ */
+public class SpectatorScene extends AbstractScene {
+
+	// ===================
+	// = class variables =
+	// ===================
+
+	private final PongApplication application;
+	private final SpectatorConnection connection;
+	private final CourtRenderer renderer;
+	private final StateDecoder state = new StateDecoder();
+
+	private int tick = -1;
+	private int player1Score = -1;
+	private int player2Score = -1;
+
+	private double previousBallX;
+	private double previousBallY;
+	private double previousLeftPaddleY;
+	private double previousRightPaddleY;
+
+	public SpectatorScene(PongApplication application, SpectatorConnection connection) throws NullPointerException {
+		super(new Group(), RESOLUTION_WIDTH, RESOLUTION_HEIGHT);
+
+		this.application = requireNonNull(application, "The application cannot be null!");
+		this.connection = requireNonNull(connection, "The connection cannot be null!");
+
+		// the engine only defines the layout of the court for the renderer.
+		CourtEngine layout = new CourtEngine(new PongContext());
+		renderer = CourtRenderer.create(application.getCourtRendererType(), layout,
+				application.isStaticLayerCached());
+
+		Parent root = getRoot();
+		if (!(root instanceof Group)) {
+			throw new AssertionError("The scene root is not a Group instance!");
+		}
+
+		Group rootGroup = (Group) root;
+		rootGroup.getChildren().add(renderer.getNode());
+
+		setFill(Color.BLACK);
+
+		previousBallX = layout.getBallX();
+		previousBallY = layout.getBallY();
+		previousLeftPaddleY = layout.getLeftPaddleY();
+		previousRightPaddleY = layout.getRightPaddleY();
+		renderer.setPlayerScore(1, 0);
+		renderer.setPlayerScore(2, 0);
+		renderer.draw(previousBallX, previousBallY, previousLeftPaddleY, previousRightPaddleY);
+	}
+
+	@Override
+	public void onEnter(PongContext ctx) {
+		// ... nothing to refresh, the stream defines the whole state ...
+	}
+
+	@Override
+	public void tick() {
+		if (connection.getFailure() != null) {
+			application.showScene(NetworkErrorScene.class);
+			return;
+		}
+		if (tick >= 0) {
+			previousBallX = state.getBallX();
+			previousBallY = state.getBallY();
+			previousLeftPaddleY = state.getLeftPaddleY();
+			previousRightPaddleY = state.getRightPaddleY();
+		}
+
+		// pick up the latest state received from the stream, if any.
+		connection.copyLatest(state);
+		if (!state.isSynced() || state.getTick() == tick) {
+			return;
+		}
+		if (tick < 0 || state.getTick() != tick + 1) {
+			// don't interpolate over a gap in the stream.
+			previousBallX = state.getBallX();
+			previousBallY = state.getBallY();
+			previousLeftPaddleY = state.getLeftPaddleY();
+			previousRightPaddleY = state.getRightPaddleY();
+		}
+		tick = state.getTick();
+
+		if (state.getPlayer1Score() != player1Score) {
+			player1Score = state.getPlayer1Score();
+			renderer.setPlayerScore(1, player1Score);
+		}
+		if (state.getPlayer2Score() != player2Score) {
+			player2Score = state.getPlayer2Score();
+			renderer.setPlayerScore(2, player2Score);
+		}
+	}
+
+	@Override
+	public void render(double alpha) {
+		if (tick < 0) {
+			return;
+		}
+		renderer.draw(lerp(previousBallX, state.getBallX(), alpha), lerp(previousBallY, state.getBallY(), alpha),
+				lerp(previousLeftPaddleY, state.getLeftPaddleY(), alpha),
+				lerp(previousRightPaddleY, state.getRightPaddleY(), alpha));
+	}
+
+	@Override
+	public void onStop() {
+		try {
+			connection.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to close the spectator connection!", e);
+		}
+	}
+
+	/**
+	 * Linearly interpolate between the given values.
+	 * @param from The value at the alpha zero.
+	 * @param to The value at the alpha one.
+	 * @param alpha The interpolation alpha.
+	 * @return The interpolated value.
+	 */
+	private static double lerp(double from, double to, double alpha) {
+		return from + (to - from) * alpha;
+	}
+
+}
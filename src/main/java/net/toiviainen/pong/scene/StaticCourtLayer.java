@@ -0,0 +1,109 @@
+package net.toiviainen.pong.scene;
+
+import static net.toiviainen.pong.engine.CourtEngine.BOX_WIDTH;
+import static net.toiviainen.pong.engine.CourtEngine.COURT_HEIGHT;
+import static net.toiviainen.pong.engine.CourtEngine.COURT_WIDTH;
+import static net.toiviainen.pong.engine.CourtEngine.WALL_HEIGHT;
+import static net.toiviainen.pong.scene.CourtRenderer.CENTER_LINE_STEP;
+
+import javafx.collections.ObservableList;
+import javafx.scene.CacheHint;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.ClosePath;
+import javafx.scene.shape.HLineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
+import javafx.scene.shape.VLineTo;
+import net.toiviainen.pong.engine.Box;
+import net.toiviainen.pong.engine.CourtEngine;
+
+/**
+ * <p>
+ * The static layer of the court, which contains the walls and the center line.
+ * </p>
+ * <p>
+ * None of these items ever move, so instead of keeping a node for each of the
+ * twenty or so boxes, the layer is built as a single node which is rasterized
+ * once. The node renderer uses a single path with a bitmap cache, which is
+ * only rasterized again when the scale of the path changes, and the canvas
+ * renderer draws the layer once into its own canvas. The goals are outside of
+ * the visible court, so the layer leaves them out.
+ * </p>
+ */
+final class StaticCourtLayer {
+
+	private StaticCourtLayer() {
+		throw new AssertionError("No net.toiviainen.pong.scene.StaticCourtLayer instances for you!");
+	}
+
+	/**
+	 * Create the static layer as a single cached path.
+	 * @param engine The engine which defines the court layout.
+	 * @return The path node of the static layer.
+	 */
+	static Node createPath(CourtEngine engine) {
+		Path path = new Path();
+		ObservableList<PathElement> elements = path.getElements();
+		addBox(elements, engine.getTopWall());
+		addBox(elements, engine.getBottomWall());
+		double centerLineX = COURT_WIDTH / 2 - BOX_WIDTH / 2;
+		for (double y = WALL_HEIGHT; y < COURT_HEIGHT; y += CENTER_LINE_STEP) {
+			addBox(elements, centerLineX, y, BOX_WIDTH, BOX_WIDTH);
+		}
+		path.setFill(Color.WHITE);
+		path.setStroke(null);
+
+		// the quality hint rasterizes the cache again instead of stretching it.
+		path.setCache(true);
+		path.setCacheHint(CacheHint.QUALITY);
+		return path;
+	}
+
+	private static void addBox(ObservableList<PathElement> elements, Box box) {
+		addBox(elements, box.getX(), box.getY(), box.getWidth(), box.getHeight());
+	}
+
+	private static void addBox(ObservableList<PathElement> elements, double x, double y, double width,
+			double height) {
+		elements.add(new MoveTo(x, y));
+		elements.add(new HLineTo(x + width));
+		elements.add(new VLineTo(y + height));
+		elements.add(new HLineTo(x));
+		elements.add(new ClosePath());
+	}
+
+	/**
+	 * Create the static layer as a canvas, which is drawn only once.
+	 * @param engine The engine which defines the court layout.
+	 * @return The canvas of the static layer.
+	 */
+	static Canvas createCanvas(CourtEngine engine) {
+		Canvas canvas = new Canvas(COURT_WIDTH, COURT_HEIGHT);
+		draw(canvas.getGraphicsContext2D(), engine);
+		return canvas;
+	}
+
+	/**
+	 * Draw the walls and the center line in white.
+	 * @param g The graphics context to draw into.
+	 * @param engine The engine which defines the court layout.
+	 */
+	static void draw(GraphicsContext g, CourtEngine engine) {
+		g.setFill(Color.WHITE);
+		fillBox(g, engine.getTopWall());
+		fillBox(g, engine.getBottomWall());
+		double centerLineX = COURT_WIDTH / 2 - BOX_WIDTH / 2;
+		for (double y = WALL_HEIGHT; y < COURT_HEIGHT; y += CENTER_LINE_STEP) {
+			g.fillRect(centerLineX, y, BOX_WIDTH, BOX_WIDTH);
+		}
+	}
+
+	private static void fillBox(GraphicsContext g, Box box) {
+		g.fillRect(box.getX(), box.getY(), box.getWidth(), box.getHeight());
+	}
+
+}
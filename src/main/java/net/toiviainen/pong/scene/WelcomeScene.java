@@ -1,10 +1,10 @@
 package net.toiviainen.pong.scene;
 
 import static java.util.Objects.requireNonNull;
-import static net.toiviainen.pong.PongApplication.BIG_FONT;
 import static net.toiviainen.pong.PongApplication.RESOLUTION_HEIGHT;
 import static net.toiviainen.pong.PongApplication.RESOLUTION_WIDTH;
-import static net.toiviainen.pong.PongApplication.SMALL_FONT;
+import static net.toiviainen.pong.PongApplication.getBigFont;
+import static net.toiviainen.pong.PongApplication.getSmallFont;
 
 import javafx.collections.ObservableList;
 import javafx.geometry.VPos;
@@ -14,8 +14,9 @@ import javafx.scene.Parent;
 import javafx.scene.input.KeyCode;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
-import javafx.stage.Stage;
 import net.toiviainen.pong.PongApplication;
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.net.LockstepSession;
 
 /**
  * <p>
@@ -27,59 +28,76 @@ import net.toiviainen.pong.PongApplication;
  * about how to move the paddles with the keyboard and a text which contains an
  * instructions about how to start the game.
  * </p>
+ * <p>
+ * In a network game the scene also shows whether the remote player has
+ * connected, and it moves into the {@link NetworkErrorScene} when the session
+ * fails. The session has no way to wake up a paused main loop, so the scene
+ * is never idle in a network game.
+ * </p>
  */
 public class WelcomeScene extends AbstractScene {
 
+	private final PongApplication application;
+	private final LockstepSession session;
+
 	private final Text topicText;
 	private final Text leftControlsTopicText;
 	private final Text leftControlsText;
 	private final Text rightControlsTopicText;
 	private final Text rightControlsText;
+	private final Text connectionText;
 	private final Text proceedInstructionsText;
 
 	public WelcomeScene(PongApplication application) throws NullPointerException {
 		super(new Group(), RESOLUTION_WIDTH, RESOLUTION_HEIGHT);
 
-		requireNonNull(application, "The application cannot be null!");
+		this.application = requireNonNull(application, "The application cannot be null!");
+		this.session = application.getNetworkSession();
 
 		topicText = new Text("JavaFX Pong");
 		topicText.setTextOrigin(VPos.CENTER);
-		topicText.setFont(BIG_FONT);
+		topicText.setFont(getBigFont());
 		topicText.setLayoutX((RESOLUTION_WIDTH - topicText.prefWidth(-1)) / 2);
 		topicText.setLayoutY(RESOLUTION_HEIGHT / 6);
 		topicText.setFill(Color.WHITE);
 
 		leftControlsTopicText = new Text("Controls for the left player:");
 		leftControlsTopicText.setTextOrigin(VPos.CENTER);
-		leftControlsTopicText.setFont(SMALL_FONT);
+		leftControlsTopicText.setFont(getSmallFont());
 		leftControlsTopicText.setLayoutX((RESOLUTION_WIDTH - leftControlsTopicText.prefWidth(-1)) / 2);
 		leftControlsTopicText.setLayoutY(topicText.getLayoutY() + 100);
 		leftControlsTopicText.setFill(Color.WHITE);
 
 		leftControlsText = new Text("W and S");
 		leftControlsText.setTextOrigin(VPos.CENTER);
-		leftControlsText.setFont(SMALL_FONT);
+		leftControlsText.setFont(getSmallFont());
 		leftControlsText.setLayoutX((RESOLUTION_WIDTH - leftControlsText.prefWidth(-1)) / 2);
 		leftControlsText.setLayoutY(leftControlsTopicText.getLayoutY() + 40);
 		leftControlsText.setFill(Color.WHITE);
 
 		rightControlsTopicText = new Text("Controls for the right player:");
 		rightControlsTopicText.setTextOrigin(VPos.CENTER);
-		rightControlsTopicText.setFont(SMALL_FONT);
+		rightControlsTopicText.setFont(getSmallFont());
 		rightControlsTopicText.setLayoutX((RESOLUTION_WIDTH - rightControlsTopicText.prefWidth(-1)) / 2);
 		rightControlsTopicText.setLayoutY(leftControlsText.getLayoutY() + 60);
 		rightControlsTopicText.setFill(Color.WHITE);
 
 		rightControlsText = new Text("UP-ARROW and DOWN-ARROW");
 		rightControlsText.setTextOrigin(VPos.CENTER);
-		rightControlsText.setFont(SMALL_FONT);
+		rightControlsText.setFont(getSmallFont());
 		rightControlsText.setLayoutX((RESOLUTION_WIDTH - rightControlsText.prefWidth(-1)) / 2);
 		rightControlsText.setLayoutY(rightControlsTopicText.getLayoutY() + 40);
 		rightControlsText.setFill(Color.WHITE);
 
+		connectionText = new Text();
+		connectionText.setTextOrigin(VPos.CENTER);
+		connectionText.setFont(getSmallFont());
+		connectionText.setLayoutY(rightControlsText.getLayoutY() + 60);
+		connectionText.setFill(Color.WHITE);
+
 		proceedInstructionsText = new Text("Press [ENTER] to start the match");
 		proceedInstructionsText.setTextOrigin(VPos.CENTER);
-		proceedInstructionsText.setFont(SMALL_FONT);
+		proceedInstructionsText.setFont(getSmallFont());
 		proceedInstructionsText.setLayoutX((RESOLUTION_WIDTH - proceedInstructionsText.prefWidth(-1)) / 2);
 		proceedInstructionsText.setLayoutY(rightControlsTopicText.getLayoutY() + 160);
 		proceedInstructionsText.setFill(Color.WHITE);
@@ -97,12 +115,15 @@ public class WelcomeScene extends AbstractScene {
 		children.add(rightControlsTopicText);
 		children.add(rightControlsText);
 		children.add(proceedInstructionsText);
+		if (session != null) {
+			children.add(connectionText);
+			showConnection();
+		}
 
 		setOnKeyReleased(x -> {
 			if (x.getCode() == KeyCode.ENTER) {
 				// move into the court scene so we can start the game.
-				Stage primaryStage = application.getPrimaryStage();
-				primaryStage.setScene(new CourtScene(application));
+				application.showScene(CourtScene.class);
 			}
 		});
 
@@ -110,8 +131,38 @@ public class WelcomeScene extends AbstractScene {
 	}
 
 	@Override
-	public void tick() {
+	public void onEnter(PongContext ctx) {
 		// ... nothing to do ...
 	}
 
+	@Override
+	public void tick() {
+		if (session == null) {
+			return;
+		}
+		if (session.getFailure() != null) {
+			// the match could never start, so don't wait for a key first.
+			application.showScene(NetworkErrorScene.class);
+			return;
+		}
+		showConnection();
+	}
+
+	/**
+	 * Show whether the remote player has connected into the session.
+	 */
+	private void showConnection() {
+		String text = session.isConnected() ? "The opponent has connected" : "Waiting for the opponent...";
+		if (!text.equals(connectionText.getText())) {
+			connectionText.setText(text);
+			connectionText.setLayoutX((RESOLUTION_WIDTH - connectionText.prefWidth(-1)) / 2);
+		}
+	}
+
+	@Override
+	public boolean isIdle() {
+		// without a session the scene only changes when a key is pressed.
+		return session == null;
+	}
+
 }
@@ -0,0 +1,223 @@
+package net.toiviainen.pong.server;
+
+import static net.toiviainen.pong.engine.CourtEngine.BOX_WIDTH;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_DOWN;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_NONE;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_UP;
+import static net.toiviainen.pong.engine.CourtEngine.PADDLE_HEIGHT;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import net.toiviainen.pong.replay.InputLog;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A command-line client which simulates a crowd of bot players.
+ * </p>
+ * <p>
+ * All the bots share a single socket and a single thread. Each bot joins the
+ * server, follows the ball from the state messages of its match just like the
+ * {@link net.toiviainen.pong.sim.BallFollower} does, sends its input whenever
+ * its direction changes and joins again when its match is over.
+ * </p>
+ * <p>
+ * Supported arguments: {@code --server=host:port}, {@code --players=N} and
+ * {@code --duration=N} (seconds).
+ * </p>
+ */
+public final class LoadGenerator {
+
+	/** The distance from the paddle center where the paddle stays still. */
+	private static final double DEAD_ZONE = PADDLE_HEIGHT / 4;
+
+	/** The time to wait for a reply before joining again. */
+	private static final long JOIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static final int SOCKET_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(ServerProtocol.MAX_MESSAGE_SIZE)
+			.order(ServerProtocol.BYTE_ORDER);
+
+	// the state of each bot, indexed by the bot (i.e. the token of the bot).
+	private final int[] playerIds;
+	private final byte[] sides;
+	private final byte[] inputs;
+	private final long[] joinTimes;
+
+	// the bot of each player identifier given by the server.
+	private int[] bots = new int[1024];
+
+	private long matchesStarted;
+	private long matchesFinished;
+	private long statesReceived;
+	private long inputsSent;
+
+	LoadGenerator(InetSocketAddress server, int players) throws IOException {
+		channel = DatagramChannel.open();
+		channel.setOption(StandardSocketOptions.SO_RCVBUF, SOCKET_BUFFER_SIZE);
+		channel.setOption(StandardSocketOptions.SO_SNDBUF, SOCKET_BUFFER_SIZE);
+		channel.connect(server);
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+
+		playerIds = new int[players];
+		sides = new byte[players];
+		inputs = new byte[players];
+		joinTimes = new long[players];
+		Arrays.fill(playerIds, -1);
+		Arrays.fill(bots, -1);
+	}
+
+	void run(long durationNanos) throws IOException {
+		long start = System.nanoTime();
+		long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+		long previousStates = 0;
+		for (int bot = 0; bot < playerIds.length; bot++) {
+			join(bot, start);
+		}
+		while (System.nanoTime() - start < durationNanos) {
+			selector.select(10);
+			selector.selectedKeys().clear();
+			receive();
+
+			long now = System.nanoTime();
+			for (int bot = 0; bot < playerIds.length; bot++) {
+				if (playerIds[bot] < 0 && now - joinTimes[bot] > JOIN_TIMEOUT_NANOS) {
+					join(bot, now);
+				}
+			}
+			if (now >= nextReport) {
+				System.out.printf("matches started: %d  finished: %d  states/s: %d  inputs sent: %d%n",
+						matchesStarted, matchesFinished, statesReceived - previousStates, inputsSent);
+				previousStates = statesReceived;
+				nextReport += TimeUnit.SECONDS.toNanos(1);
+			}
+		}
+		selector.close();
+		channel.close();
+	}
+
+	private void receive() throws IOException {
+		while (true) {
+			buffer.clear();
+			if (channel.receive(buffer) == null) {
+				return;
+			}
+			buffer.flip();
+			if (buffer.remaining() < 5) {
+				continue;
+			}
+			byte type = buffer.get();
+			if (type == ServerProtocol.STATE && buffer.remaining() >= 27) {
+				int bot = botOf(buffer.getInt());
+				if (bot >= 0) {
+					receiveState(bot);
+				}
+			} else if (type == ServerProtocol.JOINED && buffer.remaining() >= 8) {
+				int bot = buffer.getInt();
+				int playerId = buffer.getInt();
+				if (bot >= 0 && bot < playerIds.length && playerIds[bot] < 0) {
+					playerIds[bot] = playerId;
+					inputs[bot] = 0;
+					if (playerId >= bots.length) {
+						int oldLength = bots.length;
+						bots = Arrays.copyOf(bots, Math.max(playerId + 1, oldLength * 2));
+						Arrays.fill(bots, oldLength, bots.length, -1);
+					}
+					bots[playerId] = bot;
+				}
+			} else if (type == ServerProtocol.START && buffer.remaining() >= 9) {
+				int bot = botOf(buffer.getInt());
+				buffer.getInt();
+				if (bot >= 0) {
+					sides[bot] = buffer.get();
+					matchesStarted++;
+				}
+			}
+		}
+	}
+
+	private void receiveState(int bot) throws IOException {
+		statesReceived++;
+		buffer.getInt();
+		buffer.getFloat();
+		float ballY = buffer.getFloat();
+		float leftY = buffer.getFloat();
+		float rightY = buffer.getFloat();
+		buffer.get();
+		buffer.get();
+		byte flags = buffer.get();
+		if ((flags & ServerProtocol.FLAG_MATCH_OVER) != 0) {
+			if (sides[bot] == ServerProtocol.SIDE_LEFT) {
+				matchesFinished++;
+			}
+			bots[playerIds[bot]] = -1;
+			join(bot, System.nanoTime());
+			return;
+		}
+
+		// follow the ball and send the input only when it changes.
+		float paddleY = sides[bot] == ServerProtocol.SIDE_LEFT ? leftY : rightY;
+		double delta = (ballY + BOX_WIDTH / 2) - (paddleY + PADDLE_HEIGHT / 2);
+		double direction = delta < -DEAD_ZONE ? DIRECTION_UP : (delta > DEAD_ZONE ? DIRECTION_DOWN : DIRECTION_NONE);
+		byte input = InputLog.encode(direction);
+		if (input != inputs[bot]) {
+			inputs[bot] = input;
+			buffer.clear();
+			buffer.put(ServerProtocol.INPUT).putInt(playerIds[bot]).put(input);
+			buffer.flip();
+			channel.write(buffer);
+			inputsSent++;
+		}
+	}
+
+	private void join(int bot, long now) throws IOException {
+		playerIds[bot] = -1;
+		joinTimes[bot] = now;
+		buffer.clear();
+		buffer.put(ServerProtocol.JOIN).putInt(bot);
+		buffer.flip();
+		channel.write(buffer);
+	}
+
+	private int botOf(int playerId) {
+		return playerId >= 0 && playerId < bots.length ? bots[playerId] : -1;
+	}
+
+	public static void main(String args[]) throws Exception {
+		String server = "localhost:" + ServerProtocol.DEFAULT_PORT;
+		int players = 2000;
+		long duration = 30;
+		for (String arg : args) {
+			if (arg.startsWith("--server=")) {
+				server = arg.substring("--server=".length());
+			} else if (arg.startsWith("--players=")) {
+				players = Integer.parseInt(arg.substring("--players=".length()));
+			} else if (arg.startsWith("--duration=")) {
+				duration = Long.parseLong(arg.substring("--duration=".length()));
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + arg);
+			}
+		}
+		Args.isGte(players, 2, "The amount of players must be at least two!");
+		Args.isGte(duration, 1, "The duration must be at least one second!");
+
+		int colon = server.lastIndexOf(':');
+		InetSocketAddress address = new InetSocketAddress(server.substring(0, colon),
+				Integer.parseInt(server.substring(colon + 1)));
+		new LoadGenerator(address, players).run(TimeUnit.SECONDS.toNanos(duration));
+	}
+
+}
@@ -0,0 +1,35 @@
+package net.toiviainen.pong.server;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+
+/**
+ * <p>
+ * A single match hosted by the match server.
+ * </p>
+ * <p>
+ * The match is owned by a single {@link TickWheel} worker, which steps its
+ * engine with the latest inputs of both players. The worker marks the match
+ * over once it has sent the final state, after which the server may let the
+ * players join again.
+ * </p>
+ */
+final class Match {
+
+	final int id;
+	final Player left;
+	final Player right;
+	final CourtEngine engine;
+
+	int tick;
+
+	volatile boolean over;
+
+	Match(int id, Player left, Player right, long seed) {
+		this.id = id;
+		this.left = left;
+		this.right = right;
+		this.engine = new CourtEngine(new PongContext(), seed);
+	}
+
+}
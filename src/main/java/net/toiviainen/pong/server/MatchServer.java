@@ -0,0 +1,354 @@
+package net.toiviainen.pong.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.toiviainen.pong.FixedTimestep;
+import net.toiviainen.pong.sim.Difficulty;
+import net.toiviainen.pong.sim.InterceptController;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A headless server which hosts a large amount of concurrent matches.
+ * </p>
+ * <p>
+ * The server pairs the joining players into matches in the order they join
+ * and runs each match with the same {@link net.toiviainen.pong.engine.CourtEngine}
+ * rules as the court scene. The matches are spread between a small amount of
+ * {@link TickWheel} workers, so the amount of threads doesn't depend on the
+ * amount of matches. All the incoming datagrams are served by the thread which
+ * runs the server, which just stores the latest input of each player for the
+ * workers to pick up on their next tick.
+ * </p>
+ * <p>
+ * The workers hand the finished matches back to the serving thread, which
+ * then forgets their players and reuses their identifiers, so the amount of
+ * the tracked players only depends on the amount of the ongoing matches.
+ * </p>
+ * <p>
+ * When a bot difficulty is given, each joining player is immediately matched
+ * against an {@link InterceptController} instead of waiting for another
+ * player. The server can also host a given amount of matches between two bots
+ * to load the workers without any clients.
+ * </p>
+ * <p>
+ * Supported arguments: {@code --port=N}, {@code --workers=N},
+ * {@code --slots=N} (per tick), {@code --state-interval=N} (ticks),
+ * {@code --report=N} (seconds), {@code --duration=N} (seconds),
+ * {@code --bot=D} (a {@link Difficulty}) and {@code --bot-matches=N}.
+ * </p>
+ */
+public final class MatchServer {
+
+	/** The default amount of timer wheel slots within a tick. */
+	private static final int DEFAULT_SLOTS = 16;
+
+	/** The default amount of ticks between the state messages. */
+	private static final int DEFAULT_STATE_INTERVAL = 3;
+
+	/** The size of the socket buffers, which must absorb bursts of thousands of players. */
+	private static final int SOCKET_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private final ServerStats stats;
+	private final TickWheel[] workers;
+	private final List<Player> players = new ArrayList<>();
+	private final Deque<Integer> freeIds = new ArrayDeque<>();
+	private final Map<SocketAddress, Map<Integer, Player>> joined = new HashMap<>();
+	private final Queue<Match> finished = new ConcurrentLinkedQueue<>();
+	private final Random seeds = new Random();
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(ServerProtocol.MAX_MESSAGE_SIZE)
+			.order(ServerProtocol.BYTE_ORDER);
+	private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(ServerProtocol.MAX_MESSAGE_SIZE)
+			.order(ServerProtocol.BYTE_ORDER);
+
+	private Difficulty botDifficulty;
+	private Player waiting;
+	private int nextMatchId;
+
+	MatchServer(int port, int workerCount, int slots, int stateInterval) throws IOException {
+		Args.isBetween(port, 0, 65535, "The port must be within [0..65535]!");
+		Args.isGte(workerCount, 1, "The amount of workers must be at least one!");
+		Args.isGte(slots, 1, "The amount of slots must be at least one!");
+		Args.isGte(stateInterval, 1, "The state interval must be at least one tick!");
+		channel = DatagramChannel.open();
+		channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		channel.setOption(StandardSocketOptions.SO_RCVBUF, SOCKET_BUFFER_SIZE);
+		channel.setOption(StandardSocketOptions.SO_SNDBUF, SOCKET_BUFFER_SIZE);
+		channel.bind(new InetSocketAddress(port));
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+
+		stats = new ServerStats(workerCount);
+		workers = new TickWheel[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			workers[i] = new TickWheel(channel, stats, FixedTimestep.DEFAULT_STEP_NANOS, slots, stateInterval,
+					finished);
+			Thread thread = new Thread(workers[i], "pong-worker-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Serve the incoming datagrams until the given deadline.
+	 * @param reportNanos The interval between the statistics reports.
+	 * @param durationNanos The duration to run or a negative value to run forever.
+	 * @throws IOException When the serving fails.
+	 */
+	void serve(long reportNanos, long durationNanos) throws IOException {
+		long start = System.nanoTime();
+		long nextReport = start + reportNanos;
+		while (durationNanos < 0 || System.nanoTime() - start < durationNanos) {
+			selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextReport - System.nanoTime())));
+			selector.selectedKeys().clear();
+			removeFinished();
+			receive();
+			if (System.nanoTime() >= nextReport) {
+				System.out.println(stats.report());
+				nextReport += reportNanos;
+			}
+		}
+		for (TickWheel worker : workers) {
+			worker.stop();
+		}
+		selector.close();
+		channel.close();
+	}
+
+	private void receive() throws IOException {
+		while (true) {
+			receiveBuffer.clear();
+			SocketAddress sender = channel.receive(receiveBuffer);
+			if (sender == null) {
+				return;
+			}
+			stats.packetsReceived.incrementAndGet();
+			receiveBuffer.flip();
+			if (receiveBuffer.remaining() < 5) {
+				continue;
+			}
+			byte type = receiveBuffer.get();
+			if (type == ServerProtocol.INPUT && receiveBuffer.remaining() >= 5) {
+				int id = receiveBuffer.getInt();
+				byte input = receiveBuffer.get();
+				if (id >= 0 && id < players.size()) {
+					Player player = players.get(id);
+					if (player != null && player.address.equals(sender)) {
+						player.input = input;
+					}
+				}
+			} else if (type == ServerProtocol.JOIN) {
+				join(receiveBuffer.getInt(), sender);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Register a new player and pair it with the waiting one, if any.
+	 * </p>
+	 * <p>
+	 * A client repeats its join when the reply is lost, so a player which has
+	 * already joined with the same address and token just gets the replies
+	 * again instead of joining another match.
+	 * </p>
+	 * @param token The token chosen by the client.
+	 * @param address The address of the client.
+	 * @throws IOException When the replying fails.
+	 */
+	private void join(int token, SocketAddress address) throws IOException {
+		Map<Integer, Player> tokens = joined.get(address);
+		Player player = tokens != null ? tokens.get(token) : null;
+		if (player != null && player.match != null && player.match.over) {
+			// the match is over, so the client wants to play another one.
+			remove(player);
+			player = null;
+		}
+		if (player != null) {
+			sendJoined(player);
+			if (player.match != null) {
+				sendStart(player, player.match, player.side);
+			}
+			return;
+		}
+
+		Integer freeId = freeIds.poll();
+		if (freeId != null) {
+			player = new Player(freeId, address, token);
+			players.set(freeId, player);
+		} else {
+			player = new Player(players.size(), address, token);
+			players.add(player);
+		}
+		joined.computeIfAbsent(address, x -> new HashMap<>()).put(token, player);
+		sendJoined(player);
+
+		if (botDifficulty != null) {
+			Match match = new Match(nextMatchId++, createBot(true, botDifficulty), player, seeds.nextLong());
+			sendStart(match.right, match, ServerProtocol.SIDE_RIGHT);
+			start(match);
+			return;
+		}
+		if (waiting == null) {
+			waiting = player;
+			return;
+		}
+		Match match = new Match(nextMatchId++, waiting, player, seeds.nextLong());
+		waiting = null;
+		sendStart(match.left, match, ServerProtocol.SIDE_LEFT);
+		sendStart(match.right, match, ServerProtocol.SIDE_RIGHT);
+		start(match);
+	}
+
+	/**
+	 * Forget the players of the matches the workers have finished.
+	 */
+	private void removeFinished() {
+		Match match;
+		while ((match = finished.poll()) != null) {
+			remove(match.left);
+			remove(match.right);
+		}
+	}
+
+	/**
+	 * Forget a player and release its identifier, unless it's already forgotten.
+	 * @param player The player to forget.
+	 */
+	private void remove(Player player) {
+		if (player.isBot() || players.get(player.id) != player) {
+			return;
+		}
+		players.set(player.id, null);
+		freeIds.push(player.id);
+		Map<Integer, Player> tokens = joined.get(player.address);
+		if (tokens != null && tokens.remove(player.token, player) && tokens.isEmpty()) {
+			joined.remove(player.address);
+		}
+	}
+
+	/**
+	 * Match all the joining players against a bot of the given difficulty.
+	 * @param difficulty The difficulty of the bots or null to pair the players.
+	 */
+	void setBotDifficulty(Difficulty difficulty) {
+		this.botDifficulty = difficulty;
+	}
+
+	/**
+	 * Start a match between two bots.
+	 * @param difficulty The difficulty of both bots.
+	 */
+	void startBotMatch(Difficulty difficulty) {
+		start(new Match(nextMatchId++, createBot(true, difficulty), createBot(false, difficulty), seeds.nextLong()));
+	}
+
+	private Player createBot(boolean left, Difficulty difficulty) {
+		return new Player(new InterceptController(left, difficulty, seeds.nextLong()));
+	}
+
+	/**
+	 * Give the match into the worker with the fewest matches.
+	 * @param match The match to start.
+	 */
+	private void start(Match match) {
+		TickWheel worker = workers[0];
+		for (TickWheel candidate : workers) {
+			if (candidate.getLoad() < worker.getLoad()) {
+				worker = candidate;
+			}
+		}
+		stats.activeMatches.incrementAndGet();
+		worker.add(match);
+	}
+
+	private void sendJoined(Player player) throws IOException {
+		sendBuffer.clear();
+		sendBuffer.put(ServerProtocol.JOINED).putInt(player.token).putInt(player.id);
+		send(player.address);
+	}
+
+	private void sendStart(Player player, Match match, byte side) throws IOException {
+		player.match = match;
+		player.side = side;
+		sendBuffer.clear();
+		sendBuffer.put(ServerProtocol.START).putInt(player.id).putInt(match.id).put(side);
+		send(player.address);
+	}
+
+	private void send(SocketAddress address) throws IOException {
+		sendBuffer.flip();
+		if (channel.send(sendBuffer, address) > 0) {
+			stats.packetsSent.increment();
+		} else {
+			stats.packetsDropped.increment();
+		}
+	}
+
+	public static void main(String args[]) throws Exception {
+		int port = ServerProtocol.DEFAULT_PORT;
+		int workers = Runtime.getRuntime().availableProcessors();
+		int slots = DEFAULT_SLOTS;
+		int stateInterval = DEFAULT_STATE_INTERVAL;
+		long report = 5;
+		long duration = -1;
+		Difficulty bot = null;
+		int botMatches = 0;
+		for (String arg : args) {
+			if (arg.startsWith("--port=")) {
+				port = Integer.parseInt(arg.substring("--port=".length()));
+			} else if (arg.startsWith("--workers=")) {
+				workers = Integer.parseInt(arg.substring("--workers=".length()));
+			} else if (arg.startsWith("--slots=")) {
+				slots = Integer.parseInt(arg.substring("--slots=".length()));
+			} else if (arg.startsWith("--state-interval=")) {
+				stateInterval = Integer.parseInt(arg.substring("--state-interval=".length()));
+			} else if (arg.startsWith("--report=")) {
+				report = Long.parseLong(arg.substring("--report=".length()));
+			} else if (arg.startsWith("--duration=")) {
+				duration = Long.parseLong(arg.substring("--duration=".length()));
+			} else if (arg.startsWith("--bot=")) {
+				bot = Difficulty.valueOf(arg.substring("--bot=".length()).toUpperCase(Locale.ROOT));
+			} else if (arg.startsWith("--bot-matches=")) {
+				botMatches = Integer.parseInt(arg.substring("--bot-matches=".length()));
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + arg);
+			}
+		}
+		Args.isGte(report, 1, "The report interval must be at least one second!");
+		Args.isGte(botMatches, 0, "The amount of bot matches cannot be negative!");
+		if (botMatches > 0 && bot == Difficulty.PERFECT) {
+			throw new IllegalArgumentException("Two perfect bots would never finish a match!");
+		}
+
+		MatchServer server = new MatchServer(port, workers, slots, stateInterval);
+		server.setBotDifficulty(bot);
+		for (int i = 0; i < botMatches; i++) {
+			server.startBotMatch(bot == null ? Difficulty.NORMAL : bot);
+		}
+		System.out.printf("listening at port %d with %d workers%n", port, workers);
+		server.serve(TimeUnit.SECONDS.toNanos(report), duration < 0 ? -1 : TimeUnit.SECONDS.toNanos(duration));
+	}
+
+}
@@ -0,0 +1,51 @@
+package net.toiviainen.pong.server;
+
+import java.net.SocketAddress;
+
+import net.toiviainen.pong.engine.PaddleController;
+
+/**
+ * <p>
+ * A player connected into the match server.
+ * </p>
+ * <p>
+ * The latest input of the player is written by the network thread and read by
+ * the worker thread of the match, so it's kept in a volatile field. A bot
+ * player has no address and its input comes from its paddle controller.
+ * </p>
+ * <p>
+ * The match of the player and its side within the match are only touched by
+ * the network thread.
+ * </p>
+ */
+final class Player {
+
+	final int id;
+	final SocketAddress address;
+	final int token;
+	final PaddleController controller;
+
+	volatile byte input;
+
+	Match match;
+	byte side;
+
+	Player(int id, SocketAddress address, int token) {
+		this.id = id;
+		this.address = address;
+		this.token = token;
+		this.controller = null;
+	}
+
+	Player(PaddleController controller) {
+		this.id = -1;
+		this.address = null;
+		this.token = -1;
+		this.controller = controller;
+	}
+
+	boolean isBot() {
+		return controller != null;
+	}
+
+}
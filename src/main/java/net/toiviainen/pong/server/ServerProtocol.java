@@ -0,0 +1,65 @@
+package net.toiviainen.pong.server;
+
+import java.nio.ByteOrder;
+
+/**
+ * <p>
+ * The datagram protocol between the match server and its clients.
+ * </p>
+ * <p>
+ * Each datagram starts with a type byte, followed by the little-endian fields
+ * of the message. A client joins the queue with a token of its own choosing
+ * and receives a player identifier, which it then uses in all of its inputs.
+ * This allows a single socket to carry any number of players, which is how
+ * the load generator simulates thousands of them. The server is authoritative:
+ * it applies the latest input of each player on every tick and periodically
+ * sends the resulting state to both players of the match.
+ * </p>
+ * <p>
+ * A join repeated with the same token, e.g. as the reply was lost, is answered
+ * with the same identifier and the start of its match, if any. The identifier
+ * is released when the match is over, after which the same token joins anew
+ * and the identifier may be given to another player.
+ * </p>
+ *
+ * <pre>
+ * type    fields
+ * JOIN    int token
+ * JOINED  int token, int player
+ * START   int player, int match, byte side (0 = left, 1 = right)
+ * INPUT   int player, byte direction (see InputLog.encode)
+ * STATE   int player, int tick, float ball x, float ball y, float left paddle y,
+ *         float right paddle y, byte player 1 score, byte player 2 score, byte flags
+ * </pre>
+ */
+public final class ServerProtocol {
+
+	/** The default UDP port of the match server. */
+	public static final int DEFAULT_PORT = 7878;
+
+	/** The byte order of all messages. */
+	public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/** The maximum size of any message in bytes. */
+	public static final int MAX_MESSAGE_SIZE = 32;
+
+	public static final byte JOIN = 1;
+	public static final byte JOINED = 2;
+	public static final byte START = 3;
+	public static final byte INPUT = 4;
+	public static final byte STATE = 5;
+
+	/** The side of the player controlling the left paddle. */
+	public static final byte SIDE_LEFT = 0;
+
+	/** The side of the player controlling the right paddle. */
+	public static final byte SIDE_RIGHT = 1;
+
+	/** A state flag for the final state of a match. */
+	public static final byte FLAG_MATCH_OVER = 1;
+
+	private ServerProtocol() {
+		throw new AssertionError("No net.toiviainen.pong.server.ServerProtocol instances for you!");
+	}
+
+}
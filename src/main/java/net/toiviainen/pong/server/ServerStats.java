@@ -0,0 +1,64 @@
+package net.toiviainen.pong.server;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.toiviainen.pong.metrics.Histogram;
+
+/**
+ * <p>
+ * The statistics of a running match server.
+ * </p>
+ * <p>
+ * All values are updated lock-free from the network and the worker threads,
+ * while the reporter reads them periodically. A tick which starts later than
+ * a whole tick duration after its scheduled deadline is counted as a deadline
+ * miss, since the players would see it as a dropped frame. The counters which
+ * every worker updates on each tick are striped adders to avoid contention.
+ * </p>
+ */
+public final class ServerStats {
+
+	final AtomicLong activeMatches = new AtomicLong();
+	final AtomicLong finishedMatches = new AtomicLong();
+	final LongAdder ticks = new LongAdder();
+	final LongAdder deadlineMisses = new LongAdder();
+	final AtomicLong skippedPeriods = new AtomicLong();
+	final AtomicLong packetsReceived = new AtomicLong();
+	final LongAdder packetsSent = new LongAdder();
+	final LongAdder packetsDropped = new LongAdder();
+	final Histogram lateness = new Histogram();
+
+	private final int workers;
+
+	private long previousTicks;
+	private long previousTime = System.nanoTime();
+
+	ServerStats(int workers) {
+		this.workers = workers;
+	}
+
+	/**
+	 * Build a single line report of the statistics since the previous report.
+	 * @return The report.
+	 */
+	String report() {
+		long now = System.nanoTime();
+		long currentTicks = ticks.sum();
+		double seconds = (now - previousTime) / 1e9;
+		double ticksPerSecond = (currentTicks - previousTicks) / seconds;
+		previousTicks = currentTicks;
+		previousTime = now;
+
+		long matches = activeMatches.get();
+		int cores = Runtime.getRuntime().availableProcessors();
+		return String.format(Locale.ROOT,
+				"matches: %d (%.1f/core, %.1f/worker)  finished: %d  ticks/s: %.0f  deadline misses: %d"
+						+ "  lateness p99/max: %.3f/%.3f ms  packets in/out/dropped: %d/%d/%d",
+				matches, (double) matches / cores, (double) matches / workers, finishedMatches.get(),
+				ticksPerSecond, deadlineMisses.sum(), lateness.getValueAtPercentile(99) / 1e6,
+				lateness.getMax() / 1e6, packetsReceived.get(), packetsSent.sum(), packetsDropped.sum());
+	}
+
+}
@@ -0,0 +1,216 @@
+package net.toiviainen.pong.server;
+
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_MATCH_OVER;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.replay.InputLog;
+
+/**
+ * <p>
+ * A worker which ticks its matches on a timer wheel.
+ * </p>
+ * <p>
+ * The duration of a tick is divided into a fixed amount of slots, and each
+ * match is placed into the slot with the fewest matches when it's added. The
+ * worker then walks around the wheel, waking up at the deadline of each slot
+ * and stepping only the matches of that slot. This way a single thread can
+ * host thousands of matches, and their work is spread evenly over the tick
+ * instead of every match waking up at the same instant.
+ * </p>
+ * <p>
+ * When the worker falls behind, the late slots are processed immediately to
+ * catch up. If it falls behind by more than {@link #MAX_LAG_PERIODS} whole
+ * ticks, the wheel is realigned to the current time and the lost ticks are
+ * counted as skipped.
+ * </p>
+ */
+final class TickWheel implements Runnable {
+
+	/** The amount of whole ticks the wheel may lag before it's realigned. */
+	private static final int MAX_LAG_PERIODS = 5;
+
+	private final DatagramChannel channel;
+	private final ServerStats stats;
+	private final long tickNanos;
+	private final long slotNanos;
+	private final int stateInterval;
+	private final List<List<Match>> slots;
+	private final Queue<Match> incoming = new ConcurrentLinkedQueue<>();
+	private final Queue<Match> finished;
+	private final AtomicInteger load = new AtomicInteger();
+	private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(ServerProtocol.MAX_MESSAGE_SIZE)
+			.order(ServerProtocol.BYTE_ORDER);
+
+	private volatile boolean running = true;
+
+	/**
+	 * Create a new worker.
+	 * @param channel The channel to send the match states with.
+	 * @param stats The statistics of the server.
+	 * @param tickNanos The duration of a tick.
+	 * @param slotCount The amount of slots within a tick.
+	 * @param stateInterval The amount of ticks between the state messages.
+	 * @param finished The queue to hand the finished matches back with.
+	 */
+	TickWheel(DatagramChannel channel, ServerStats stats, long tickNanos, int slotCount, int stateInterval,
+			Queue<Match> finished) {
+		this.channel = channel;
+		this.finished = finished;
+		this.stats = stats;
+		this.tickNanos = tickNanos;
+		this.slotNanos = tickNanos / slotCount;
+		this.stateInterval = stateInterval;
+		this.slots = new ArrayList<>(slotCount);
+		for (int i = 0; i < slotCount; i++) {
+			slots.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Add a new match into the worker. This can be called from any thread.
+	 * @param match The match to add.
+	 */
+	void add(Match match) {
+		load.incrementAndGet();
+		incoming.add(match);
+	}
+
+	/**
+	 * Get the amount of matches hosted by this worker.
+	 * @return The amount of matches.
+	 */
+	int getLoad() {
+		return load.get();
+	}
+
+	void stop() {
+		running = false;
+	}
+
+	@Override
+	public void run() {
+		long periodStart = System.nanoTime();
+		int slot = 0;
+		while (running) {
+			long deadline = periodStart + slot * slotNanos;
+			long now;
+			while ((now = System.nanoTime()) < deadline) {
+				LockSupport.parkNanos(deadline - now);
+			}
+			assignIncoming();
+			tickSlot(slots.get(slot), deadline);
+
+			if (++slot == slots.size()) {
+				slot = 0;
+				periodStart += tickNanos;
+				long lag = System.nanoTime() - periodStart;
+				if (lag > MAX_LAG_PERIODS * tickNanos) {
+					stats.skippedPeriods.addAndGet(lag / tickNanos);
+					periodStart += lag / tickNanos * tickNanos;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Place the newly added matches into the slots with the fewest matches.
+	 */
+	private void assignIncoming() {
+		Match match;
+		while ((match = incoming.poll()) != null) {
+			List<Match> emptiest = slots.get(0);
+			for (List<Match> candidate : slots) {
+				if (candidate.size() < emptiest.size()) {
+					emptiest = candidate;
+				}
+			}
+			emptiest.add(match);
+		}
+	}
+
+	/**
+	 * Step all the matches of a slot and remove the finished ones.
+	 * @param matches The matches of the slot.
+	 * @param deadline The scheduled time of the slot.
+	 */
+	private void tickSlot(List<Match> matches, long deadline) {
+		for (int i = 0; i < matches.size(); i++) {
+			Match match = matches.get(i);
+			long lateness = System.nanoTime() - deadline;
+			stats.lateness.record(lateness);
+			if (lateness > tickNanos) {
+				stats.deadlineMisses.increment();
+			}
+
+			int events = match.engine.step(nextDirection(match, match.left), nextDirection(match, match.right));
+			match.tick++;
+			stats.ticks.increment();
+			boolean over = (events & EVENT_MATCH_OVER) != 0;
+			if (over || match.tick % stateInterval == 0) {
+				sendState(match, match.left, over);
+				sendState(match, match.right, over);
+			}
+			if (over) {
+				// swap the last match into the place of the finished one.
+				matches.set(i, matches.get(matches.size() - 1));
+				matches.remove(matches.size() - 1);
+				i--;
+				load.decrementAndGet();
+				stats.activeMatches.decrementAndGet();
+				stats.finishedMatches.incrementAndGet();
+				match.over = true;
+				finished.add(match);
+			}
+		}
+	}
+
+	private static double nextDirection(Match match, Player player) {
+		return player.isBot() ? player.controller.nextDirection(match.engine) : InputLog.decode(player.input);
+	}
+
+	private void sendState(Match match, Player player, boolean over) {
+		if (player.isBot()) {
+			return;
+		}
+		CourtEngine engine = match.engine;
+		PongContext ctx = engine.getContext();
+		sendBuffer.clear();
+		sendBuffer.put(ServerProtocol.STATE);
+		sendBuffer.putInt(player.id);
+		sendBuffer.putInt(match.tick);
+		sendBuffer.putFloat((float) engine.getBallX());
+		sendBuffer.putFloat((float) engine.getBallY());
+		sendBuffer.putFloat((float) engine.getLeftPaddleY());
+		sendBuffer.putFloat((float) engine.getRightPaddleY());
+		sendBuffer.put((byte) ctx.getPlayer1Score());
+		sendBuffer.put((byte) ctx.getPlayer2Score());
+		sendBuffer.put(over ? ServerProtocol.FLAG_MATCH_OVER : 0);
+		sendBuffer.flip();
+		send(player.address);
+	}
+
+	private void send(SocketAddress address) {
+		try {
+			if (channel.send(sendBuffer, address) > 0) {
+				stats.packetsSent.increment();
+			} else {
+				stats.packetsDropped.increment();
+			}
+		} catch (IOException e) {
+			stats.packetsDropped.increment();
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package net.toiviainen.pong.sim;
+
+import static net.toiviainen.pong.engine.CourtEngine.BOX_WIDTH;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_DOWN;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_NONE;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_UP;
+
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.engine.PaddleController;
+
+/**
+ * <p>
+ * A scripted paddle controller which follows the ball.
+ * </p>
+ * <p>
+ * This controller simply moves the paddle towards the current y-coordinate of
+ * the ball. It has no knowledge about where the ball is going to be, so it is
+ * easily beaten by fast balls that bounce off the walls.
+ * </p>
+ */
+public class BallFollower implements PaddleController {
+
+	private final boolean left;
+
+	public BallFollower(boolean left) {
+		this.left = left;
+	}
+
+	@Override
+	public double nextDirection(CourtEngine engine) {
+		double paddleY = left ? engine.getLeftPaddleY() : engine.getRightPaddleY();
+		double paddleHeight = engine.getRules().getPaddleHeight();
+		double delta = (engine.getBallY() + BOX_WIDTH / 2) - (paddleY + paddleHeight / 2);
+		// the paddle stays still near its center, i.e. within its middle half.
+		double deadZone = paddleHeight / 4;
+		if (delta < -deadZone) {
+			return DIRECTION_UP;
+		} else if (delta > deadZone) {
+			return DIRECTION_DOWN;
+		}
+		return DIRECTION_NONE;
+	}
+
+}
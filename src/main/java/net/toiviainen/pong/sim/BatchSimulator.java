@@ -0,0 +1,229 @@
+package net.toiviainen.pong.sim;
+
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_MATCH_OVER;
+import static net.toiviainen.pong.engine.CourtEngine.WINNING_SCORE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.engine.PaddleController;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A command-line entry point for simulating complete matches in a batch.
+ * </p>
+ * <p>
+ * This simulator plays the requested amount of matches between two paddle
+ * controllers with the headless {@link CourtEngine}. The matches are split
+ * evenly between worker threads, where each worker owns its own engine state
+ * and collects its own statistics, so the workers never share anything until
+ * the results are being merged at the end of the run.
+ * </p>
+ * <p>
+ * A match which hasn't ended within the maximum amount of ticks is abandoned
+ * and counted as unfinished, so a pair of paddles which never miss cannot
+ * hang a worker and the whole batch with it.
+ * </p>
+ * <p>
+ * Supported arguments: {@code --matches=N}, {@code --threads=N},
+ * {@code --seed=N}, {@code --left=C}, {@code --right=C} and
+ * {@code --max-ticks=N}, where the controller {@code C} is either
+ * {@code follower} (the default) or the name of a {@link Difficulty} for the
+ * {@link InterceptController}.
+ * </p>
+ */
+public final class BatchSimulator {
+
+	/** The amount of matches simulated by default. */
+	private static final long DEFAULT_MATCHES = 1000000;
+
+	/** The maximum amount of ticks in a match by default, i.e. 30 minutes. */
+	private static final int DEFAULT_MAX_TICKS = 30 * 60 * 60;
+
+	private BatchSimulator() {
+		throw new AssertionError("No net.toiviainen.pong.sim.BatchSimulator instances for you!");
+	}
+
+	/**
+	 * <p>
+	 * The statistics collected by a single worker.
+	 * </p>
+	 * <p>
+	 * The loser scores are counted separately for both players, so the index
+	 * {@code [1][3]} contains the amount of 10-3 wins for the first player.
+	 * </p>
+	 */
+	static final class Result {
+		long matches;
+		long unfinished;
+		long ticks;
+		final long[][] loserScores = new long[3][WINNING_SCORE];
+
+		void merge(Result other) {
+			matches += other.matches;
+			unfinished += other.unfinished;
+			ticks += other.ticks;
+			for (int player = 1; player <= 2; player++) {
+				for (int score = 0; score < WINNING_SCORE; score++) {
+					loserScores[player][score] += other.loserScores[player][score];
+				}
+			}
+		}
+
+		long wins(int player) {
+			long wins = 0;
+			for (long count : loserScores[player]) {
+				wins += count;
+			}
+			return wins;
+		}
+	}
+
+	/**
+	 * Create a paddle controller from its command-line name.
+	 * @param name The controller name: {@code follower} or a difficulty name.
+	 * @param left Whether the controller moves the left paddle.
+	 * @param seed The seed for the random errors of the controller.
+	 * @return The new paddle controller.
+	 * @throws IllegalArgumentException If the name is not known.
+	 */
+	static PaddleController createController(String name, boolean left, long seed) throws IllegalArgumentException {
+		if ("follower".equals(name)) {
+			return new BallFollower(left);
+		}
+		return new InterceptController(left, Difficulty.valueOf(name.toUpperCase(Locale.ROOT)), seed);
+	}
+
+	/**
+	 * Simulate a range of matches with the scripted paddle controllers.
+	 * @param firstMatch The index of the first match to simulate.
+	 * @param matches The amount of matches to simulate.
+	 * @param seed The base seed of the simulation.
+	 * @param leftName The name of the left paddle controller.
+	 * @param rightName The name of the right paddle controller.
+	 * @param maxTicks The maximum amount of ticks in a match.
+	 * @return The statistics of the simulated matches.
+	 */
+	static Result simulate(long firstMatch, long matches, long seed, String leftName, String rightName,
+			int maxTicks) {
+		Result result = new Result();
+		PongContext ctx = new PongContext();
+		PaddleController left = createController(leftName, true, seed + firstMatch);
+		PaddleController right = createController(rightName, false, ~(seed + firstMatch));
+		for (long match = firstMatch; match < firstMatch + matches; match++) {
+			ctx.reset();
+			CourtEngine engine = new CourtEngine(ctx, seed + match);
+			int ticks = 0;
+			int events;
+			do {
+				events = engine.step(left.nextDirection(engine), right.nextDirection(engine));
+				ticks++;
+			} while ((events & EVENT_MATCH_OVER) == 0 && ticks < maxTicks);
+			result.ticks += ticks;
+
+			if ((events & EVENT_MATCH_OVER) == 0) {
+				result.unfinished++;
+				continue;
+			}
+			int p1Score = ctx.getPlayer1Score();
+			int p2Score = ctx.getPlayer2Score();
+			if (p1Score > p2Score) {
+				result.loserScores[1][p2Score]++;
+			} else {
+				result.loserScores[2][p1Score]++;
+			}
+			result.matches++;
+		}
+		return result;
+	}
+
+	public static void main(String args[]) throws Exception {
+		long matches = DEFAULT_MATCHES;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = System.nanoTime();
+		String leftName = "follower";
+		String rightName = "follower";
+		int maxTicks = DEFAULT_MAX_TICKS;
+		for (String arg : args) {
+			if (arg.startsWith("--matches=")) {
+				matches = Long.parseLong(arg.substring("--matches=".length()));
+			} else if (arg.startsWith("--threads=")) {
+				threads = Integer.parseInt(arg.substring("--threads=".length()));
+			} else if (arg.startsWith("--seed=")) {
+				seed = Long.parseLong(arg.substring("--seed=".length()));
+			} else if (arg.startsWith("--left=")) {
+				leftName = arg.substring("--left=".length());
+			} else if (arg.startsWith("--right=")) {
+				rightName = arg.substring("--right=".length());
+			} else if (arg.startsWith("--max-ticks=")) {
+				maxTicks = Integer.parseInt(arg.substring("--max-ticks=".length()));
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + arg);
+			}
+		}
+		Args.isGte(matches, 1, "The amount of matches must be at least one!");
+		Args.isGte(threads, 1, "The amount of threads must be at least one!");
+		Args.isGte(maxTicks, 1, "The maximum amount of ticks must be at least one!");
+		createController(leftName, true, seed);
+		createController(rightName, false, seed);
+		if ("perfect".equalsIgnoreCase(leftName) && "perfect".equalsIgnoreCase(rightName)) {
+			throw new IllegalArgumentException("Two perfect paddles would never finish a match!");
+		}
+
+		// split the matches evenly between the workers.
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Result>> futures = new ArrayList<>(threads);
+		long start = System.nanoTime();
+		long first = 0;
+		for (int i = 0; i < threads; i++) {
+			long count = matches / threads + (i < matches % threads ? 1 : 0);
+			long workerFirst = first;
+			long workerSeed = seed;
+			String workerLeft = leftName;
+			String workerRight = rightName;
+			int workerMaxTicks = maxTicks;
+			futures.add(executor.submit((Callable<Result>) () -> simulate(workerFirst, count, workerSeed, workerLeft,
+					workerRight, workerMaxTicks)));
+			first += count;
+		}
+
+		// merge the results only after all workers have finished.
+		Result total = new Result();
+		for (Future<Result> future : futures) {
+			total.merge(future.get());
+		}
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+
+		double seconds = elapsed / 1e9;
+		System.out.printf("seed:        %d%n", seed);
+		System.out.printf("threads:     %d%n", threads);
+		System.out.printf("paddles:     left %s, right %s%n", leftName, rightName);
+		// the unfinished matches are simulated too, so they count in the throughput.
+		long played = total.matches + total.unfinished;
+		long finished = Math.max(1, total.matches);
+		System.out.printf("matches:     %d%n", total.matches);
+		System.out.printf("unfinished:  %d (over %d ticks)%n", total.unfinished, maxTicks);
+		System.out.printf("ticks:       %d%n", total.ticks);
+		System.out.printf("elapsed:     %.3f s%n", seconds);
+		System.out.printf("matches/sec: %.1f%n", played / seconds);
+		System.out.printf("ticks/sec:   %.1f%n", total.ticks / seconds);
+		System.out.printf("ticks/match: %.1f%n", (double) total.ticks / played);
+		System.out.printf("wins:        right %d (%.2f%%), left %d (%.2f%%)%n", total.wins(1),
+				100.0 * total.wins(1) / finished, total.wins(2), 100.0 * total.wins(2) / finished);
+		System.out.println("final scores (right - left):");
+		for (int score = 0; score < WINNING_SCORE; score++) {
+			System.out.printf("  %2d - %-2d %10d   %2d - %-2d %10d%n", WINNING_SCORE, score, total.loserScores[1][score],
+					score, WINNING_SCORE, total.loserScores[2][score]);
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package net.toiviainen.pong.sim;
+
+/**
+ * <p>
+ * The difficulty levels of the {@link InterceptController}.
+ * </p>
+ * <p>
+ * The controller always knows exactly where the ball is going, so the levels
+ * differ only by how long it takes to react to a new ball direction and by
+ * how far from the predicted point it aims at.
+ * </p>
+ */
+public enum Difficulty {
+
+	/*
+	 * The errors of the imperfect levels may exceed the reach of the paddle
+	 * (half of the paddle and half of the ball), so they occasionally miss.
+	 */
+
+	EASY(30, 90.0),
+	NORMAL(18, 75.0),
+	HARD(8, 66.0),
+	/** Never misses, so two perfect paddles would never finish a match. */
+	PERFECT(0, 0.0);
+
+	private final int reactionTicks;
+	private final double maxError;
+
+	private Difficulty(int reactionTicks, double maxError) {
+		this.reactionTicks = reactionTicks;
+		this.maxError = maxError;
+	}
+
+	/**
+	 * Get the amount of ticks it takes to react to a new ball direction.
+	 * @return The reaction delay in ticks.
+	 */
+	public int getReactionTicks() {
+		return reactionTicks;
+	}
+
+	/**
+	 * Get the maximum distance between the predicted point and the aimed point.
+	 * @return The maximum error in pixels.
+	 */
+	public double getMaxError() {
+		return maxError;
+	}
+
+}
@@ -0,0 +1,121 @@
+package net.toiviainen.pong.sim;
+
+import static java.util.Objects.requireNonNull;
+import static net.toiviainen.pong.engine.CourtEngine.BOX_WIDTH;
+import static net.toiviainen.pong.engine.CourtEngine.COURT_HEIGHT;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_DOWN;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_NONE;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_UP;
+import static net.toiviainen.pong.engine.CourtEngine.LEFT_PADDLE_X;
+import static net.toiviainen.pong.engine.CourtEngine.RIGHT_PADDLE_X;
+
+import java.util.Random;
+
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.engine.PaddleController;
+
+/**
+ * <p>
+ * A computer controlled paddle which predicts where the ball arrives.
+ * </p>
+ * <p>
+ * Whenever the ball changes its direction or speed, this controller solves
+ * the point where the ball reaches the face of its paddle. Instead of stepping
+ * the simulation forward, the straight flight of the ball is projected past
+ * the walls and then folded back into the court, since each wall bounce just
+ * mirrors the flight. The prediction is therefore a constant time operation
+ * and it's computed only a few times per rally, so each tick only costs a
+ * comparison between the paddle and the aimed point. While the ball moves
+ * away, the paddle returns towards the middle of the court.
+ * </p>
+ * <p>
+ * The {@link Difficulty} delays the reaction to a new direction and adds a
+ * random error into the aimed point. The errors are drawn from a seeded
+ * generator, so the batch simulations stay reproducible.
+ * </p>
+ */
+public class InterceptController implements PaddleController {
+
+	/** The distance from the aimed point where the paddle stays still. */
+	private static final double DEAD_ZONE = 4.0;
+
+	private final boolean left;
+	private final Difficulty difficulty;
+	private final Random random;
+
+	private double previousXDirection;
+	private double previousYDirection;
+	private double previousSpeed;
+
+	private double target = COURT_HEIGHT / 2;
+	private double pendingTarget = COURT_HEIGHT / 2;
+	private int reactionCountDown;
+
+	public InterceptController(boolean left, Difficulty difficulty, long seed) throws NullPointerException {
+		this.left = left;
+		this.difficulty = requireNonNull(difficulty, "The difficulty cannot be null!");
+		this.random = new Random(seed);
+	}
+
+	@Override
+	public double nextDirection(CourtEngine engine) {
+		// predict again only when the flight of the ball has changed.
+		double xDirection = engine.getBallXDirection();
+		double yDirection = engine.getBallYDirection();
+		double speed = engine.getBallMovementSpeed();
+		if (xDirection != previousXDirection || yDirection != previousYDirection || speed != previousSpeed) {
+			previousXDirection = xDirection;
+			previousYDirection = yDirection;
+			previousSpeed = speed;
+			pendingTarget = predict(engine) + (random.nextDouble() * 2 - 1) * difficulty.getMaxError();
+			reactionCountDown = difficulty.getReactionTicks();
+		}
+		if (reactionCountDown > 0) {
+			reactionCountDown--;
+		} else {
+			target = pendingTarget;
+		}
+
+		double paddleY = left ? engine.getLeftPaddleY() : engine.getRightPaddleY();
+		double delta = target - (paddleY + engine.getRules().getPaddleHeight() / 2);
+		if (delta < -DEAD_ZONE) {
+			return DIRECTION_UP;
+		} else if (delta > DEAD_ZONE) {
+			return DIRECTION_DOWN;
+		}
+		return DIRECTION_NONE;
+	}
+
+	/**
+	 * Predict the center of the ball when it reaches the face of the paddle.
+	 * @param engine The engine with the current ball state.
+	 * @return The y-coordinate to aim at, or the middle of the court when the
+	 *         ball is moving away from the paddle.
+	 */
+	private double predict(CourtEngine engine) {
+		double vx = engine.getBallMovementSpeed() * engine.getBallXDirection();
+		double vy = engine.getBallMovementSpeed() * engine.getBallYDirection();
+		if (left ? vx >= 0 : vx <= 0) {
+			return COURT_HEIGHT / 2;
+		}
+
+		// the time until the ball touches the face of the paddle.
+		double faceX = left ? LEFT_PADDLE_X + BOX_WIDTH : RIGHT_PADDLE_X - BOX_WIDTH;
+		double time = (faceX - engine.getBallX()) / vx;
+		double y = engine.getBallY() + vy * Math.max(time, 0);
+
+		// fold the straight flight back between the walls.
+		double minY = engine.getTopWall().getMaxY();
+		double maxY = engine.getBottomWall().getY() - BOX_WIDTH;
+		double range = maxY - minY;
+		double folded = (y - minY) % (2 * range);
+		if (folded < 0) {
+			folded += 2 * range;
+		}
+		if (folded > range) {
+			folded = 2 * range - folded;
+		}
+		return minY + folded + BOX_WIDTH / 2;
+	}
+
+}
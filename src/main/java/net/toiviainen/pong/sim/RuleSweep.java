@@ -0,0 +1,377 @@
+package net.toiviainen.pong.sim;
+
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_MATCH_OVER;
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_PADDLE_HIT;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.engine.CourtRules;
+import net.toiviainen.pong.engine.PaddleController;
+import net.toiviainen.pong.metrics.Histogram;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A command-line entry point for sweeping a grid of {@link CourtRules}.
+ * </p>
+ * <p>
+ * Each point of the grid is a combination of the given parameter values, and
+ * the simulator plays the requested amount of matches between two paddle
+ * controllers with the rules of each point. The matches of a point are split
+ * into chunks, which are run by worker threads on all cores, so even a single
+ * point keeps every core busy. A row of aggregated results is written into the
+ * CSV output as soon as the last chunk of its point completes, so the results
+ * of a long sweep can be followed while it runs and nothing but the unfinished
+ * points is kept in memory. The rows are therefore written in the order of
+ * completion, which is why each row begins with the index of its point.
+ * </p>
+ * <p>
+ * Every point plays the matches with the same seeds, so the differences
+ * between the points come from the rules rather than from the random starts.
+ * A match which hasn't ended within the maximum amount of ticks is abandoned
+ * and counted as unfinished instead of being included in the other results.
+ * </p>
+ * <p>
+ * Supported arguments: {@code --matches=N} (per point), {@code --threads=N},
+ * {@code --seed=N}, {@code --left=C}, {@code --right=C},
+ * {@code --max-ticks=N}, {@code --output=path} (the standard output by
+ * default) and a value list for any of the parameters
+ * {@code --ball-initial-speed}, {@code --ball-speed-increase},
+ * {@code --ball-max-speed}, {@code --paddle-movement-speed},
+ * {@code --paddle-height} and {@code --countdown-ticks}. A value list contains
+ * comma separated values (e.g. {@code 3,4,5}) or ranges with a step (e.g.
+ * {@code 3:6:0.5}), and the parameters without a list keep their defaults.
+ * The controllers are named like in the {@link BatchSimulator}.
+ * </p>
+ */
+public final class RuleSweep {
+
+	/** The amount of matches simulated for each point by default. */
+	private static final int DEFAULT_MATCHES = 1000;
+
+	/** The amount of matches simulated by a single task. */
+	private static final int CHUNK_MATCHES = 100;
+
+	/** The maximum length of a match by default (30 minutes at 60 ticks/s). */
+	private static final int DEFAULT_MAX_TICKS = 30 * 60 * 60;
+
+	/** The names of the swept parameters in the order of the CSV columns. */
+	private static final String[] PARAMETERS = { "ball-initial-speed", "ball-speed-increase", "ball-max-speed",
+			"paddle-movement-speed", "paddle-height", "countdown-ticks" };
+
+	private static final String CSV_HEADER = "point,ball_initial_speed,ball_speed_increase,ball_max_speed,"
+			+ "paddle_movement_speed,paddle_height,countdown_ticks,matches,unfinished,mean_ticks,p50_ticks,"
+			+ "p95_ticks,mean_rally_hits,right_win_share,mean_loser_score";
+
+	private RuleSweep() {
+		throw new AssertionError("No net.toiviainen.pong.sim.RuleSweep instances for you!");
+	}
+
+	/**
+	 * <p>
+	 * The results of a single point of the grid.
+	 * </p>
+	 * <p>
+	 * The chunks of the point merge their results into this instance, and the
+	 * chunk which merges the last results also writes the row of the point.
+	 * </p>
+	 */
+	static final class Point {
+		final int index;
+		final CourtRules rules;
+		final Histogram matchTicks = new Histogram();
+
+		int pendingChunks;
+		long matches;
+		long unfinished;
+		long ticks;
+		long goals;
+		long paddleHits;
+		long rightWins;
+		long loserScores;
+
+		Point(int index, CourtRules rules, int chunks) {
+			this.index = index;
+			this.rules = rules;
+			this.pendingChunks = chunks;
+		}
+
+		/**
+		 * Merge the results of a chunk into the point.
+		 * @param chunk The results of the chunk.
+		 * @return Whether this was the last chunk of the point.
+		 */
+		synchronized boolean merge(Point chunk) {
+			matches += chunk.matches;
+			unfinished += chunk.unfinished;
+			ticks += chunk.ticks;
+			goals += chunk.goals;
+			paddleHits += chunk.paddleHits;
+			rightWins += chunk.rightWins;
+			loserScores += chunk.loserScores;
+			return --pendingChunks == 0;
+		}
+
+		synchronized String toCsv() {
+			return String.format(Locale.ROOT, "%d,%s,%s,%s,%s,%s,%d,%d,%d,%.1f,%d,%d,%.3f,%.4f,%.3f", index,
+					rules.getBallInitialSpeed(), rules.getBallSpeedIncrease(), rules.getBallMaxSpeed(),
+					rules.getPaddleMovementSpeed(), rules.getPaddleHeight(), rules.getCountdownTicks(), matches,
+					unfinished, ratio(ticks, matches), matchTicks.getValueAtPercentile(50),
+					matchTicks.getValueAtPercentile(95), ratio(paddleHits, goals), ratio(rightWins, matches),
+					ratio(loserScores, matches));
+		}
+
+		private static double ratio(long value, long total) {
+			return total > 0 ? (double) value / total : Double.NaN;
+		}
+	}
+
+	/**
+	 * Simulate a chunk of matches with the rules of the given point.
+	 * @param point The point with the rules to simulate.
+	 * @param firstMatch The index of the first match to simulate.
+	 * @param matches The amount of matches to simulate.
+	 * @param seed The base seed of the simulation.
+	 * @param leftName The name of the left paddle controller.
+	 * @param rightName The name of the right paddle controller.
+	 * @param maxTicks The maximum amount of ticks in a match.
+	 * @return The results of the chunk.
+	 */
+	static Point simulate(Point point, long firstMatch, int matches, long seed, String leftName, String rightName,
+			int maxTicks) {
+		Point result = new Point(point.index, point.rules, 1);
+		PongContext ctx = new PongContext();
+		PaddleController left = BatchSimulator.createController(leftName, true, seed + firstMatch);
+		PaddleController right = BatchSimulator.createController(rightName, false, ~(seed + firstMatch));
+		for (long match = firstMatch; match < firstMatch + matches; match++) {
+			ctx.reset();
+			CourtEngine engine = new CourtEngine(ctx, seed + match, point.rules);
+			long paddleHits = 0;
+			int ticks = 0;
+			int events;
+			do {
+				events = engine.step(left.nextDirection(engine), right.nextDirection(engine));
+				if ((events & EVENT_PADDLE_HIT) != 0) {
+					paddleHits++;
+				}
+				ticks++;
+			} while ((events & EVENT_MATCH_OVER) == 0 && ticks < maxTicks);
+
+			if ((events & EVENT_MATCH_OVER) == 0) {
+				result.unfinished++;
+				continue;
+			}
+			int p1Score = ctx.getPlayer1Score();
+			int p2Score = ctx.getPlayer2Score();
+			result.matches++;
+			result.ticks += ticks;
+			result.goals += p1Score + p2Score;
+			result.paddleHits += paddleHits;
+			result.rightWins += p1Score > p2Score ? 1 : 0;
+			result.loserScores += Math.min(p1Score, p2Score);
+			point.matchTicks.record(ticks);
+		}
+		return result;
+	}
+
+	/**
+	 * Parse a list of parameter values.
+	 * @param list The comma separated values or {@code start:end:step} ranges.
+	 * @return The parsed values.
+	 * @throws IllegalArgumentException If the list is not valid.
+	 */
+	static List<Double> parseValues(String list) throws IllegalArgumentException {
+		List<Double> values = new ArrayList<>();
+		for (String item : list.split(",")) {
+			String[] range = item.split(":");
+			if (range.length == 1) {
+				values.add(Double.parseDouble(range[0]));
+			} else if (range.length == 3) {
+				double start = Double.parseDouble(range[0]);
+				double end = Double.parseDouble(range[1]);
+				double step = Args.isGte(Double.parseDouble(range[2]), Double.MIN_VALUE, "The step must be positive!");
+				// count the steps instead of adding them up to avoid drifting.
+				long steps = (long) Math.floor((end - start) / step + 1e-9);
+				for (long i = 0; i <= steps; i++) {
+					values.add(start + i * step);
+				}
+			} else {
+				throw new IllegalArgumentException("Invalid parameter values: " + item);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Create the rules from the values of the swept parameters.
+	 * @param values The values in the order of {@link #PARAMETERS}.
+	 * @return The rules with the given values.
+	 * @throws IllegalArgumentException If the values are not valid rules.
+	 */
+	static CourtRules createRules(double[] values) throws IllegalArgumentException {
+		return new CourtRules(values[0], values[1], values[2], values[3], values[4], (int) Math.round(values[5]));
+	}
+
+	/**
+	 * Build the rules of every point of the grid.
+	 * @param grid The values of each swept parameter.
+	 * @return The rules of each valid point. The combinations which are not
+	 *         valid rules (e.g. the maximum speed below the initial speed) are
+	 *         left out.
+	 */
+	static List<CourtRules> buildGrid(Map<String, List<Double>> grid) {
+		CourtRules defaults = CourtRules.DEFAULT;
+		List<double[]> combinations = new ArrayList<>();
+		combinations.add(new double[] { defaults.getBallInitialSpeed(), defaults.getBallSpeedIncrease(),
+				defaults.getBallMaxSpeed(), defaults.getPaddleMovementSpeed(), defaults.getPaddleHeight(),
+				defaults.getCountdownTicks() });
+		for (int parameter = 0; parameter < PARAMETERS.length; parameter++) {
+			List<Double> values = grid.get(PARAMETERS[parameter]);
+			if (values == null) {
+				continue;
+			}
+			List<double[]> expanded = new ArrayList<>(combinations.size() * values.size());
+			for (double[] combination : combinations) {
+				for (double value : values) {
+					double[] copy = combination.clone();
+					copy[parameter] = value;
+					expanded.add(copy);
+				}
+			}
+			combinations = expanded;
+		}
+
+		List<CourtRules> points = new ArrayList<>(combinations.size());
+		for (double[] combination : combinations) {
+			try {
+				points.add(createRules(combination));
+			} catch (IllegalArgumentException e) {
+				System.err.printf("skipping invalid rules %s: %s%n", Arrays.toString(combination), e.getMessage());
+			}
+		}
+		return points;
+	}
+
+	public static void main(String args[]) throws Exception {
+		int matches = DEFAULT_MATCHES;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = System.nanoTime();
+		String leftName = "follower";
+		String rightName = "follower";
+		int maxTicks = DEFAULT_MAX_TICKS;
+		String output = null;
+		Map<String, List<Double>> grid = new HashMap<>();
+		for (String arg : args) {
+			if (arg.startsWith("--matches=")) {
+				matches = Integer.parseInt(arg.substring("--matches=".length()));
+			} else if (arg.startsWith("--threads=")) {
+				threads = Integer.parseInt(arg.substring("--threads=".length()));
+			} else if (arg.startsWith("--seed=")) {
+				seed = Long.parseLong(arg.substring("--seed=".length()));
+			} else if (arg.startsWith("--left=")) {
+				leftName = arg.substring("--left=".length());
+			} else if (arg.startsWith("--right=")) {
+				rightName = arg.substring("--right=".length());
+			} else if (arg.startsWith("--max-ticks=")) {
+				maxTicks = Integer.parseInt(arg.substring("--max-ticks=".length()));
+			} else if (arg.startsWith("--output=")) {
+				output = arg.substring("--output=".length());
+			} else {
+				int separator = arg.indexOf('=');
+				String name = separator > 2 && arg.startsWith("--") ? arg.substring(2, separator) : "";
+				if (!List.of(PARAMETERS).contains(name)) {
+					throw new IllegalArgumentException("Unknown argument: " + arg);
+				}
+				grid.put(name, parseValues(arg.substring(separator + 1)));
+			}
+		}
+		Args.isGte(matches, 1, "The amount of matches must be at least one!");
+		Args.isGte(threads, 1, "The amount of threads must be at least one!");
+		Args.isGte(maxTicks, 1, "The maximum amount of ticks must be at least one!");
+		BatchSimulator.createController(leftName, true, seed);
+		BatchSimulator.createController(rightName, false, seed);
+
+		List<CourtRules> rules = buildGrid(grid);
+		System.err.printf("sweeping %d points with %d matches each (seed %d)%n", rules.size(), matches, seed);
+
+		Writer writer = output != null ? Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)
+				: new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		writer.write(CSV_HEADER);
+		writer.write('\n');
+		writer.flush();
+
+		// queue the chunks point by point, so the points complete in order.
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<>();
+		long start = System.nanoTime();
+		int chunks = (matches + CHUNK_MATCHES - 1) / CHUNK_MATCHES;
+		for (int index = 0; index < rules.size(); index++) {
+			Point point = new Point(index, rules.get(index), chunks);
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				long first = (long) chunk * CHUNK_MATCHES;
+				int count = (int) Math.min(CHUNK_MATCHES, matches - first);
+				long chunkSeed = seed;
+				String chunkLeft = leftName;
+				String chunkRight = rightName;
+				int chunkMaxTicks = maxTicks;
+				futures.add(executor.submit(() -> {
+					Point result = simulate(point, first, count, chunkSeed, chunkLeft, chunkRight, chunkMaxTicks);
+					if (point.merge(result)) {
+						writeRow(writer, point.toCsv());
+					}
+				}));
+			}
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		if (output != null) {
+			writer.close();
+		} else {
+			writer.flush();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("swept %d points in %.3f s (%.1f matches/sec)%n", rules.size(), seconds,
+				(double) rules.size() * matches / seconds);
+	}
+
+	/**
+	 * Write a single row into the output and flush it right away.
+	 * @param writer The output writer.
+	 * @param row The row to write.
+	 */
+	private static void writeRow(Writer writer, String row) {
+		synchronized (writer) {
+			try {
+				writer.write(row);
+				writer.write('\n');
+				writer.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to write the sweep results!", e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,314 @@
+package net.toiviainen.pong.sim;
+
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_MATCH_OVER;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A vectorized environment which steps a batch of independent matches.
+ * </p>
+ * <p>
+ * Each call of {@link #step()} reads the actions of both paddles of every
+ * environment from the action buffer, advances every match by a single tick
+ * and writes the observations, the rewards and the done flags into their
+ * buffers. All the buffers are direct and in the native byte order, so a
+ * native or a Python consumer can map them without copying (e.g. with
+ * {@code GetDirectBufferAddress} or a memory view). The buffers are allocated
+ * once, so stepping doesn't allocate anything.
+ * </p>
+ * <p>
+ * The buffer layouts, where {@code i} is the index of the environment:
+ * </p>
+ * <ul>
+ * <li>actions: {@code [i * 2]} left and {@code [i * 2 + 1]} right paddle
+ * direction, clamped into [-1..1] where -1 is up and NaN is still.</li>
+ * <li>observations: {@code [i * OBSERVATION_SIZE + OBS_*]} in pixels and
+ * pixels per tick. The ball velocity is zero during the count down.</li>
+ * <li>rewards: {@code [i * 2]} left and {@code [i * 2 + 1]} right player, +1
+ * for a goal of the player and -1 for a goal of the opponent.</li>
+ * <li>dones: {@code [i]} is 1 when the match ended on the latest step.</li>
+ * </ul>
+ * <p>
+ * A finished match is reset automatically with a new seed, so the observation
+ * of a done environment is already the first observation of the next match.
+ * </p>
+ * <p>
+ * The environments are split evenly between the calling thread and the worker
+ * threads. The workers are parked between the steps and they are woken up
+ * directly instead of going through an executor, which would allocate a task
+ * for each step. An exception thrown while stepping a range, on any thread,
+ * fails the step only after all the ranges have been stepped, and it fails
+ * every later step too, as the matches are no longer in a consistent state.
+ * </p>
+ */
+public class VecEnv implements Closeable {
+
+	public static final int OBS_BALL_X = 0;
+	public static final int OBS_BALL_Y = 1;
+	public static final int OBS_BALL_VX = 2;
+	public static final int OBS_BALL_VY = 3;
+	public static final int OBS_LEFT_PADDLE_Y = 4;
+	public static final int OBS_LEFT_PADDLE_VY = 5;
+	public static final int OBS_RIGHT_PADDLE_Y = 6;
+	public static final int OBS_RIGHT_PADDLE_VY = 7;
+
+	/** The amount of floats in the observation of a single environment. */
+	public static final int OBSERVATION_SIZE = 8;
+
+	/** The amount of floats in the action and reward of a single environment. */
+	public static final int PLAYERS = 2;
+
+	private final int envCount;
+	private final long seed;
+	private final PongContext[] contexts;
+	private final CourtEngine[] engines;
+	private final long[] matches;
+	private final double[] previousLeftY;
+	private final double[] previousRightY;
+
+	private final FloatBuffer actions;
+	private final FloatBuffer observations;
+	private final FloatBuffer rewards;
+	private final ByteBuffer dones;
+
+	private final Thread[] workers;
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile int generation;
+	private volatile boolean closed;
+	private volatile Thread caller;
+	private volatile Throwable failure;
+
+	public VecEnv(int envCount, int threads, long seed) throws IllegalArgumentException {
+		Args.isGte(envCount, 1, "The amount of environments must be at least one!");
+		Args.isGte(threads, 1, "The amount of threads must be at least one!");
+		this.envCount = envCount;
+		this.seed = seed;
+
+		contexts = new PongContext[envCount];
+		engines = new CourtEngine[envCount];
+		matches = new long[envCount];
+		previousLeftY = new double[envCount];
+		previousRightY = new double[envCount];
+		actions = allocate(envCount * PLAYERS).asFloatBuffer();
+		observations = allocate(envCount * OBSERVATION_SIZE).asFloatBuffer();
+		rewards = allocate(envCount * PLAYERS).asFloatBuffer();
+		dones = ByteBuffer.allocateDirect(envCount);
+		for (int i = 0; i < envCount; i++) {
+			contexts[i] = new PongContext();
+			engines[i] = new CourtEngine(contexts[i], matchSeed(i, 0));
+			observe(i);
+		}
+
+		// the calling thread steps the first range itself.
+		int threadCount = Math.min(threads, envCount);
+		workers = new Thread[threadCount - 1];
+		for (int w = 0; w < workers.length; w++) {
+			int from = rangeStart(w + 1, threadCount);
+			int to = rangeStart(w + 2, threadCount);
+			workers[w] = new Thread(() -> work(from, to), "pong-vecenv-" + from);
+			workers[w].setDaemon(true);
+			workers[w].start();
+		}
+	}
+
+	private static ByteBuffer allocate(int floats) {
+		return ByteBuffer.allocateDirect(floats * Float.BYTES).order(ByteOrder.nativeOrder());
+	}
+
+	private int rangeStart(int index, int threadCount) {
+		return (int) ((long) envCount * index / threadCount);
+	}
+
+	private long matchSeed(int env, long match) {
+		return seed + env * 0x9E3779B97F4A7C15L + match;
+	}
+
+	/**
+	 * Restart all the environments into new matches.
+	 */
+	public void reset() {
+		for (int i = 0; i < envCount; i++) {
+			restart(i);
+			dones.put(i, (byte) 0);
+			rewards.put(i * PLAYERS, 0f);
+			rewards.put(i * PLAYERS + 1, 0f);
+		}
+	}
+
+	/**
+	 * Advance all the environments by a single tick with the current actions.
+	 * @throws IllegalStateException If the environment has been closed, or if
+	 *         stepping any of the environments has failed, now or before.
+	 */
+	public void step() throws IllegalStateException {
+		if (closed) {
+			throw new IllegalStateException("The environment has been closed!");
+		}
+		if (failure != null) {
+			throw new IllegalStateException("The environment has failed on an earlier step!", failure);
+		}
+		if (workers.length == 0) {
+			stepSafely(0, envCount);
+		} else {
+			caller = Thread.currentThread();
+			pending.set(workers.length);
+			generation++;
+			for (Thread worker : workers) {
+				LockSupport.unpark(worker);
+			}
+			stepSafely(0, rangeStart(1, workers.length + 1));
+			// the workers must be done with the buffers even when a range failed.
+			while (pending.get() != 0) {
+				LockSupport.park(this);
+			}
+		}
+		Throwable failed = failure;
+		if (failed != null) {
+			throw new IllegalStateException("Unable to step the environment!", failed);
+		}
+	}
+
+	private void work(int from, int to) {
+		int seen = 0;
+		while (true) {
+			while (generation == seen && !closed) {
+				LockSupport.park(this);
+			}
+			if (closed) {
+				return;
+			}
+			seen = generation;
+			try {
+				stepSafely(from, to);
+			} finally {
+				if (pending.decrementAndGet() == 0) {
+					LockSupport.unpark(caller);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Step a range of the environments, storing the failure of the range
+	 * instead of throwing it, so the failed thread still completes the step.
+	 */
+	private void stepSafely(int from, int to) {
+		try {
+			stepRange(from, to);
+		} catch (RuntimeException | Error e) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+	}
+
+	private void stepRange(int from, int to) {
+		for (int i = from; i < to; i++) {
+			CourtEngine engine = engines[i];
+			PongContext ctx = contexts[i];
+			int leftScore = ctx.getPlayer2Score();
+			int rightScore = ctx.getPlayer1Score();
+			previousLeftY[i] = engine.getLeftPaddleY();
+			previousRightY[i] = engine.getRightPaddleY();
+
+			int events = engine.step(clamp(actions.get(i * PLAYERS)), clamp(actions.get(i * PLAYERS + 1)));
+			float reward = (ctx.getPlayer2Score() - leftScore) - (ctx.getPlayer1Score() - rightScore);
+			rewards.put(i * PLAYERS, reward);
+			rewards.put(i * PLAYERS + 1, -reward);
+			if ((events & EVENT_MATCH_OVER) != 0) {
+				matches[i]++;
+				restart(i);
+				dones.put(i, (byte) 1);
+			} else {
+				dones.put(i, (byte) 0);
+				observe(i);
+			}
+		}
+	}
+
+	private static double clamp(float direction) {
+		// a NaN would otherwise poison the paddle position for the whole match.
+		if (Float.isNaN(direction)) {
+			return 0.0;
+		}
+		return Math.max(-1.0, Math.min(1.0, direction));
+	}
+
+	private void restart(int i) {
+		contexts[i].reset();
+		engines[i].restart(matchSeed(i, matches[i]));
+		previousLeftY[i] = engines[i].getLeftPaddleY();
+		previousRightY[i] = engines[i].getRightPaddleY();
+		observe(i);
+	}
+
+	private void observe(int i) {
+		CourtEngine engine = engines[i];
+		boolean moving = engine.getCountDown() <= 0;
+		double speed = moving ? engine.getBallMovementSpeed() : 0.0;
+		int offset = i * OBSERVATION_SIZE;
+		observations.put(offset + OBS_BALL_X, (float) engine.getBallX());
+		observations.put(offset + OBS_BALL_Y, (float) engine.getBallY());
+		observations.put(offset + OBS_BALL_VX, (float) (speed * engine.getBallXDirection()));
+		observations.put(offset + OBS_BALL_VY, (float) (speed * engine.getBallYDirection()));
+		observations.put(offset + OBS_LEFT_PADDLE_Y, (float) engine.getLeftPaddleY());
+		observations.put(offset + OBS_LEFT_PADDLE_VY, (float) (engine.getLeftPaddleY() - previousLeftY[i]));
+		observations.put(offset + OBS_RIGHT_PADDLE_Y, (float) engine.getRightPaddleY());
+		observations.put(offset + OBS_RIGHT_PADDLE_VY, (float) (engine.getRightPaddleY() - previousRightY[i]));
+	}
+
+	/**
+	 * Stop the worker threads. The environment cannot be stepped afterwards.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Thread worker : workers) {
+			LockSupport.unpark(worker);
+		}
+	}
+
+	public int getEnvCount() {
+		return envCount;
+	}
+
+	public int getThreadCount() {
+		return workers.length + 1;
+	}
+
+	public FloatBuffer getActions() {
+		return actions;
+	}
+
+	public FloatBuffer getObservations() {
+		return observations;
+	}
+
+	public FloatBuffer getRewards() {
+		return rewards;
+	}
+
+	public ByteBuffer getDones() {
+		return dones;
+	}
+
+	/**
+	 * Get the amount of finished matches in the given environment.
+	 * @param env The index of the environment.
+	 * @return The amount of matches finished since the construction.
+	 */
+	public long getMatches(int env) {
+		return matches[env];
+	}
+
+}
@@ -0,0 +1,97 @@
+package net.toiviainen.pong.spectate;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A connection which follows the spectator stream of a match.
+ * </p>
+ * <p>
+ * The stream is read and decoded on a dedicated thread, which keeps a copy of
+ * the latest decoded state. The rendering thread may then take a copy of the
+ * latest state at any time with {@link #copyLatest(StateDecoder)}. When the
+ * stream ends or breaks, the latest state stays as it was and the reason is
+ * available from {@link #getFailure()}.
+ * </p>
+ */
+public final class SpectatorConnection implements Closeable {
+
+	private final SocketChannel channel;
+	private final Thread thread;
+	private final StateDecoder decoder = new StateDecoder();
+	private final StateDecoder latest = new StateDecoder();
+
+	private volatile boolean running = true;
+	private volatile Exception failure;
+
+	/**
+	 * Connect into the given spectator hub.
+	 * @param address The address of the hub.
+	 * @throws IOException When the connection fails.
+	 */
+	public SpectatorConnection(InetSocketAddress address) throws IOException {
+		Args.notNull(address, "The address cannot be null!");
+		channel = SocketChannel.open(address);
+		thread = new Thread(this::run, "pong-spectator");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Copy the latest decoded state into the given decoder.
+	 * @param target The decoder to copy into.
+	 */
+	public void copyLatest(StateDecoder target) {
+		synchronized (latest) {
+			target.copyFrom(latest);
+		}
+	}
+
+	/**
+	 * Get the reason why the stream is no longer followed.
+	 * @return The failure of the stream or null while it's followed.
+	 */
+	public Exception getFailure() {
+		return failure;
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		channel.close();
+	}
+
+	private void run() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+		try {
+			while (running && channel.read(buffer) >= 0) {
+				buffer.flip();
+				boolean decoded = false;
+				while (decoder.decode(buffer)) {
+					decoded = true;
+				}
+				buffer.compact();
+				if (decoded) {
+					synchronized (latest) {
+						latest.copyFrom(decoder);
+					}
+				}
+			}
+			if (running) {
+				failure = new EOFException("The broadcast has ended!");
+			}
+		} catch (IOException | RuntimeException e) {
+			if (running) {
+				failure = e;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,331 @@
+package net.toiviainen.pong.spectate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.toiviainen.pong.FixedTimestep;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A fan-out hub which broadcasts the spectator stream of a match.
+ * </p>
+ * <p>
+ * The game thread hands the encoded frames over with {@link #publish(ByteBuffer,
+ * boolean)}, which only copies the frame into a single-producer queue and
+ * never blocks. When the queue is full, the frame is rejected and the caller
+ * should request a keyframe for the next frame. The hub thread moves the
+ * frames from the queue into a shared broadcast log and writes the log to each
+ * spectator with non-blocking TCP sockets, so each spectator only tracks its
+ * own position in the log. A new spectator starts from the latest keyframe.
+ * A spectator which falls so far behind that its position has already been
+ * overwritten is disconnected, since it cannot be resumed in the middle of a
+ * frame. The log holds far more than a minute of the stream, so this only
+ * happens to spectators which have effectively stopped reading.
+ * </p>
+ * <p>
+ * The hub thread sleeps in its selector until a spectator connects, a
+ * spectator with pending data becomes writable or a tick period has passed,
+ * so the published frames are picked up once per tick. The publisher never
+ * wakes the selector up, since that would cost the game thread a system call
+ * and often a context switch on each frame. A failing spectator is just
+ * disconnected, while a failure of the hub itself stops the broadcast and is
+ * reported through {@link #getFailure()}.
+ * </p>
+ */
+public final class SpectatorHub implements Closeable {
+
+	/** The default TCP port for the spectators. */
+	public static final int DEFAULT_PORT = 7879;
+
+	/** The size of the queue between the game and the hub threads. */
+	private static final int QUEUE_SIZE = 1 << 16;
+
+	/** The size of the broadcast log shared by all spectators. */
+	private static final int LOG_SIZE = 1 << 20;
+
+	/** The interval of polling the queue, which is the period of the ticks. */
+	private static final long POLL_MILLIS = Math.max(1, TimeUnit.NANOSECONDS.toMillis(FixedTimestep.DEFAULT_STEP_NANOS));
+
+	/** A spectator and its position in the broadcast log. */
+	private static final class Spectator {
+		final SocketChannel channel;
+		final ByteBuffer view;
+		SelectionKey key;
+		long position = -1;
+		boolean blocked;
+
+		Spectator(SocketChannel channel, byte[] log) {
+			this.channel = channel;
+			this.view = ByteBuffer.wrap(log);
+		}
+	}
+
+	// the single-producer single-consumer queue of length-prefixed frames.
+	private final byte[] queue = new byte[QUEUE_SIZE];
+	private volatile long queueHead;
+	private volatile long queueTail;
+
+	// the broadcast log which is only accessed by the hub thread.
+	private final byte[] log = new byte[LOG_SIZE];
+	private long logEnd;
+	private long latestKeyframe = -1;
+
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final List<Spectator> spectators = new ArrayList<>();
+	private final Thread thread;
+	private volatile boolean running = true;
+	private volatile Exception failure;
+
+	private final AtomicLong framesPublished = new AtomicLong();
+	private final AtomicLong framesRejected = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+	private final AtomicLong spectatorsDropped = new AtomicLong();
+	private volatile int spectatorCount;
+
+	/**
+	 * Create and start a new hub.
+	 * @param port The TCP port to listen at, or zero for any free port.
+	 * @throws IOException When the socket cannot be opened.
+	 */
+	public SpectatorHub(int port) throws IOException {
+		Args.isBetween(port, 0, 65535, "The port must be within [0..65535]!");
+		server = ServerSocketChannel.open();
+		server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		server.bind(new InetSocketAddress(port), 1024);
+		server.configureBlocking(false);
+		selector = Selector.open();
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		thread = new Thread(this::run, "pong-spectators");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * <p>
+	 * Publish a frame of the stream. This function never blocks.
+	 * </p>
+	 * <p>
+	 * This function must always be called from the same thread.
+	 * </p>
+	 * @param frame The buffer containing the frame between its position and limit.
+	 * @param keyframe Whether the frame is a keyframe.
+	 * @return Whether the frame was accepted. A rejected frame breaks the chain of
+	 *         delta frames, so the next frame should be a keyframe.
+	 */
+	public boolean publish(ByteBuffer frame, boolean keyframe) {
+		int length = frame.remaining();
+		long tail = queueTail;
+		if (tail + 2 + length - queueHead > QUEUE_SIZE) {
+			framesRejected.incrementAndGet();
+			return false;
+		}
+		queue[(int) (tail & (QUEUE_SIZE - 1))] = (byte) length;
+		queue[(int) ((tail + 1) & (QUEUE_SIZE - 1))] = (byte) (keyframe ? 1 : 0);
+		for (int i = 0; i < length; i++) {
+			queue[(int) ((tail + 2 + i) & (QUEUE_SIZE - 1))] = frame.get();
+		}
+		queueTail = tail + 2 + length;
+		framesPublished.incrementAndGet();
+		return true;
+	}
+
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	public int getSpectatorCount() {
+		return spectatorCount;
+	}
+
+	public long getFramesPublished() {
+		return framesPublished.get();
+	}
+
+	public long getFramesRejected() {
+		return framesRejected.get();
+	}
+
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	public long getSpectatorsDropped() {
+		return spectatorsDropped.get();
+	}
+
+	/**
+	 * Get the reason why the hub has stopped broadcasting.
+	 * @return The failure of the hub thread or null while it's running.
+	 */
+	public Exception getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Get the CPU time consumed by the hub thread.
+	 * @return The CPU time in nanoseconds or -1 if not supported.
+	 */
+	public long getCpuTime() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		return threads.isThreadCpuTimeSupported() ? threads.getThreadCpuTime(thread.getId()) : -1;
+	}
+
+	@Override
+	public void close() throws IOException {
+		running = false;
+		selector.wakeup();
+		try {
+			thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Spectator spectator : spectators) {
+			spectator.channel.close();
+		}
+		selector.close();
+		server.close();
+	}
+
+	// ============================================================
+	// The hub thread.
+	// ============================================================
+
+	private void run() {
+		try {
+			while (running) {
+				selector.select(POLL_MILLIS);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (key.isValid() && key.isAcceptable()) {
+						accept();
+					}
+				}
+				drainQueue();
+				for (int i = 0; i < spectators.size(); i++) {
+					if (!write(spectators.get(i))) {
+						spectators.set(i, spectators.get(spectators.size() - 1));
+						spectators.remove(spectators.size() - 1);
+						i--;
+					}
+				}
+				spectatorCount = spectators.size();
+			}
+		} catch (IOException | RuntimeException e) {
+			// the game keeps running, only the broadcast stops.
+			if (running) {
+				failure = e;
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			Spectator spectator = new Spectator(channel, log);
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				spectator.key = channel.register(selector, 0);
+			} catch (IOException e) {
+				// only this spectator failed, so keep serving the others.
+				drop(spectator);
+				continue;
+			}
+			spectators.add(spectator);
+		}
+	}
+
+	/**
+	 * Move the published frames from the queue into the broadcast log.
+	 */
+	private void drainQueue() {
+		long head = queueHead;
+		long tail = queueTail;
+		while (head < tail) {
+			int length = queue[(int) (head & (QUEUE_SIZE - 1))] & 0xff;
+			boolean keyframe = queue[(int) ((head + 1) & (QUEUE_SIZE - 1))] != 0;
+			if (keyframe) {
+				latestKeyframe = logEnd;
+			}
+			for (int i = 0; i < length; i++) {
+				log[(int) ((logEnd + i) & (LOG_SIZE - 1))] = queue[(int) ((head + 2 + i) & (QUEUE_SIZE - 1))];
+			}
+			logEnd += length;
+			head += 2 + length;
+		}
+		queueHead = head;
+	}
+
+	/**
+	 * Write as much of the broadcast log to the spectator as it can take.
+	 * @param spectator The spectator to write to.
+	 * @return Whether the spectator is still connected.
+	 */
+	private boolean write(Spectator spectator) {
+		try {
+			if (spectator.position < 0) {
+				// start from the latest keyframe, or wait until there's one.
+				if (latestKeyframe < 0 || logEnd - latestKeyframe > LOG_SIZE) {
+					return true;
+				}
+				spectator.position = latestKeyframe;
+			} else if (logEnd - spectator.position > LOG_SIZE) {
+				throw new IOException("The spectator fell too far behind!");
+			}
+			while (spectator.position < logEnd) {
+				int offset = (int) (spectator.position & (LOG_SIZE - 1));
+				int length = (int) Math.min(logEnd - spectator.position, LOG_SIZE - offset);
+				spectator.view.limit(offset + length).position(offset);
+				int written = spectator.channel.write(spectator.view);
+				if (written <= 0) {
+					break;
+				}
+				spectator.position += written;
+				bytesSent.addAndGet(written);
+			}
+
+			// wait for the socket to become writable only while it's full.
+			boolean blocked = spectator.position < logEnd;
+			if (blocked != spectator.blocked) {
+				spectator.key.interestOps(blocked ? SelectionKey.OP_WRITE : 0);
+				spectator.blocked = blocked;
+			}
+			return true;
+		} catch (IOException | RuntimeException e) {
+			drop(spectator);
+			return false;
+		}
+	}
+
+	/**
+	 * Disconnect a failed spectator.
+	 * @param spectator The spectator to disconnect.
+	 */
+	private void drop(Spectator spectator) {
+		spectatorsDropped.incrementAndGet();
+		try {
+			spectator.channel.close();
+		} catch (IOException closeError) {
+			// ... the spectator is gone anyway ...
+		}
+	}
+
+}
@@ -0,0 +1,197 @@
+package net.toiviainen.pong.spectate;
+
+import static net.toiviainen.pong.engine.CourtEngine.EVENT_MATCH_OVER;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import net.toiviainen.pong.FixedTimestep;
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.engine.PaddleController;
+import net.toiviainen.pong.metrics.Histogram;
+import net.toiviainen.pong.sim.BallFollower;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * A command-line benchmark of the spectator stream over the loopback.
+ * </p>
+ * <p>
+ * This benchmark plays a match between two scripted paddles in real time and
+ * broadcasts it through a {@link SpectatorHub}, while the requested amount of
+ * spectators follow the stream on a single client thread. At the end it
+ * reports the bandwidth per spectator, the CPU time of the hub thread scaled
+ * to a thousand spectators and the time the game thread spent publishing the
+ * frames. It also checks that each spectator decoded the same final state.
+ * All threads share the same machine, so the results are pessimistic.
+ * </p>
+ * <p>
+ * Supported arguments: {@code --spectators=N}, {@code --duration=N} (seconds)
+ * and {@code --keyframe-interval=N} (frames).
+ * </p>
+ */
+public final class SpectatorLoadTest {
+
+	private SpectatorLoadTest() {
+		throw new AssertionError("No net.toiviainen.pong.spectate.SpectatorLoadTest instances for you!");
+	}
+
+	/** The state of a single spectator. */
+	private static final class Client {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 12);
+		final StateDecoder decoder = new StateDecoder();
+		long bytes;
+	}
+
+	public static void main(String args[]) throws Exception {
+		int spectators = 1000;
+		long duration = 10;
+		int keyframeInterval = StateEncoder.DEFAULT_KEYFRAME_INTERVAL;
+		for (String arg : args) {
+			if (arg.startsWith("--spectators=")) {
+				spectators = Integer.parseInt(arg.substring("--spectators=".length()));
+			} else if (arg.startsWith("--duration=")) {
+				duration = Long.parseLong(arg.substring("--duration=".length()));
+			} else if (arg.startsWith("--keyframe-interval=")) {
+				keyframeInterval = Integer.parseInt(arg.substring("--keyframe-interval=".length()));
+			} else {
+				throw new IllegalArgumentException("Unknown argument: " + arg);
+			}
+		}
+		Args.isGte(spectators, 1, "The amount of spectators must be at least one!");
+		Args.isGte(duration, 1, "The duration must be at least one second!");
+
+		try (SpectatorHub hub = new SpectatorHub(0); Selector selector = Selector.open()) {
+			// connect all the spectators before the match starts.
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), hub.getPort());
+			Client[] clients = new Client[spectators];
+			for (int i = 0; i < spectators; i++) {
+				SocketChannel channel = SocketChannel.open(address);
+				channel.configureBlocking(false);
+				clients[i] = new Client();
+				channel.register(selector, SelectionKey.OP_READ, clients[i]);
+			}
+			while (hub.getSpectatorCount() < spectators) {
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+			}
+
+			// play and broadcast the match in real time on its own thread.
+			Histogram publishTimes = new Histogram();
+			CourtEngine engine = new CourtEngine(new PongContext(), 1);
+			long durationNanos = TimeUnit.SECONDS.toNanos(duration);
+			int interval = keyframeInterval;
+			Thread game = new Thread(() -> play(engine, hub, interval, durationNanos, publishTimes), "pong-game");
+			long cpuStart = hub.getCpuTime();
+			long start = System.nanoTime();
+			game.start();
+
+			// follow the stream with all the spectators until the game has ended.
+			while (game.isAlive() || System.nanoTime() - start < durationNanos + TimeUnit.SECONDS.toNanos(1)) {
+				selector.select(10);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					Client client = (Client) key.attachment();
+					int read = ((SocketChannel) key.channel()).read(client.buffer);
+					if (read > 0) {
+						client.bytes += read;
+						client.buffer.flip();
+						while (client.decoder.decode(client.buffer)) {
+							// ... only the final state is checked ...
+						}
+						client.buffer.compact();
+					}
+				}
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			long cpu = hub.getCpuTime() - cpuStart;
+
+			// every spectator must have decoded the final state of the match.
+			int mismatches = 0;
+			long totalBytes = 0;
+			double tolerance = 0.5 / StateStream.POSITION_SCALE;
+			for (Client client : clients) {
+				totalBytes += client.bytes;
+				StateDecoder decoder = client.decoder;
+				if (Math.abs(decoder.getBallX() - engine.getBallX()) > tolerance
+						|| Math.abs(decoder.getBallY() - engine.getBallY()) > tolerance
+						|| Math.abs(decoder.getLeftPaddleY() - engine.getLeftPaddleY()) > tolerance
+						|| Math.abs(decoder.getRightPaddleY() - engine.getRightPaddleY()) > tolerance
+						|| decoder.getPlayer1Score() != engine.getContext().getPlayer1Score()
+						|| decoder.getPlayer2Score() != engine.getContext().getPlayer2Score()) {
+					mismatches++;
+				}
+			}
+
+			long frames = hub.getFramesPublished();
+			System.out.printf(Locale.ROOT, "spectators:        %d%n", spectators);
+			System.out.printf(Locale.ROOT, "frames:            %d published, %d rejected%n", frames,
+					hub.getFramesRejected());
+			System.out.printf(Locale.ROOT, "bytes/frame:       %.2f%n", (double) totalBytes / spectators / frames);
+			System.out.printf(Locale.ROOT, "bandwidth:         %.1f B/s per spectator%n",
+					totalBytes / seconds / spectators);
+			if (cpu >= 0) {
+				System.out.printf(Locale.ROOT, "hub cpu:           %.2f%% of a core per 1000 spectators%n",
+						100.0 * cpu / (seconds * 1e9) * 1000 / spectators);
+			}
+			System.out.printf(Locale.ROOT, "publish p50/p99/max: %.3f/%.3f/%.3f us%n",
+					publishTimes.getValueAtPercentile(50) / 1e3, publishTimes.getValueAtPercentile(99) / 1e3,
+					publishTimes.getMax() / 1e3);
+			System.out.printf(Locale.ROOT, "dropped:           %d%n", hub.getSpectatorsDropped());
+			System.out.printf(Locale.ROOT, "final state:       %s%n",
+					mismatches == 0 ? "ok" : mismatches + " spectators MISMATCH");
+			if (mismatches > 0) {
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * Play a match in real time and publish each tick into the hub.
+	 * @param engine The engine to play with.
+	 * @param hub The hub to publish into.
+	 * @param keyframeInterval The amount of frames between the keyframes.
+	 * @param durationNanos The duration to play.
+	 * @param publishTimes The histogram of the publishing times.
+	 */
+	private static void play(CourtEngine engine, SpectatorHub hub, int keyframeInterval, long durationNanos,
+			Histogram publishTimes) {
+		PaddleController left = new BallFollower(true);
+		PaddleController right = new BallFollower(false);
+		StateEncoder encoder = new StateEncoder(keyframeInterval);
+		ByteBuffer frame = ByteBuffer.allocate(StateStream.MAX_FRAME_SIZE);
+		long start = System.nanoTime();
+		long next = start;
+		while (next - start < durationNanos) {
+			long now;
+			while ((now = System.nanoTime()) < next) {
+				LockSupport.parkNanos(next - now);
+			}
+			next += FixedTimestep.DEFAULT_STEP_NANOS;
+
+			int events = engine.step(left.nextDirection(engine), right.nextDirection(engine));
+			if ((events & EVENT_MATCH_OVER) != 0) {
+				engine.getContext().reset();
+			}
+			long publishStart = System.nanoTime();
+			frame.clear();
+			boolean keyframe = encoder.encode(engine, (events & EVENT_MATCH_OVER) != 0, frame);
+			frame.flip();
+			if (!hub.publish(frame, keyframe)) {
+				encoder.requestKeyframe();
+			}
+			publishTimes.record(System.nanoTime() - publishStart);
+		}
+	}
+
+}
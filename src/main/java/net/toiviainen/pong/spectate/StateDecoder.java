@@ -0,0 +1,173 @@
+package net.toiviainen.pong.spectate;
+
+import static net.toiviainen.pong.spectate.StateStream.FIELD_BALL_X;
+import static net.toiviainen.pong.spectate.StateStream.FIELD_BALL_Y;
+import static net.toiviainen.pong.spectate.StateStream.FIELD_LEFT_PADDLE;
+import static net.toiviainen.pong.spectate.StateStream.FIELD_RIGHT_PADDLE;
+import static net.toiviainen.pong.spectate.StateStream.FIELD_SCORES;
+import static net.toiviainen.pong.spectate.StateStream.KEYFRAME;
+import static net.toiviainen.pong.spectate.StateStream.MATCH_OVER;
+import static net.toiviainen.pong.spectate.StateStream.dequantize;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * A decoder which reconstructs the court state from the spectator stream.
+ * </p>
+ * <p>
+ * The stream arrives in arbitrary chunks, so a frame may be split between two
+ * reads. The decoder therefore checks that a whole frame is available before
+ * it consumes anything, and leaves a partial frame in the buffer to be
+ * completed by the next read. The delta frames before the first keyframe are
+ * skipped, since there's nothing to apply them to.
+ * </p>
+ */
+public final class StateDecoder {
+
+	private boolean synced;
+	private boolean matchOver;
+	private int tick;
+	private int ballX;
+	private int ballY;
+	private int leftPaddleY;
+	private int rightPaddleY;
+	private int player1Score;
+	private int player2Score;
+
+	/**
+	 * Decode the next frame from the given buffer.
+	 * @param in The buffer to read from.
+	 * @return Whether a whole frame was decoded.
+	 */
+	public boolean decode(ByteBuffer in) {
+		int size = frameSize(in);
+		if (size < 0) {
+			return false;
+		}
+		int header = in.get() & 0xff;
+		if ((header & KEYFRAME) != 0) {
+			synced = true;
+			tick = getVarint(in);
+			ballX = getVarint(in);
+			ballY = getVarint(in);
+			leftPaddleY = getVarint(in);
+			rightPaddleY = getVarint(in);
+		} else if (!synced) {
+			in.position(in.position() + size - 1);
+			return true;
+		} else {
+			tick++;
+			ballX += (header & FIELD_BALL_X) != 0 ? getVarint(in) : 0;
+			ballY += (header & FIELD_BALL_Y) != 0 ? getVarint(in) : 0;
+			leftPaddleY += (header & FIELD_LEFT_PADDLE) != 0 ? getVarint(in) : 0;
+			rightPaddleY += (header & FIELD_RIGHT_PADDLE) != 0 ? getVarint(in) : 0;
+		}
+		if ((header & FIELD_SCORES) != 0) {
+			player1Score = in.get();
+			player2Score = in.get();
+		}
+		matchOver = (header & MATCH_OVER) != 0;
+		return true;
+	}
+
+	/**
+	 * Copy the decoded state of another decoder into this decoder.
+	 * @param other The decoder to copy from.
+	 */
+	public void copyFrom(StateDecoder other) {
+		synced = other.synced;
+		matchOver = other.matchOver;
+		tick = other.tick;
+		ballX = other.ballX;
+		ballY = other.ballY;
+		leftPaddleY = other.leftPaddleY;
+		rightPaddleY = other.rightPaddleY;
+		player1Score = other.player1Score;
+		player2Score = other.player2Score;
+	}
+
+	/**
+	 * Find the size of the frame at the current position without consuming it.
+	 * @param in The buffer to read from.
+	 * @return The size of the frame or -1 if the whole frame is not available.
+	 */
+	private static int frameSize(ByteBuffer in) {
+		int start = in.position();
+		int limit = in.limit();
+		if (start >= limit) {
+			return -1;
+		}
+		int header = in.get(start) & 0xff;
+		int position = start + 1;
+		int varints = Integer.bitCount(header & (FIELD_BALL_X | FIELD_BALL_Y | FIELD_LEFT_PADDLE | FIELD_RIGHT_PADDLE));
+		if ((header & KEYFRAME) != 0) {
+			varints++;
+		}
+		for (int i = 0; i < varints; i++) {
+			do {
+				if (position >= limit) {
+					return -1;
+				}
+			} while ((in.get(position++) & 0x80) != 0);
+		}
+		if ((header & FIELD_SCORES) != 0) {
+			position += 2;
+		}
+		return position <= limit ? position - start : -1;
+	}
+
+	/**
+	 * Read a zigzag encoded variable length integer.
+	 * @param in The buffer to read from.
+	 * @return The read value.
+	 */
+	private static int getVarint(ByteBuffer in) {
+		int zigzag = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			zigzag |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	public boolean isSynced() {
+		return synced;
+	}
+
+	public boolean isMatchOver() {
+		return matchOver;
+	}
+
+	public int getTick() {
+		return tick;
+	}
+
+	public double getBallX() {
+		return dequantize(ballX);
+	}
+
+	public double getBallY() {
+		return dequantize(ballY);
+	}
+
+	public double getLeftPaddleY() {
+		return dequantize(leftPaddleY);
+	}
+
+	public double getRightPaddleY() {
+		return dequantize(rightPaddleY);
+	}
+
+	public int getPlayer1Score() {
+		return player1Score;
+	}
+
+	public int getPlayer2Score() {
+		return player2Score;
+	}
+
+}
@@ -0,0 +1,140 @@
+package net.toiviainen.pong.spectate;
+
+import static net.toiviainen.pong.spectate.StateStream.FIELD_BALL_X;
+import static net.toiviainen.pong.spectate.StateStream.FIELD_BALL_Y;
+import static net.toiviainen.pong.spectate.StateStream.FIELD_LEFT_PADDLE;
+import static net.toiviainen.pong.spectate.StateStream.FIELD_RIGHT_PADDLE;
+import static net.toiviainen.pong.spectate.StateStream.FIELD_SCORES;
+import static net.toiviainen.pong.spectate.StateStream.KEYFRAME;
+import static net.toiviainen.pong.spectate.StateStream.MATCH_OVER;
+import static net.toiviainen.pong.spectate.StateStream.quantize;
+
+import java.nio.ByteBuffer;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.util.Args;
+
+/**
+ * <p>
+ * An encoder which writes the court state into the spectator stream.
+ * </p>
+ * <p>
+ * The encoder remembers the quantized values of the previous frame, so each
+ * frame contains only the changes since it. A keyframe is written on every
+ * {@code keyframeInterval}th frame and whenever one is explicitly requested,
+ * e.g. when a frame could not be delivered. The encoder never allocates.
+ * </p>
+ */
+public final class StateEncoder {
+
+	/** The default amount of frames between the keyframes (once per second). */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 60;
+
+	private final int keyframeInterval;
+
+	private boolean keyframeRequested = true;
+	private int framesSinceKeyframe;
+	private int tick;
+	private int ballX;
+	private int ballY;
+	private int leftPaddleY;
+	private int rightPaddleY;
+	private int player1Score;
+	private int player2Score;
+
+	public StateEncoder() {
+		this(DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	public StateEncoder(int keyframeInterval) throws IllegalArgumentException {
+		this.keyframeInterval = Args.isGte(keyframeInterval, 1, "The keyframe interval must be at least one!");
+	}
+
+	/**
+	 * Request the next frame to be a keyframe.
+	 */
+	public void requestKeyframe() {
+		keyframeRequested = true;
+	}
+
+	/**
+	 * Write a frame of the current engine state into the given buffer.
+	 * @param engine The engine to encode.
+	 * @param matchOver Whether the match ended on this tick.
+	 * @param out The buffer with at least {@link StateStream#MAX_FRAME_SIZE} bytes remaining.
+	 * @return Whether the written frame is a keyframe.
+	 */
+	public boolean encode(CourtEngine engine, boolean matchOver, ByteBuffer out) {
+		PongContext ctx = engine.getContext();
+		int newBallX = quantize(engine.getBallX());
+		int newBallY = quantize(engine.getBallY());
+		int newLeftPaddleY = quantize(engine.getLeftPaddleY());
+		int newRightPaddleY = quantize(engine.getRightPaddleY());
+		int newPlayer1Score = ctx.getPlayer1Score();
+		int newPlayer2Score = ctx.getPlayer2Score();
+		tick++;
+
+		boolean keyframe = keyframeRequested || ++framesSinceKeyframe >= keyframeInterval;
+		if (keyframe) {
+			keyframeRequested = false;
+			framesSinceKeyframe = 0;
+			out.put((byte) (KEYFRAME | FIELD_BALL_X | FIELD_BALL_Y | FIELD_LEFT_PADDLE | FIELD_RIGHT_PADDLE
+					| FIELD_SCORES | (matchOver ? MATCH_OVER : 0)));
+			putVarint(out, tick);
+			putVarint(out, newBallX);
+			putVarint(out, newBallY);
+			putVarint(out, newLeftPaddleY);
+			putVarint(out, newRightPaddleY);
+			out.put((byte) newPlayer1Score);
+			out.put((byte) newPlayer2Score);
+		} else {
+			int header = matchOver ? MATCH_OVER : 0;
+			header |= newBallX != ballX ? FIELD_BALL_X : 0;
+			header |= newBallY != ballY ? FIELD_BALL_Y : 0;
+			header |= newLeftPaddleY != leftPaddleY ? FIELD_LEFT_PADDLE : 0;
+			header |= newRightPaddleY != rightPaddleY ? FIELD_RIGHT_PADDLE : 0;
+			header |= newPlayer1Score != player1Score || newPlayer2Score != player2Score ? FIELD_SCORES : 0;
+			out.put((byte) header);
+			if ((header & FIELD_BALL_X) != 0) {
+				putVarint(out, newBallX - ballX);
+			}
+			if ((header & FIELD_BALL_Y) != 0) {
+				putVarint(out, newBallY - ballY);
+			}
+			if ((header & FIELD_LEFT_PADDLE) != 0) {
+				putVarint(out, newLeftPaddleY - leftPaddleY);
+			}
+			if ((header & FIELD_RIGHT_PADDLE) != 0) {
+				putVarint(out, newRightPaddleY - rightPaddleY);
+			}
+			if ((header & FIELD_SCORES) != 0) {
+				out.put((byte) newPlayer1Score);
+				out.put((byte) newPlayer2Score);
+			}
+		}
+
+		ballX = newBallX;
+		ballY = newBallY;
+		leftPaddleY = newLeftPaddleY;
+		rightPaddleY = newRightPaddleY;
+		player1Score = newPlayer1Score;
+		player2Score = newPlayer2Score;
+		return keyframe;
+	}
+
+	/**
+	 * Write a zigzag encoded variable length integer.
+	 * @param out The buffer to write into.
+	 * @param value The value to write.
+	 */
+	private static void putVarint(ByteBuffer out, int value) {
+		int zigzag = (value << 1) ^ (value >> 31);
+		while ((zigzag & ~0x7f) != 0) {
+			out.put((byte) ((zigzag & 0x7f) | 0x80));
+			zigzag >>>= 7;
+		}
+		out.put((byte) zigzag);
+	}
+
+}
@@ -0,0 +1,61 @@
+package net.toiviainen.pong.spectate;
+
+/**
+ * <p>
+ * The binary format of the spectator state stream.
+ * </p>
+ * <p>
+ * The stream is a sequence of frames, one for each simulated tick. Each frame
+ * starts with a header byte, where the lowest bits tell which fields have
+ * changed since the previous frame and the highest bit marks a keyframe. The
+ * positions are quantized into {@link #POSITION_SCALE}ths of a pixel and the
+ * values are written as zigzag encoded variable length integers. A keyframe
+ * contains the tick and all the fields as absolute values, so a spectator can
+ * start following the stream from any keyframe. A delta frame describes the
+ * tick following the previous frame and contains only the changes of the
+ * changed fields, which mostly fit into a single byte each.
+ * </p>
+ *
+ * <pre>
+ * header    byte     field mask | KEYFRAME
+ * tick      varint   (keyframes only)
+ * ball x    varint   (if FIELD_BALL_X)
+ * ball y    varint   (if FIELD_BALL_Y)
+ * left y    varint   (if FIELD_LEFT_PADDLE)
+ * right y   varint   (if FIELD_RIGHT_PADDLE)
+ * scores    2 bytes  (if FIELD_SCORES, always absolute)
+ * </pre>
+ */
+public final class StateStream {
+
+	/** The amount of quantization steps per pixel. */
+	public static final double POSITION_SCALE = 8.0;
+
+	/** The maximum size of a single frame in bytes. */
+	public static final int MAX_FRAME_SIZE = 1 + 5 * 5 + 2;
+
+	static final int FIELD_BALL_X = 1;
+	static final int FIELD_BALL_Y = 1 << 1;
+	static final int FIELD_LEFT_PADDLE = 1 << 2;
+	static final int FIELD_RIGHT_PADDLE = 1 << 3;
+	static final int FIELD_SCORES = 1 << 4;
+
+	/** A header flag for a frame at the end of a match. */
+	static final int MATCH_OVER = 1 << 5;
+
+	/** A header flag for a keyframe. */
+	static final int KEYFRAME = 1 << 7;
+
+	private StateStream() {
+		throw new AssertionError("No net.toiviainen.pong.spectate.StateStream instances for you!");
+	}
+
+	static int quantize(double position) {
+		return (int) Math.round(position * POSITION_SCALE);
+	}
+
+	static double dequantize(int value) {
+		return value / POSITION_SCALE;
+	}
+
+}
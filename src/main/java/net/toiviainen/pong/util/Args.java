@@ -59,6 +59,21 @@ public final class Args {
 		return value;
 	}
 
+	/**
+	 * Check that the provided is equal or higher than the provided limit.
+	 * @param value The value to check.
+	 * @param limit The limit to check against.
+	 * @param message A message to pass to exception if the validation fails.
+	 * @return A reference to the provided object.
+	 * @throws IllegalArgumentException When the validation fails.
+	 */
+	public static long isGte(long value, long limit, String message) throws IllegalArgumentException {
+		if (value < limit) {
+			throw new IllegalArgumentException(message);
+		}
+		return value;
+	}
+
 	/**
 	 * Check that the provided is equal or higher than the provided limit.
 	 * @param value The value to check.
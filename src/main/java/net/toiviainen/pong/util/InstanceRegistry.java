@@ -0,0 +1,65 @@
+package net.toiviainen.pong.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * A registry which holds a single lazily constructed instance of each
+ * registered type.
+ * </p>
+ * <p>
+ * Each type is registered with a factory, which is called when the instance
+ * of the type is requested for the first time. The same instance is returned
+ * for all the later requests, so cycling between the types never constructs
+ * more than one instance of each. The registry is not thread-safe.
+ * </p>
+ * @param <T> The base type of the instances.
+ */
+public final class InstanceRegistry<T> {
+
+	private final Map<Class<? extends T>, Supplier<? extends T>> factories = new HashMap<>();
+	private final Map<Class<? extends T>, T> instances = new HashMap<>();
+
+	/**
+	 * Register the factory of a type.
+	 * @param <S> The registered type.
+	 * @param type The registered type.
+	 * @param factory The factory constructing the instance of the type.
+	 * @throws NullPointerException If the type or the factory is null.
+	 */
+	public <S extends T> void register(Class<S> type, Supplier<? extends S> factory) throws NullPointerException {
+		requireNonNull(type, "The type cannot be null!");
+		factories.put(type, requireNonNull(factory, "The factory cannot be null!"));
+	}
+
+	/**
+	 * Get the instance of the given type, constructing it on the first call.
+	 * @param <S> The requested type.
+	 * @param type The requested type.
+	 * @return The single instance of the type.
+	 * @throws IllegalArgumentException When the type is not registered.
+	 * @throws NullPointerException If the factory returns null.
+	 */
+	public <S extends T> S get(Class<S> type) throws IllegalArgumentException, NullPointerException {
+		T instance = instances.get(type);
+		if (instance == null) {
+			Supplier<? extends T> factory = Args.notNull(factories.get(type), "There's no instance of the type: " + type);
+			instance = requireNonNull(factory.get(), "The factory returned null!");
+			instances.put(type, instance);
+		}
+		return type.cast(instance);
+	}
+
+	/**
+	 * Get the amount of the instances constructed so far.
+	 * @return The amount of the constructed instances.
+	 */
+	public int size() {
+		return instances.size();
+	}
+
+}
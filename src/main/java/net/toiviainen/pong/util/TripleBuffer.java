@@ -0,0 +1,85 @@
+package net.toiviainen.pong.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * A lock-free triple buffer for handing the latest state from a single writer
+ * thread over to a single reader thread.
+ * </p>
+ * <p>
+ * The writer fills the back buffer and publishes it by swapping it with the
+ * middle buffer, while the reader swaps its front buffer with the middle
+ * buffer only when a newer one has been published since its previous read.
+ * Neither side ever waits for the other one, and the reader always sees the
+ * latest complete state: the states published between two reads are skipped.
+ * </p>
+ * <p>
+ * The buffers are reused, so the contents of a buffer returned by
+ * {@link #getBack()} are those of an older state and the writer must fill all
+ * of it. The buffers are immutable by convention once they are published.
+ * </p>
+ * @param <T> The type of the buffers.
+ */
+public final class TripleBuffer<T> {
+
+	/** The flag of the middle index telling it holds an unread state. */
+	private static final int DIRTY = 4;
+
+	/** The mask for the buffer index within the middle index. */
+	private static final int INDEX_MASK = 3;
+
+	private final Object[] buffers = new Object[3];
+	private final AtomicInteger middle = new AtomicInteger(1);
+
+	// the writer owns the back buffer and the reader the front buffer.
+	private int back = 0;
+	private int front = 2;
+
+	/**
+	 * Create a new triple buffer.
+	 * @param factory The factory of the three buffers.
+	 * @throws NullPointerException If the factory or any buffer is null.
+	 */
+	public TripleBuffer(Supplier<T> factory) throws NullPointerException {
+		requireNonNull(factory, "The factory cannot be null!");
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = requireNonNull(factory.get(), "The buffer cannot be null!");
+		}
+	}
+
+	/**
+	 * Get the buffer the writer fills for the next state. Called by the writer.
+	 * @return The back buffer.
+	 */
+	public T getBack() {
+		return get(back);
+	}
+
+	/**
+	 * Publish the back buffer as the latest state. Called by the writer.
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | DIRTY) & INDEX_MASK;
+	}
+
+	/**
+	 * Get the latest published state. Called by the reader.
+	 * @return The front buffer, which stays valid until the next call.
+	 */
+	public T getFront() {
+		if ((middle.get() & DIRTY) != 0) {
+			front = middle.getAndSet(front) & INDEX_MASK;
+		}
+		return get(front);
+	}
+
+	@SuppressWarnings("unchecked")
+	private T get(int index) {
+		return (T) buffers[index];
+	}
+
+}
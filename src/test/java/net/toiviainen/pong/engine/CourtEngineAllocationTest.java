@@ -0,0 +1,64 @@
+package net.toiviainen.pong.engine;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.sim.BallFollower;
+
+/**
+ * The allocation budget of the court engine, which must not allocate anything
+ * on a tick, including the ticks with the paddle hits, goals and resets.
+ */
+class CourtEngineAllocationTest {
+
+	private static final int WARMUP_TICKS = 200000;
+	private static final int MEASURED_TICKS = 200000;
+
+	@Test
+	void stepDoesNotAllocate() {
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported(), "The allocation counter is not supported!");
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		PongContext ctx = new PongContext();
+		CourtEngine engine = new CourtEngine(ctx, 42);
+		PaddleController left = new BallFollower(true);
+		PaddleController right = new BallFollower(false);
+
+		// let the compiler settle first, the interpreter is not measured.
+		run(engine, ctx, left, right, WARMUP_TICKS);
+
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		long events = run(engine, ctx, left, right, MEASURED_TICKS);
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		assertTrue(events > 0, "The measured ticks did not contain any goals!");
+		// even a single object per tick would take far more than a byte per tick.
+		assertTrue(allocated < MEASURED_TICKS, "The engine allocated " + allocated + " bytes in "
+				+ MEASURED_TICKS + " ticks!");
+	}
+
+	private static long run(CourtEngine engine, PongContext ctx, PaddleController left, PaddleController right,
+			int ticks) {
+		long goals = 0;
+		for (int i = 0; i < ticks; i++) {
+			int events = engine.step(left.nextDirection(engine), right.nextDirection(engine));
+			if ((events & (CourtEngine.EVENT_PLAYER1_GOAL | CourtEngine.EVENT_PLAYER2_GOAL)) != 0) {
+				goals++;
+			}
+			if ((events & CourtEngine.EVENT_MATCH_OVER) != 0) {
+				ctx.reset();
+			}
+		}
+		return goals;
+	}
+
+}
@@ -0,0 +1,138 @@
+package net.toiviainen.pong.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.sim.BallFollower;
+
+/**
+ * A saved snapshot must resume exactly the same match, and a file which isn't
+ * a snapshot of the current format must be rejected instead of restored.
+ */
+class MatchSnapshotTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void writtenSnapshotResumesTheSameMatch() throws IOException {
+		PongContext ctx = new PongContext();
+		CourtEngine engine = new CourtEngine(ctx, 42);
+		play(engine, 2000);
+
+		MatchSnapshot snapshot = new MatchSnapshot();
+		snapshot.capture(engine, 2000);
+		Path file = directory.resolve("match.snapshot");
+		snapshot.write(file);
+		assertEquals(MatchSnapshot.FILE_SIZE, Files.size(file));
+		assertFalse(Files.exists(directory.resolve("match.snapshot.tmp")));
+
+		PongContext resumedCtx = new PongContext();
+		CourtEngine resumed = new CourtEngine(resumedCtx, 7);
+		MatchSnapshot read = MatchSnapshot.read(file);
+		read.restore(resumed);
+		assertEquals(2000, read.getMatchTick());
+		assertEquals(engine.checksum(), resumed.checksum());
+		assertEquals(ctx.getPlayer1Score(), resumedCtx.getPlayer1Score());
+		assertEquals(ctx.getPlayer2Score(), resumedCtx.getPlayer2Score());
+
+		// both matches must also continue identically from the snapshot.
+		play(engine, 1000);
+		play(resumed, 1000);
+		assertEquals(engine.checksum(), resumed.checksum());
+	}
+
+	@Test
+	void rewriteReplacesThePreviousSnapshot() throws IOException {
+		CourtEngine engine = new CourtEngine(new PongContext(), 42);
+		MatchSnapshot snapshot = new MatchSnapshot();
+		Path file = directory.resolve("match.snapshot");
+		snapshot.capture(engine, 1);
+		snapshot.write(file);
+		long first = engine.checksum();
+
+		play(engine, 500);
+		assertNotEquals(first, engine.checksum());
+		snapshot.capture(engine, 501);
+		snapshot.write(file);
+		assertEquals(501, MatchSnapshot.read(file).getMatchTick());
+	}
+
+	@Test
+	void badMagicIsRejected() throws IOException {
+		Path file = writeSnapshot();
+		patch(file, 0, buffer -> buffer.putInt(0x12345678));
+		assertThrows(IOException.class, () -> MatchSnapshot.read(file));
+	}
+
+	@Test
+	void unsupportedVersionIsRejected() throws IOException {
+		Path file = writeSnapshot();
+		patch(file, 4, buffer -> buffer.putShort((short) (MatchSnapshot.VERSION + 1)));
+		assertThrows(IOException.class, () -> MatchSnapshot.read(file));
+	}
+
+	@Test
+	void unsupportedStateSizeIsRejected() throws IOException {
+		Path file = writeSnapshot();
+		patch(file, 6, buffer -> buffer.putShort((short) (CourtEngine.STATE_SIZE + 1)));
+		assertThrows(IOException.class, () -> MatchSnapshot.read(file));
+	}
+
+	@Test
+	void truncatedFileIsRejected() throws IOException {
+		Path file = writeSnapshot();
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+		assertThrows(IOException.class, () -> MatchSnapshot.read(file));
+	}
+
+	@Test
+	void oversizedFileIsRejected() throws IOException {
+		Path file = writeSnapshot();
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length + 8));
+		assertThrows(IOException.class, () -> MatchSnapshot.read(file));
+	}
+
+	private Path writeSnapshot() throws IOException {
+		CourtEngine engine = new CourtEngine(new PongContext(), 42);
+		play(engine, 100);
+		MatchSnapshot snapshot = new MatchSnapshot();
+		snapshot.capture(engine, 100);
+		Path file = directory.resolve("match.snapshot");
+		snapshot.write(file);
+		return file;
+	}
+
+	private static void patch(Path file, int offset, Consumer<ByteBuffer> patcher) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(offset);
+		patcher.accept(buffer);
+		Files.write(file, buffer.array());
+	}
+
+	private static void play(CourtEngine engine, int ticks) {
+		BallFollower left = new BallFollower(true);
+		BallFollower right = new BallFollower(false);
+		for (int i = 0; i < ticks; i++) {
+			engine.step(left.nextDirection(engine), right.nextDirection(engine));
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package net.toiviainen.pong.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+
+/**
+ * The writer must complete the latest request by the time it's closed, and a
+ * failing file system must only stop the saving instead of the match.
+ */
+class SnapshotWriterTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void latestSaveIsWrittenWhenClosed() throws IOException {
+		CourtEngine engine = new CourtEngine(new PongContext(), 42);
+		Path file = directory.resolve("match.snapshot");
+		SnapshotWriter writer = new SnapshotWriter(file);
+		for (int tick = 1; tick <= 1000; tick++) {
+			engine.step(CourtEngine.DIRECTION_UP, CourtEngine.DIRECTION_DOWN);
+			writer.save(engine, tick);
+		}
+		writer.close();
+
+		MatchSnapshot snapshot = MatchSnapshot.read(file);
+		assertEquals(1000, snapshot.getMatchTick());
+		CourtEngine restored = new CourtEngine(new PongContext(), 7);
+		snapshot.restore(restored);
+		assertEquals(engine.checksum(), restored.checksum());
+	}
+
+	@Test
+	void deleteAfterSaveRemovesTheFile() {
+		CourtEngine engine = new CourtEngine(new PongContext(), 42);
+		Path file = directory.resolve("match.snapshot");
+		SnapshotWriter writer = new SnapshotWriter(file);
+		writer.save(engine, 1);
+		writer.delete();
+		writer.close();
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	void repeatedFailuresDisableTheSaving() throws InterruptedException {
+		CourtEngine engine = new CourtEngine(new PongContext(), 42);
+		// the parent directory doesn't exist, so every write fails.
+		SnapshotWriter writer = new SnapshotWriter(directory.resolve("missing").resolve("match.snapshot"));
+		for (int i = 0; i < 100 && !writer.isDisabled(); i++) {
+			writer.save(engine, i);
+			Thread.sleep(20);
+		}
+		assertTrue(writer.isDisabled());
+		writer.close();
+	}
+
+}
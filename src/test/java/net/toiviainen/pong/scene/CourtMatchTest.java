@@ -0,0 +1,173 @@
+package net.toiviainen.pong.scene;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+
+import net.toiviainen.pong.PongContext;
+import net.toiviainen.pong.engine.CourtEngine;
+import net.toiviainen.pong.replay.InputLog;
+import net.toiviainen.pong.sim.Difficulty;
+
+/**
+ * The resources of each match must be released when the next match begins or
+ * the scene stops, so thousands of match cycles neither leave threads running
+ * nor keep files open nor retain the objects of the earlier matches.
+ */
+class CourtMatchTest {
+
+	private static final int CYCLES = 2000;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void matchCyclesDoNotLeak() throws InterruptedException {
+		PongContext ctx = new PongContext();
+		CourtEngine engine = new CourtEngine(ctx, 42);
+		CourtMatch match = new CourtMatch(Difficulty.NORMAL, directory, null);
+
+		// let the first cycle load the classes and open the shared files.
+		cycle(match, engine, ctx, 0, true);
+		int threads = Thread.activeCount();
+		long files = openFiles();
+		long direct = directMemory();
+
+		List<WeakReference<Object>> released = new ArrayList<>();
+		for (int i = 1; i <= CYCLES; i++) {
+			if (i % 100 == 0) {
+				match.begin(i, ctx, true, true);
+				released.add(new WeakReference<>(match.getComputer()));
+				released.add(new WeakReference<>(match.getRecorder()));
+				match.startPhysics(() -> false);
+				released.add(new WeakReference<>(match.getPhysics()));
+				match.end();
+			} else {
+				// leaving the scene runs onStop, but entering it again only
+				// begins a new match, which must release the previous one.
+				cycle(match, engine, ctx, i, i % 2 == 0);
+			}
+		}
+		match.end();
+		assertNull(match.getPhysics());
+		assertNull(match.getRecorder());
+
+		assertEquals(0, countPhysicsThreads(), "The physics threads were left running!");
+		assertTrue(Thread.activeCount() <= threads, "The amount of live threads grew!");
+		if (files >= 0) {
+			assertTrue(openFiles() - files <= 4, "The recordings were left open: " + (openFiles() - files));
+		}
+		for (WeakReference<Object> reference : released) {
+			awaitCollected(reference);
+		}
+		// each recorder allocates a direct buffer, which must become free too.
+		assertTrue(awaitDirectMemory(direct + 1024 * 1024), "The recording buffers were retained!");
+	}
+
+	@Test
+	void beginReleasesThePreviousMatch() {
+		PongContext ctx = new PongContext();
+		CourtMatch match = new CourtMatch(Difficulty.EASY, directory, null);
+		match.begin(1, ctx, true, true);
+		match.startPhysics(() -> true);
+		PhysicsThread physics = match.getPhysics();
+		assertTrue(physics.isAlive());
+
+		match.begin(2, ctx, false, false);
+		assertTrue(!physics.isAlive());
+		assertNull(match.getPhysics());
+		assertNull(match.getRecorder());
+		assertNull(match.getComputer());
+	}
+
+	@Test
+	void finishedRecordingIsReleased() {
+		PongContext ctx = new PongContext();
+		CourtMatch match = new CourtMatch(null, directory, null);
+		match.begin(1, ctx, true, true);
+		assertNull(match.getComputer());
+		assertNotNull(match.getRecorder());
+		match.record(InputLog.encode(0.0), InputLog.encode(0.0), CourtEngine.EVENT_MATCH_OVER, ctx);
+		assertNull(match.getRecorder());
+	}
+
+	/**
+	 * Play a single short match on the physics thread.
+	 */
+	private static void cycle(CourtMatch match, CourtEngine engine, PongContext ctx, int seed, boolean stop)
+			throws InterruptedException {
+		engine.restart(seed);
+		match.begin(seed, ctx, true, true);
+		match.startPhysics(() -> {
+			byte left = InputLog.encode(match.getComputer().nextDirection(engine));
+			byte right = InputLog.encode(0.0);
+			int events = engine.step(InputLog.decode(left), InputLog.decode(right));
+			match.record(left, right, events, ctx);
+			return true;
+		});
+		if (stop) {
+			match.end();
+		}
+	}
+
+	private static int countPhysicsThreads() {
+		int count = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if ("pong-physics".equals(thread.getName()) && thread.isAlive()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static long openFiles() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof UnixOperatingSystemMXBean) {
+			return ((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+		}
+		return -1;
+	}
+
+	private static long directMemory() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if ("direct".equals(pool.getName())) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	private static void awaitCollected(WeakReference<Object> reference) throws InterruptedException {
+		for (int i = 0; i < 50 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertNull(reference.get(), "The resources of a finished match were retained!");
+	}
+
+	private static boolean awaitDirectMemory(long limit) throws InterruptedException {
+		for (int i = 0; i < 50; i++) {
+			if (directMemory() <= limit) {
+				return true;
+			}
+			System.gc();
+			Thread.sleep(20);
+		}
+		return false;
+	}
+
+}
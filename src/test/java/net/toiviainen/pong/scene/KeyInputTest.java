@@ -0,0 +1,111 @@
+package net.toiviainen.pong.scene;
+
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_DOWN;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_NONE;
+import static net.toiviainen.pong.engine.CourtEngine.DIRECTION_UP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import javafx.scene.input.KeyCode;
+import net.toiviainen.pong.metrics.Histogram;
+
+/**
+ * The key events are integrated over the time between the samples, so the
+ * presses shorter than a tick still move the paddles by their share of it.
+ */
+class KeyInputTest {
+
+	private static final long TICK = 16000000;
+	private static final double EPSILON = 1e-9;
+
+	@Test
+	void pressAndReleaseWithinTickMovesByItsShare() {
+		KeyInput input = new KeyInput(null);
+		input.sample(0);
+		input.keyPressed(KeyCode.W, TICK / 4);
+		input.keyReleased(KeyCode.W, TICK / 2);
+		input.sample(TICK);
+		assertEquals(DIRECTION_UP * 0.25, input.getLeftDirection(), EPSILON);
+		assertEquals(DIRECTION_NONE, input.getRightDirection(), EPSILON);
+
+		// the release has been applied, so the next tick doesn't move.
+		input.sample(2 * TICK);
+		assertEquals(DIRECTION_NONE, input.getLeftDirection(), EPSILON);
+	}
+
+	@Test
+	void heldKeyMovesByFullStepsUntilReleased() {
+		KeyInput input = new KeyInput(null);
+		input.sample(0);
+		input.keyPressed(KeyCode.DOWN, 0);
+		input.sample(TICK);
+		assertEquals(DIRECTION_DOWN, input.getRightDirection(), EPSILON);
+		input.sample(2 * TICK);
+		assertEquals(DIRECTION_DOWN, input.getRightDirection(), EPSILON);
+
+		input.keyReleased(KeyCode.DOWN, 2 * TICK + TICK * 3 / 4);
+		input.sample(3 * TICK);
+		assertEquals(DIRECTION_DOWN * 0.75, input.getRightDirection(), EPSILON);
+	}
+
+	@Test
+	void eventsBeforePreviousSampleCountFromItsStart() {
+		KeyInput input = new KeyInput(null);
+		input.sample(TICK);
+		// a late delivered event cannot move the paddle during an earlier tick.
+		input.keyPressed(KeyCode.UP, TICK / 2);
+		input.sample(2 * TICK);
+		assertEquals(DIRECTION_UP, input.getRightDirection(), EPSILON);
+	}
+
+	@Test
+	void latestPressedKeyWins() {
+		KeyInput input = new KeyInput(null);
+		input.sample(0);
+		input.keyPressed(KeyCode.W, 0);
+		input.keyPressed(KeyCode.S, TICK / 2);
+		input.sample(TICK);
+		assertEquals(0.0, input.getLeftDirection(), EPSILON);
+
+		// releasing the overridden key doesn't stop the paddle.
+		input.keyReleased(KeyCode.W, TICK);
+		input.sample(2 * TICK);
+		assertEquals(DIRECTION_DOWN, input.getLeftDirection(), EPSILON);
+	}
+
+	@Test
+	void repeatedPressesAreFiltered() {
+		Histogram latencies = new Histogram();
+		KeyInput input = new KeyInput(latencies);
+		input.sample(0);
+		for (int i = 0; i < 10; i++) {
+			input.keyPressed(KeyCode.S, i * TICK / 10);
+		}
+		input.keyPressed(KeyCode.ENTER, TICK / 2);
+		input.sample(TICK);
+		assertEquals(1, latencies.getCount());
+		assertEquals(DIRECTION_DOWN, input.getLeftDirection(), EPSILON);
+	}
+
+	@Test
+	void resetDiscardsPendingEvents() {
+		KeyInput input = new KeyInput(null);
+		input.sample(0);
+		input.keyPressed(KeyCode.W, TICK / 2);
+		input.reset();
+		input.sample(TICK);
+		assertEquals(DIRECTION_NONE, input.getLeftDirection(), EPSILON);
+	}
+
+	@Test
+	void fullQueueDropsEvents() {
+		KeyInput input = new KeyInput(null);
+		for (int i = 0; i < 1000; i++) {
+			input.keyPressed(KeyCode.W, i);
+			input.keyReleased(KeyCode.W, i);
+		}
+		assertEquals(2000 - 1024, input.getDropped());
+	}
+
+}
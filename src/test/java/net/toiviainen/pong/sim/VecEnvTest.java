@@ -0,0 +1,50 @@
+package net.toiviainen.pong.sim;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import net.toiviainen.pong.engine.CourtEngine;
+
+/**
+ * A failure while stepping the environments, on a worker or on the calling
+ * thread, must fail the step instead of leaving the caller waiting forever.
+ */
+class VecEnvTest {
+
+	private static final int ENVS = 4;
+
+	@Test
+	void workerFailureFailsTheStep() throws ReflectiveOperationException {
+		assertFailureIsThrown(ENVS - 1);
+	}
+
+	@Test
+	void callerFailureFailsTheStep() throws ReflectiveOperationException {
+		assertFailureIsThrown(0);
+	}
+
+	private static void assertFailureIsThrown(int brokenEnv) throws ReflectiveOperationException {
+		try (VecEnv env = new VecEnv(ENVS, 2, 42)) {
+			env.step();
+			// a missing engine stands for a bug in the engine or in the buffers.
+			Field engines = VecEnv.class.getDeclaredField("engines");
+			engines.setAccessible(true);
+			((CourtEngine[]) engines.get(env))[brokenEnv] = null;
+
+			assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+				IllegalStateException e = assertThrows(IllegalStateException.class, env::step);
+				assertInstanceOf(NullPointerException.class, e.getCause());
+				// the matches are inconsistent now, so the later steps fail too.
+				e = assertThrows(IllegalStateException.class, env::step);
+				assertInstanceOf(NullPointerException.class, e.getCause());
+			});
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package net.toiviainen.pong.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The registry must hold a single instance per type however many times the
+ * instances are requested, which is what keeps the scene transitions from
+ * leaking scenes.
+ */
+class InstanceRegistryTest {
+
+	private static class Base {
+	}
+
+	private static final class First extends Base {
+	}
+
+	private static final class Second extends Base {
+	}
+
+	private static final class Third extends Base {
+	}
+
+	@Test
+	void cyclingKeepsOneInstancePerType() {
+		AtomicInteger constructed = new AtomicInteger();
+		InstanceRegistry<Base> registry = new InstanceRegistry<>();
+		registry.register(First.class, () -> count(constructed, new First()));
+		registry.register(Second.class, () -> count(constructed, new Second()));
+		registry.register(Third.class, () -> count(constructed, new Third()));
+		assertEquals(0, registry.size());
+
+		First first = registry.get(First.class);
+		Second second = registry.get(Second.class);
+		Third third = registry.get(Third.class);
+		// the same transitions as welcome -> court -> end game -> court over and over.
+		for (int i = 0; i < 10000; i++) {
+			assertSame(second, registry.get(Second.class));
+			assertSame(third, registry.get(Third.class));
+			assertSame(first, registry.get(First.class));
+		}
+		assertEquals(3, registry.size());
+		assertEquals(3, constructed.get());
+	}
+
+	@Test
+	void instancesAreOnlyConstructedWhenRequested() {
+		AtomicInteger constructed = new AtomicInteger();
+		InstanceRegistry<Base> registry = new InstanceRegistry<>();
+		registry.register(First.class, () -> count(constructed, new First()));
+		registry.register(Second.class, () -> count(constructed, new Second()));
+
+		registry.get(First.class);
+		assertEquals(1, registry.size());
+		assertEquals(1, constructed.get());
+	}
+
+	@Test
+	void unregisteredTypeIsRejected() {
+		InstanceRegistry<Base> registry = new InstanceRegistry<>();
+		registry.register(First.class, First::new);
+		assertThrows(IllegalArgumentException.class, () -> registry.get(Second.class));
+	}
+
+	private static <T> T count(AtomicInteger constructed, T instance) {
+		constructed.incrementAndGet();
+		return instance;
+	}
+
+}
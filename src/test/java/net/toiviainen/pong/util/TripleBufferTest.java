@@ -0,0 +1,92 @@
+package net.toiviainen.pong.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The reader must always see a complete state, never a buffer the writer is
+ * still filling, and the states must never go back in time.
+ */
+class TripleBufferTest {
+
+	private static final int FRAMES = 2_000_000;
+
+	/** A frame whose every field holds the sequence number of the frame. */
+	private static final class Frame {
+		long sequence;
+		final long[] fields = new long[16];
+
+		void fill(long value) {
+			for (int i = 0; i < fields.length; i++) {
+				fields[i] = value;
+			}
+			sequence = value;
+		}
+	}
+
+	@Test
+	void readerSkipsToTheLatestState() {
+		TripleBuffer<Frame> buffer = new TripleBuffer<>(Frame::new);
+		Frame initial = buffer.getFront();
+		assertEquals(0, initial.sequence);
+
+		for (int i = 1; i <= 3; i++) {
+			buffer.getBack().fill(i);
+			buffer.publish();
+		}
+		Frame latest = buffer.getFront();
+		assertNotSame(initial, latest);
+		assertEquals(3, latest.sequence);
+
+		// nothing published since, so the reader keeps its buffer.
+		assertSame(latest, buffer.getFront());
+		assertNotSame(latest, buffer.getBack());
+	}
+
+	@Test
+	void concurrentReaderNeverSeesTornOrOlderFrames() throws InterruptedException {
+		TripleBuffer<Frame> buffer = new TripleBuffer<>(Frame::new);
+		AtomicReference<Throwable> writerFailure = new AtomicReference<>();
+		Thread writer = new Thread(() -> {
+			try {
+				for (long i = 1; i <= FRAMES; i++) {
+					buffer.getBack().fill(i);
+					buffer.publish();
+				}
+			} catch (Throwable t) {
+				writerFailure.set(t);
+			}
+		}, "triple-buffer-writer");
+		writer.setDaemon(true);
+		writer.start();
+
+		long previous = 0;
+		long reads = 0;
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+		while (previous < FRAMES) {
+			assertTrue(System.nanoTime() < deadline, "The writer did not finish in time!");
+			Frame frame = buffer.getFront();
+			long sequence = frame.sequence;
+			for (long field : frame.fields) {
+				assertEquals(sequence, field, "A torn frame was read!");
+			}
+			assertTrue(sequence >= previous, "The frames went back in time!");
+			previous = sequence;
+			reads++;
+		}
+
+		writer.join(TimeUnit.SECONDS.toMillis(10));
+		assertFalse(writer.isAlive());
+		assertEquals(null, writerFailure.get());
+		assertTrue(reads > 0);
+	}
+
+}